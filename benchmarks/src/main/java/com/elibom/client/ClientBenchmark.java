@@ -0,0 +1,112 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.Notifier;
+import com.github.tomakehurst.wiremock.common.ProxySettings;
+import com.github.tomakehurst.wiremock.common.SingleRootFileSource;
+
+/**
+ * Measures the throughput and the latency distribution of full calls against a local WireMock server. Run it with
+ * more threads (e.g. <code>-t 8</code>) to measure the client under contention.
+ *
+ * @author German Escobar
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+
+    @Param({ "8089" })
+    private int port;
+
+    private WireMockServer server;
+
+    private ElibomRestClient client;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new WireMockServer(port, null, new SingleRootFileSource("."), false, ProxySettings.NO_PROXY, new QuietNotifier());
+        server.start();
+
+        JSONArray messages = new JSONArray();
+        for (int i=0; i < 10; i++) {
+            messages.put(Fixtures.message(i));
+        }
+
+        WireMock wireMock = new WireMock("localhost", port);
+        wireMock.register(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+        wireMock.register(get(urlEqualTo("/messages/12345"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(new JSONObject()
+                        .put("deliveryId", "12345")
+                        .put("status", "finished")
+                        .put("numSent", 10)
+                        .put("numFailed", 0)
+                        .put("messages", messages)
+                        .toString())));
+
+        client = new ElibomRestClient("t@u.com", "test", "http://localhost:" + port);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public String sendMessage() {
+        return client.sendMessage("573002175604", "this is a test message");
+    }
+
+    @Benchmark
+    public Delivery getDelivery() {
+        return client.getDelivery("12345");
+    }
+
+    private static class QuietNotifier implements Notifier {
+
+        @Override
+        public void info(String message) {}
+
+        @Override
+        public void error(String message) {}
+
+        @Override
+        public void error(String message, Throwable t) {}
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the decoding of the responses into the model objects for lists of <code>size</code> elements.
+ *
+ * @author German Escobar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    private int size;
+
+    private byte[] messagesBody;
+
+    private byte[] deliveryBody;
+
+    private String schedulesBody;
+
+    private final ResponseDecoder jsonObjectDecoder = new JsonObjectDecoder();
+
+    private final ResponseDecoder streamingDecoder = new StreamingDecoder();
+
+    private final ResponseDecoder lazyDecoder = new StreamingDecoder(true);
+
+    @Setup
+    public void setUp() throws Exception {
+        JSONArray messages = new JSONArray();
+        JSONArray schedules = new JSONArray();
+        for (int i=0; i < size; i++) {
+            messages.put(Fixtures.message(i));
+            schedules.put(Fixtures.schedule(i));
+        }
+
+        messagesBody = new JSONObject().put("messages", messages).toString().getBytes("UTF-8");
+        deliveryBody = new JSONObject()
+                .put("deliveryId", "12345")
+                .put("status", "finished")
+                .put("numSent", size)
+                .put("numFailed", 0)
+                .put("messages", messages)
+                .toString().getBytes("UTF-8");
+        schedulesBody = schedules.toString();
+    }
+
+    @Benchmark
+    public List<Message> messagesWithJsonObjectDecoder() throws JSONException, ParseException {
+        return jsonObjectDecoder.decodeMessages(messagesBody, DateCodec.DEFAULT);
+    }
+
+    @Benchmark
+    public List<Message> messagesWithStreamingDecoder() throws JSONException, ParseException {
+        return streamingDecoder.decodeMessages(messagesBody, DateCodec.DEFAULT);
+    }
+
+    @Benchmark
+    public List<Message> messagesWithLazyDecoder() throws JSONException, ParseException {
+        return lazyDecoder.decodeMessages(messagesBody, DateCodec.DEFAULT);
+    }
+
+    /**
+     * Reads only the id and the status of each message, the case in which the lazy messages help the most.
+     */
+    @Benchmark
+    public long idAndStatusWithStreamingDecoder() throws JSONException, ParseException {
+        return idAndStatus(streamingDecoder.decodeMessages(messagesBody, DateCodec.DEFAULT));
+    }
+
+    @Benchmark
+    public long idAndStatusWithLazyDecoder() throws JSONException, ParseException {
+        return idAndStatus(lazyDecoder.decodeMessages(messagesBody, DateCodec.DEFAULT));
+    }
+
+    @Benchmark
+    public Delivery deliveryWithJsonObjectDecoder() throws JSONException, ParseException {
+        return jsonObjectDecoder.decodeDelivery(deliveryBody, DateCodec.DEFAULT);
+    }
+
+    @Benchmark
+    public Delivery deliveryWithStreamingDecoder() throws JSONException, ParseException {
+        return streamingDecoder.decodeDelivery(deliveryBody, DateCodec.DEFAULT);
+    }
+
+    /**
+     * The same path as {@link ElibomRestClient#getScheduledMessages()}.
+     */
+    @Benchmark
+    public List<Schedule> schedules() throws JSONException, ParseException {
+        JSONArray json = new JSONArray(schedulesBody);
+
+        List<Schedule> schedules = new ArrayList<Schedule>();
+        for (int i=0; i < json.length(); i++) {
+            schedules.add(new Schedule(json.getJSONObject(i)));
+        }
+
+        return schedules;
+    }
+
+    private long idAndStatus(List<Message> messages) {
+        long result = 0;
+        for (Message message : messages) {
+            result += message.getId() + message.getStatus().length();
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.elibom.client;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The JSON objects used by the benchmarks, with the same fields the API returns.
+ *
+ * @author German Escobar
+ */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    static JSONObject message(long id) throws JSONException {
+        return new JSONObject()
+                .put("id", 171851 + id)
+                .put("user", new JSONObject()
+                        .put("id", 2)
+                        .put("url", "https://www.elibom.com/users/2"))
+                .put("to", "573002175604")
+                .put("operator", "Tigo (Colombia)")
+                .put("text", "this is a test message of the benchmarks")
+                .put("status", "sent")
+                .put("statusDetail", "sent")
+                .put("credits", 1)
+                .put("from", "3542")
+                .put("createdAt", "2013-07-24 15:05:34")
+                .put("sentAt", "2013-07-24 15:05:40");
+    }
+
+    static JSONObject schedule(long id) throws JSONException {
+        return new JSONObject()
+                .put("id", 32 + id)
+                .put("user", new JSONObject().put("id", 45).put("url", "https://www.elibom.com/users/45"))
+                .put("scheduledTime", "2014-05-23 10:23:00")
+                .put("creationTime", "2012-09-23 22:00:00")
+                .put("status", "scheduled")
+                .put("isFile", false)
+                .put("destinations", "573002175604,573002175605")
+                .put("text", "this is a test message of the benchmarks");
+    }
+
+}
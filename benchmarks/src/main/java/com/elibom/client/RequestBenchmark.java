@@ -0,0 +1,106 @@
+package com.elibom.client;
+
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding of the requests and the parts of the models that are decoded field by field.
+ *
+ * @author German Escobar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBenchmark {
+
+    private final ElibomRestClient client = new ElibomRestClient("t@u.com", "test");
+
+    private final Date scheduleDate = new Date();
+
+    private final RecipientFilter recipientFilter = new RecipientFilter("57", 10);
+
+    /**
+     * The <code>Authorization</code> header, which the client computes once since it doesn't change.
+     */
+    @Benchmark
+    public String authorizationHeader() {
+        return client.buildAuthorizationHeader();
+    }
+
+    /**
+     * The body of {@link ElibomRestClient#sendMessage(String, String)} as it was encoded before {@link JsonBody}.
+     */
+    @Benchmark
+    public byte[] sendMessageBodyWithJSONObject() throws JSONException, UnsupportedEncodingException {
+        JSONObject json = new JSONObject().put("to", "573002175604,573002175605").put("text", "this is a test message");
+        return json.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * The body of {@link ElibomRestClient#sendMessage(String, String)}.
+     */
+    @Benchmark
+    public byte[] sendMessageBody() {
+        return JsonBody.encode("to", "573002175604,573002175605", "text", "this is a test message");
+    }
+
+    /**
+     * The body of {@link ElibomRestClient#scheduleMessage(String, String, Date)}, including the date.
+     */
+    @Benchmark
+    public byte[] scheduleMessageBody() {
+        return JsonBody.encode("scheduleDate", DateCodec.DEFAULT.formatMinutes(scheduleDate),
+                "to", "573002175604", "text", "this is a test message");
+    }
+
+    /**
+     * A date as the models parsed it before {@link DateCodec}, with a new SimpleDateFormat for each object.
+     */
+    @Benchmark
+    public Date parseDateWithSimpleDateFormat() throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        return sdf.parse("2013-07-24 15:05:34");
+    }
+
+    @Benchmark
+    public Date parseDateWithDateCodec() throws ParseException {
+        return DateCodec.DEFAULT.parse("2013-07-24 15:05:34");
+    }
+
+    @Benchmark
+    public String formatDateWithDateCodec() {
+        return DateCodec.DEFAULT.format(scheduleDate);
+    }
+
+    /**
+     * A national destination with formatting characters, without the deduplication.
+     */
+    @Benchmark
+    public String normalizeDestination() {
+        return recipientFilter.normalize("(300) 217-5604");
+    }
+
+    @Benchmark
+    public Message message() throws JSONException, ParseException {
+        return new Message(Fixtures.message(1));
+    }
+
+}
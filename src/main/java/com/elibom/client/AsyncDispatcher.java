@@ -0,0 +1,115 @@
+package com.elibom.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the asynchronous calls of the {@link ElibomRestClient} on an executor, bounding the number of calls in flight.
+ * When the limit is reached, the thread submitting a new call blocks until another one completes.
+ *
+ * @author German Escobar
+ */
+class AsyncDispatcher {
+
+    private final ExecutorService executor;
+
+    private final boolean ownsExecutor;
+
+    private final Semaphore permits;
+
+    private final int maxInFlight;
+
+    /**
+     * Creates a dispatcher with its own pool of <code>threads</code> daemon threads.
+     */
+    public AsyncDispatcher(int threads, int maxInFlight) {
+        this(Executors.newFixedThreadPool(threads, new DaemonThreadFactory("elibom-async")), maxInFlight, true);
+    }
+
+    /**
+     * Creates a dispatcher that runs the calls on the provided <code>executor</code>.
+     */
+    public AsyncDispatcher(ExecutorService executor, int maxInFlight, boolean ownsExecutor) {
+        Preconditions.notNull(executor, "no executor provided");
+        Preconditions.isInteger(maxInFlight, "maxInFlight must be greater than zero");
+
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    public <T> AsyncResult<T> submit(Callable<T> task) {
+        AsyncResult<T> result = new AsyncResult<T>(task);
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.fail(e);
+            return result;
+        }
+
+        result.addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                permits.release();
+            }
+        });
+
+        try {
+            executor.execute(result);
+        } catch (RejectedExecutionException e) {
+            result.fail(e);
+        }
+
+        return result;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates named daemon threads so an unclosed client doesn't prevent the JVM from exiting.
+     */
+    static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The pending result of an asynchronous call made with the {@link ElibomRestClient}. Besides the usual {@link
+ * java.util.concurrent.Future} methods, it allows you to register {@link Callback}s that are notified when the call
+ * completes, so no thread has to block waiting for it.
+ *
+ * @author German Escobar
+ */
+public class AsyncResult<T> extends FutureTask<T> {
+
+    private static final Callable<Object> UNUSED = new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+            throw new IllegalStateException("This result is completed explicitly");
+        }
+    };
+
+    private final List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>();
+
+    private boolean notified;
+
+    /**
+     * Creates a result that is completed when the <code>task</code> is run.
+     *
+     * @param task the task that computes the result.
+     */
+    public AsyncResult(Callable<T> task) {
+        super(task);
+    }
+
+    /**
+     * Creates a result that is completed explicitly with {@link #complete(Object)} or {@link #fail(Throwable)}.
+     */
+    @SuppressWarnings("unchecked")
+    AsyncResult() {
+        super((Callable<T>) UNUSED);
+    }
+
+    /**
+     * Registers a callback that is notified when this result completes. If it is already completed, the callback is
+     * notified immediately in the calling thread; otherwise, it will be notified in the thread that completes it.
+     *
+     * @param callback the callback to be notified.
+     *
+     * @return this object, for chaining.
+     */
+    public AsyncResult<T> addCallback(Callback<? super T> callback) {
+        Preconditions.notNull(callback, "no callback provided");
+
+        synchronized (callbacks) {
+            if (!notified) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+
+        notify(callback);
+        return this;
+    }
+
+    void complete(T value) {
+        set(value);
+    }
+
+    void fail(Throwable e) {
+        setException(e);
+    }
+
+    @Override
+    protected void done() {
+        List<Callback<? super T>> pending;
+        synchronized (callbacks) {
+            notified = true;
+            pending = new ArrayList<Callback<? super T>>(callbacks);
+            callbacks.clear();
+        }
+
+        for (Callback<? super T> callback : pending) {
+            try {
+                notify(callback);
+            } catch (RuntimeException e) {
+                // a failing callback must not prevent the others from being notified
+            }
+        }
+    }
+
+    private void notify(Callback<? super T> callback) {
+        T value;
+        try {
+            value = get();
+        } catch (ExecutionException e) {
+            callback.onFailure(e.getCause());
+            return;
+        } catch (CancellationException e) {
+            callback.onFailure(e);
+            return;
+        } catch (InterruptedException e) {
+            // can't happen, the result is already completed
+            Thread.currentThread().interrupt();
+            callback.onFailure(e);
+            return;
+        }
+
+        callback.onSuccess(value);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.elibom.client;
+
+/**
+ * Encodes the credentials of the <code>Authorization</code> header. <code>javax.xml.bind.DatatypeConverter</code> was
+ * removed from the JDK in Java 11 and <code>java.util.Base64</code> doesn't exist in Java 6, so the client encodes
+ * them itself.
+ *
+ * @author German Escobar
+ */
+final class Base64 {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private Base64() {}
+
+    /**
+     * @return the standard (RFC 4648) Base64 encoding of <code>data</code>, with padding.
+     */
+    public static String encode(byte[] data) {
+        char[] out = new char[(data.length + 2) / 3 * 4];
+
+        int i = 0;
+        int j = 0;
+        while (i + 2 < data.length) {
+            int bits = (data[i++] & 0xff) << 16 | (data[i++] & 0xff) << 8 | (data[i++] & 0xff);
+            out[j++] = ALPHABET[bits >>> 18];
+            out[j++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[j++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[j++] = ALPHABET[bits & 0x3f];
+        }
+
+        int remaining = data.length - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xff) << 16 | (remaining == 2 ? (data[i + 1] & 0xff) << 8 : 0);
+            out[j++] = ALPHABET[bits >>> 18];
+            out[j++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[j++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            out[j++] = '=';
+        }
+
+        return new String(out);
+    }
+
+}
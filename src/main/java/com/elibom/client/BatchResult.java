@@ -0,0 +1,87 @@
+package com.elibom.client;
+
+/**
+ * The outcome of a single batch sent by the {@link BulkSender}.
+ *
+ * @author German Escobar
+ */
+public class BatchResult {
+
+    private final int index;
+
+    private final String destinations;
+
+    private final int numDestinations;
+
+    private final String text;
+
+    private volatile String deliveryToken;
+
+    private volatile Throwable error;
+
+    BatchResult(int index, String destinations, int numDestinations, String text) {
+        this.index = index;
+        this.destinations = destinations;
+        this.numDestinations = numDestinations;
+        this.text = text;
+    }
+
+    /**
+     * @return the position of this batch, starting from 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the destinations of this batch separated by comma.
+     */
+    public String getDestinations() {
+        return destinations;
+    }
+
+    public int getNumDestinations() {
+        return numDestinations;
+    }
+
+    /**
+     * @return the text sent to the destinations of this batch.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the delivery token or null if the batch failed.
+     */
+    public String getDeliveryToken() {
+        return deliveryToken;
+    }
+
+    /**
+     * @return the exception that caused the batch to fail (e.g. an {@link HttpServerException}) or null if it was sent
+     * successfully.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return deliveryToken != null;
+    }
+
+    void setDeliveryToken(String deliveryToken) {
+        this.deliveryToken = deliveryToken;
+    }
+
+    void setError(Throwable error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult [index=" + index + ", destinations=" + numDestinations + ", "
+                + (error == null ? "deliveryToken=" + deliveryToken : "error=" + error.getMessage()) + "]";
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link BulkSender#send(Iterable, String)}: the delivery token or the failure of each batch.
+ *
+ * @author German Escobar
+ */
+public class BulkResult {
+
+    private final List<BatchResult> batches = Collections.synchronizedList(new ArrayList<BatchResult>());
+
+    void add(BatchResult batch) {
+        batches.add(batch);
+    }
+
+    /**
+     * @return the batches in the order they were sent.
+     */
+    public List<BatchResult> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    /**
+     * @return the delivery tokens of the batches that were sent successfully. You can query them using
+     * {@link ElibomRestClient#getDelivery(String)}.
+     */
+    public List<String> getDeliveryTokens() {
+        List<String> tokens = new ArrayList<String>();
+        synchronized (batches) {
+            for (BatchResult batch : batches) {
+                if (batch.isSuccessful()) {
+                    tokens.add(batch.getDeliveryToken());
+                }
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * @return the batches that failed.
+     */
+    public List<BatchResult> getFailures() {
+        List<BatchResult> failures = new ArrayList<BatchResult>();
+        synchronized (batches) {
+            for (BatchResult batch : batches) {
+                if (batch.getError() != null) {
+                    failures.add(batch);
+                }
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * @return the number of destinations of all the batches.
+     */
+    public int getNumDestinations() {
+        int total = 0;
+        synchronized (batches) {
+            for (BatchResult batch : batches) {
+                total += batch.getNumDestinations();
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * @return true if all the batches were sent successfully, false otherwise.
+     */
+    public boolean isSuccessful() {
+        return getFailures().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult [batches=" + batches.size() + ", destinations=" + getNumDestinations() + ", failures="
+                + getFailures().size() + "]";
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.elibom.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sends the same SMS message to a large number of destinations. The destinations are split in batches that are sent
+ * concurrently, each one as a single request with comma separated destinations.
+ *
+ * <p>A batch is closed when it reaches <code>batchSize</code> destinations or when adding another destination would
+ * make the body of the request larger than <code>maxPayloadBytes</code>. At most <code>parallelism</code> batches are
+ * in flight at the same time, so the destinations are consumed as the batches are sent and can be provided lazily
+ * (e.g. read from a file).</p>
+ *
+ * <p>Personalized messages are sent with a {@link MessageTemplate}: the recipients whose rendered texts are identical
+ * are grouped, so each distinct text is sent in as few requests as possible.</p>
+ *
+ * <pre>
+ * BulkSender sender = new BulkSender(elibom);
+ * BulkResult result = sender.send(destinations, "This is a test");
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class BulkSender {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 64 * 1024;
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final ElibomRestClient client;
+
+    private final int batchSize;
+
+    private final int maxPayloadBytes;
+
+    private final int parallelism;
+
+    /**
+     * Initializes the sender with the default values.
+     *
+     * @param client the client used to send the batches.
+     */
+    public BulkSender(ElibomRestClient client) {
+        this(client, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PAYLOAD_BYTES, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Initializes the sender.
+     *
+     * @param client the client used to send the batches.
+     * @param batchSize the max number of destinations of each batch.
+     * @param maxPayloadBytes the max size in bytes of the body of each request.
+     * @param parallelism the max number of batches that are sent at the same time.
+     */
+    public BulkSender(ElibomRestClient client, int batchSize, int maxPayloadBytes, int parallelism) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(batchSize, "batchSize must be greater than zero");
+        Preconditions.isInteger(maxPayloadBytes, "maxPayloadBytes must be greater than zero");
+        Preconditions.isInteger(parallelism, "parallelism must be greater than zero");
+
+        this.client = client;
+        this.batchSize = batchSize;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sends an SMS message with the specified <code>text</code> to all the <code>destinations</code>, blocking until
+     * all the batches are sent. Blank destinations are ignored.
+     *
+     * @param destinations the destinations to which you want to send the SMS message.
+     * @param text the text of the SMS message. If it takes more than one segment (see {@link SmsSegmenter}), it is sent
+     *  with {@link ElibomRestClient#sendLargeMessage(String, String)}.
+     *
+     * @return a BulkResult with the delivery token or the failure of each batch.
+     * @throws RuntimeException if the thread is interrupted while sending the batches.
+     */
+    public BulkResult send(Iterable<String> destinations, String text) throws RuntimeException {
+        return send(destinations, text, null);
+    }
+
+    /**
+     * Sends an SMS message with the specified <code>text</code> and campaign to all the <code>destinations</code>,
+     * blocking until all the batches are sent. Blank destinations are ignored.
+     *
+     * @param destinations the destinations to which you want to send the SMS message.
+     * @param text the text of the SMS message, it must fit in a single segment if there is a campaign.
+     * @param campaign a tag used to identify a group of messages, may be null.
+     *
+     * @return a BulkResult with the delivery token or the failure of each batch.
+     * @throws RuntimeException if the thread is interrupted while sending the batches.
+     */
+    public BulkResult send(Iterable<String> destinations, String text, String campaign) throws RuntimeException {
+        Preconditions.notNull(destinations, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+        if (campaign != null) {
+            Preconditions.notEmpty(campaign, "no campaign provided");
+        }
+        SmsSegmenter.checkSegments(text, maxSegments(campaign));
+
+        int overhead = payloadOverhead(text, campaign);
+
+        BulkResult result = new BulkResult();
+        Semaphore permits = new Semaphore(parallelism);
+        try {
+            sendBatches(result, permits, destinations, text, campaign, overhead);
+
+            // wait for the batches in flight
+            permits.acquire(parallelism);
+            permits.release(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Renders a template for each recipient and sends each distinct text to all its destinations, blocking until all
+     * the batches are sent. All the texts are rendered and checked before the first batch is sent, so the recipients
+     * are held in memory.
+     *
+     * @param template the template of the SMS message.
+     * @param recipients the destinations with the values of the variables of the template.
+     *
+     * @return a BulkResult with the delivery token or the failure of each batch.
+     * @throws IllegalArgumentException if a variable has no value or a text takes more than
+     * {@link SmsSegmenter#MAX_SEGMENTS} segments.
+     * @throws RuntimeException if the thread is interrupted while sending the batches.
+     */
+    public BulkResult send(MessageTemplate template, Iterable<? extends Recipient> recipients) throws IllegalArgumentException, RuntimeException {
+        return send(template, recipients, null);
+    }
+
+    /**
+     * Same as {@link #send(MessageTemplate, Iterable)} but with a campaign, in which case each text must fit in a
+     * single segment.
+     *
+     * @param template the template of the SMS message.
+     * @param recipients the destinations with the values of the variables of the template.
+     * @param campaign a tag used to identify a group of messages, may be null.
+     *
+     * @return a BulkResult with the delivery token or the failure of each batch.
+     * @throws IllegalArgumentException if a variable has no value or a text takes too many segments.
+     * @throws RuntimeException if the thread is interrupted while sending the batches.
+     */
+    public BulkResult send(MessageTemplate template, Iterable<? extends Recipient> recipients, String campaign)
+            throws IllegalArgumentException, RuntimeException {
+        Preconditions.notNull(template, "no template provided");
+        Preconditions.notNull(recipients, "no recipients provided");
+        if (campaign != null) {
+            Preconditions.notEmpty(campaign, "no campaign provided");
+        }
+
+        Map<String,List<String>> groups = template.group(recipients, maxSegments(campaign));
+
+        Map<String,Integer> overheads = new HashMap<String,Integer>();
+        for (String text : groups.keySet()) {
+            overheads.put(text, payloadOverhead(text, campaign));
+        }
+
+        BulkResult result = new BulkResult();
+        Semaphore permits = new Semaphore(parallelism);
+        try {
+            for (Map.Entry<String,List<String>> group : groups.entrySet()) {
+                sendBatches(result, permits, group.getValue(), group.getKey(), campaign, overheads.get(group.getKey()));
+            }
+
+            // wait for the batches in flight
+            permits.acquire(parallelism);
+            permits.release(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        return result;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Splits the destinations in batches and dispatches them as they are closed, without waiting for the last ones.
+     */
+    private void sendBatches(BulkResult result, Semaphore permits, Iterable<String> destinations, String text,
+            String campaign, int overhead) throws InterruptedException {
+        boolean large = SmsSegmenter.segments(text) > 1;
+
+        StringBuilder batch = new StringBuilder();
+        int batchDestinations = 0;
+        int batchBytes = overhead;
+
+        for (String destination : destinations) {
+            if (destination == null || destination.trim().length() == 0) {
+                continue;
+            }
+            destination = destination.trim();
+
+            int destinationBytes = destinationBytes(destination);
+            if (batchDestinations > 0 && (batchDestinations == batchSize || batchBytes + 1 + destinationBytes > maxPayloadBytes)) {
+                dispatch(result, permits, batch.toString(), batchDestinations, text, campaign, large);
+
+                batch.setLength(0);
+                batchDestinations = 0;
+                batchBytes = overhead;
+            }
+
+            if (batchDestinations > 0) {
+                batch.append(',');
+                batchBytes++;
+            }
+            batch.append(destination);
+            batchDestinations++;
+            batchBytes += destinationBytes;
+        }
+
+        if (batchDestinations > 0) {
+            dispatch(result, permits, batch.toString(), batchDestinations, text, campaign, large);
+        }
+    }
+
+    private void dispatch(BulkResult result, final Semaphore permits, String to, int numDestinations, String text,
+            String campaign, boolean large) throws InterruptedException {
+        permits.acquire();
+
+        final BatchResult batch = new BatchResult(result.getBatches().size(), to, numDestinations, text);
+        result.add(batch);
+
+        AsyncResult<String> delivery;
+        if (campaign != null) {
+            delivery = client.sendMessageAsync(to, text, campaign);
+        } else if (large) {
+            delivery = client.sendLargeMessageAsync(to, text);
+        } else {
+            delivery = client.sendMessageAsync(to, text);
+        }
+
+        delivery.addCallback(new Callback<String>() {
+            @Override
+            public void onSuccess(String deliveryToken) {
+                batch.setDeliveryToken(deliveryToken);
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                batch.setError(e);
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Messages with a campaign are sent with {@link ElibomRestClient#sendMessage(String, String, String)}, which only
+     * accepts a single segment.
+     */
+    private int maxSegments(String campaign) {
+        return campaign == null ? SmsSegmenter.MAX_SEGMENTS : 1;
+    }
+
+    /**
+     * @return the size in bytes of the body of a request with no destinations.
+     * @throws IllegalArgumentException if a destination doesn't fit in <code>maxPayloadBytes</code> with the text.
+     */
+    private int payloadOverhead(String text, String campaign) throws IllegalArgumentException {
+        int overhead = JsonBody.length("campaign", campaign, "to", "", "text", text);
+        Preconditions.isInteger(maxPayloadBytes - overhead, "the text doesn't fit in maxPayloadBytes");
+        return overhead;
+    }
+
+    private int destinationBytes(String destination) {
+        return JsonBody.valueLength(destination);
+    }
+
+}
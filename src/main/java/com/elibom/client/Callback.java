@@ -0,0 +1,24 @@
+package com.elibom.client;
+
+/**
+ * Receives the outcome of an asynchronous operation. See {@link AsyncResult#addCallback(Callback)}.
+ *
+ * @author German Escobar
+ */
+public interface Callback<T> {
+
+    /**
+     * Called when the operation completes successfully.
+     *
+     * @param result the result of the operation, may be null for operations that don't return a value.
+     */
+    void onSuccess(T result);
+
+    /**
+     * Called when the operation fails or is cancelled.
+     *
+     * @param e the exception that caused the failure (e.g. an {@link HttpServerException}).
+     */
+    void onFailure(Throwable e);
+
+}
@@ -0,0 +1,217 @@
+package com.elibom.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link RequestListener} that records, for each endpoint, the number of requests, failures and retries, the bytes
+ * sent and received, the count of each status code and a {@link LatencyHistogram} of the attempts. It also counts the
+ * requests in flight. The counters are atomic, so a single instance is shared by all the threads without locks.
+ *
+ * <pre>
+ * ClientMetrics metrics = new ClientMetrics();
+ * elibom.addRequestListener(metrics);
+ * ...
+ * LatencyHistogram latency = metrics.getEndpoint("POST /messages").getLatency();
+ * System.out.println(latency.getPercentile(99));
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class ClientMetrics implements RequestListener {
+
+    private final ConcurrentMap<String,EndpointMetrics> endpoints = new ConcurrentHashMap<String,EndpointMetrics>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Override
+    public void onRequest(String endpoint, HttpRequest request) {
+        inFlight.incrementAndGet();
+
+        EndpointMetrics metrics = getOrCreate(endpoint);
+        metrics.requests.incrementAndGet();
+        if (request.getBody() != null) {
+            metrics.requestBytes.addAndGet(request.getBody().length);
+        }
+    }
+
+    @Override
+    public void onResponse(String endpoint, HttpRequest request, HttpResponse response, long elapsedNanos) {
+        inFlight.decrementAndGet();
+
+        EndpointMetrics metrics = getOrCreate(endpoint);
+        metrics.latency.record(elapsedNanos);
+        metrics.responseBytes.addAndGet(response.getBody().length);
+
+        int statusCode = response.getStatusCode();
+        if (statusCode >= 0 && statusCode < EndpointMetrics.MAX_STATUS_CODE) {
+            metrics.statusCodes.incrementAndGet(statusCode);
+        }
+    }
+
+    @Override
+    public void onFailure(String endpoint, HttpRequest request, IOException e, long elapsedNanos) {
+        inFlight.decrementAndGet();
+
+        EndpointMetrics metrics = getOrCreate(endpoint);
+        metrics.latency.record(elapsedNanos);
+        metrics.failures.incrementAndGet();
+    }
+
+    @Override
+    public void onRetry(String endpoint, HttpRequest request, int attempt) {
+        getOrCreate(endpoint).retries.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests that have been sent and have not received a response.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the endpoints that have been called, sorted.
+     */
+    public Set<String> getEndpoints() {
+        return new TreeSet<String>(endpoints.keySet());
+    }
+
+    /**
+     * @param endpoint the method and path of the endpoint, e.g. <code>GET /messages/{id}</code>.
+     *
+     * @return the metrics of the endpoint or null if it has not been called.
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * Removes the metrics of all the endpoints. The requests in flight are still counted.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ClientMetrics [inFlight=").append(getInFlight());
+        for (String endpoint : getEndpoints()) {
+            builder.append(", ").append(endpoint).append("=").append(endpoints.get(endpoint));
+        }
+        return builder.append("]").toString();
+    }
+
+    private EndpointMetrics getOrCreate(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        if (metrics == null) {
+            EndpointMetrics candidate = new EndpointMetrics();
+            metrics = endpoints.putIfAbsent(endpoint, candidate);
+            if (metrics == null) {
+                metrics = candidate;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * The metrics of a single endpoint.
+     */
+    public static class EndpointMetrics {
+
+        private static final int MAX_STATUS_CODE = 600;
+
+        private final AtomicLong requests = new AtomicLong();
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLong retries = new AtomicLong();
+
+        private final AtomicLong requestBytes = new AtomicLong();
+
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE);
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * @return the number of attempts that have been sent, including the retries.
+         */
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * @return the number of attempts that failed without a response.
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        /**
+         * @return the bytes of the bodies of the requests.
+         */
+        public long getRequestBytes() {
+            return requestBytes.get();
+        }
+
+        /**
+         * @return the bytes of the bodies of the responses.
+         */
+        public long getResponseBytes() {
+            return responseBytes.get();
+        }
+
+        /**
+         * @return the number of responses with a status code.
+         */
+        public long getStatusCount(int statusCode) {
+            if (statusCode < 0 || statusCode >= MAX_STATUS_CODE) {
+                return 0;
+            }
+            return statusCodes.get(statusCode);
+        }
+
+        /**
+         * @return the number of responses of each status code that has been received.
+         */
+        public Map<Integer,Long> getStatusCounts() {
+            Map<Integer,Long> result = new TreeMap<Integer,Long>();
+            for (int i=0; i < MAX_STATUS_CODE; i++) {
+                long count = statusCodes.get(i);
+                if (count > 0) {
+                    result.put(i, count);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the histogram of the latencies of the attempts, with or without a response.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "[requests=" + getRequests() + ", failures=" + getFailures() + ", retries=" + getRetries()
+                    + ", statusCodes=" + getStatusCounts() + ", latency=" + latency + "]";
+        }
+
+    }
+
+}
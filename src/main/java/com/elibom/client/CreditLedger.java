@@ -0,0 +1,439 @@
+package com.elibom.client;
+
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A local balance of credits that is debited when a message is sent, so the senders can check if they can afford a
+ * message without calling {@link ElibomRestClient#getAccount()} every time.
+ *
+ * <ul>
+ *   <li>The balance is seeded from {@link Account#getCredits()} when the ledger is started and reconciled against it
+ *   every <code>reconcileInterval</code> milliseconds in a background thread.</li>
+ *   <li>The credits of a message are estimated as destinations &times; segments ({@link SmsSegmenter}) &times;
+ *   <code>creditsPerSegment</code>. The messages sent through {@link #sendMessage(String, String)} are debited
+ *   atomically before they are sent, so concurrent senders can't spend the same credits.</li>
+ *   <li>As a {@link DeliveryListener} (e.g. of a {@link DeliveryTracker}), the ledger replaces the estimate of a
+ *   delivery with the sum of {@link Message#getCredits()} when it is finished.</li>
+ * </ul>
+ *
+ * <p>The messages that are being sent while the balance is reconciled are assumed not to be charged yet, so the balance
+ * errs on the low side until the next reconciliation. If the client has a {@link ResponseCache}, the balance is as old
+ * as the cached account.</p>
+ *
+ * <pre>
+ * CreditLedger ledger = new CreditLedger(elibom);
+ * ledger.start();
+ * if (ledger.canAfford(destinations.size())) {
+ *     ...
+ * }
+ * String deliveryId = ledger.sendMessage("3201111111", "This is a test");
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class CreditLedger implements DeliveryListener {
+
+    public static final long DEFAULT_RECONCILE_INTERVAL = 60000;
+
+    /**
+     * The credits are kept as fixed-point <code>long</code>s with this number of decimals.
+     */
+    static final int SCALE = MessageColumns.CREDITS_SCALE;
+
+    private final ElibomRestClient client;
+
+    private final long creditsPerSegment;
+
+    private final long reconcileInterval;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * The estimated credits of the messages that are being sent.
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * The estimated credits of the deliveries sent since the last reconciliation, by delivery token.
+     */
+    private final ConcurrentMap<String,Pending> pending = new ConcurrentHashMap<String,Pending>();
+
+    private final AtomicLong debits = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong reconcileFailures = new AtomicLong();
+
+    /**
+     * Serializes the reconciliations, two of them would read the same balance and apply the same difference twice. A
+     * lock instead of synchronized, as the account is requested while holding it.
+     */
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    private volatile boolean seeded;
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Initializes the ledger with one credit per segment and the default reconcile interval.
+     *
+     * @param client the client used to send the messages and get the account.
+     */
+    public CreditLedger(ElibomRestClient client) {
+        this(client, BigDecimal.ONE, DEFAULT_RECONCILE_INTERVAL);
+    }
+
+    /**
+     * Initializes the ledger.
+     *
+     * @param client the client used to send the messages and get the account.
+     * @param creditsPerSegment the credits charged for each segment of a message to a destination.
+     * @param reconcileInterval the milliseconds between two reconciliations with the account.
+     */
+    public CreditLedger(ElibomRestClient client, BigDecimal creditsPerSegment, long reconcileInterval) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.notNull(creditsPerSegment, "no creditsPerSegment provided");
+        Preconditions.isPositive(creditsPerSegment.doubleValue(), "creditsPerSegment must be greater than zero");
+        Preconditions.isPositive(reconcileInterval, "reconcileInterval must be greater than zero");
+
+        this.client = client;
+        this.creditsPerSegment = toFixedPoint(creditsPerSegment, RoundingMode.CEILING);
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    /**
+     * Seeds the balance from the account, blocking until it is received, and starts the reconciliations.
+     *
+     * @throws IllegalStateException if the ledger was already started.
+     * @throws HttpServerException if the server responds with a HTTP status code other than 200.
+     * @throws RuntimeException wraps any other unexpected exception.
+     */
+    public synchronized void start() throws IllegalStateException, HttpServerException, RuntimeException {
+        if (scheduler != null) {
+            throw new IllegalStateException("The ledger was already started");
+        }
+
+        reconcile();
+
+        scheduler = new ScheduledThreadPoolExecutor(1, new AsyncDispatcher.DaemonThreadFactory("elibom-ledger"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    // the balance is kept until the next reconciliation
+                    reconcileFailures.incrementAndGet();
+                }
+            }
+        }, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reconciliations. The balance can still be used.
+     */
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the balance to the credits of the account, minus the estimate of the messages that are being sent. The
+     * messages debited while the account is requested are kept. Concurrent calls (e.g. with the background
+     * reconciliation) are run one after the other.
+     *
+     * @throws HttpServerException if the server responds with a HTTP status code other than 200.
+     * @throws RuntimeException wraps any other unexpected exception.
+     */
+    public void reconcile() throws HttpServerException, RuntimeException {
+        reconcileLock.lock();
+        try {
+            long startedAt = System.nanoTime();
+            long before = balance.get();
+            long sending = inFlight.get();
+
+            BigDecimal credits = client.getAccount().getCredits();
+            long actual = credits == null ? 0 : toFixedPoint(credits, RoundingMode.FLOOR);
+
+            balance.addAndGet(actual - sending - before);
+            seeded = true;
+
+            // the deliveries sent before the account was requested are already charged in it
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().sentAt - startedAt < 0) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * @return the local balance.
+     * @throws IllegalStateException if the ledger has not been started.
+     */
+    public BigDecimal getBalance() throws IllegalStateException {
+        checkSeeded();
+        return BigDecimal.valueOf(balance.get(), SCALE);
+    }
+
+    /**
+     * Checks, without blocking, if the balance covers <code>numMessages</code> single segment messages to one
+     * destination each.
+     *
+     * @throws IllegalStateException if the ledger has not been started.
+     */
+    public boolean canAfford(int numMessages) throws IllegalStateException {
+        Preconditions.notNegative(numMessages, "numMessages must not be negative");
+        checkSeeded();
+
+        return numMessages * creditsPerSegment <= balance.get();
+    }
+
+    /**
+     * Checks, without blocking, if the balance covers the estimated credits of a message.
+     *
+     * @param to the comma separated destinations of the message.
+     * @param text the text of the message.
+     *
+     * @throws IllegalStateException if the ledger has not been started.
+     */
+    public boolean canAfford(String to, String text) throws IllegalStateException {
+        checkSeeded();
+        return estimateUnscaled(to, text) <= balance.get();
+    }
+
+    /**
+     * @param to the comma separated destinations of the message.
+     * @param text the text of the message.
+     *
+     * @return the estimated credits of a message.
+     */
+    public BigDecimal estimate(String to, String text) {
+        return BigDecimal.valueOf(estimateUnscaled(to, text), SCALE);
+    }
+
+    /**
+     * Debits the estimated credits of the message and sends it with {@link ElibomRestClient#sendMessage(String, String)}
+     * or, if the text takes more than one segment, {@link ElibomRestClient#sendLargeMessage(String, String)}. If the
+     * message is not sent (e.g. the server rejects it), the credits are returned to the balance; if it is unknown
+     * whether it was charged (e.g. a read timeout or a POST retried with idempotency keys), they are kept until the
+     * next reconciliation.
+     *
+     * @param to the comma separated destinations of the message.
+     * @param text the text of the message.
+     *
+     * @return the delivery token.
+     * @throws InsufficientCreditsException if the balance doesn't cover the estimated credits.
+     * @throws HttpServerException if the server responds with a HTTP status code other than 200.
+     * @throws RuntimeException wraps any other unexpected exception.
+     */
+    public String sendMessage(String to, String text) throws InsufficientCreditsException, HttpServerException, RuntimeException {
+        return send(to, text, null);
+    }
+
+    /**
+     * Same as {@link #sendMessage(String, String)} but with a campaign, sent with
+     * {@link ElibomRestClient#sendMessage(String, String, String)}.
+     */
+    public String sendMessage(String to, String text, String campaign) throws InsufficientCreditsException, HttpServerException, RuntimeException {
+        Preconditions.notEmpty(campaign, "no campaign provided");
+        return send(to, text, campaign);
+    }
+
+    /**
+     * Debits credits from the balance if it covers them, for messages that are not sent through the ledger.
+     *
+     * @return true if the credits were debited, false if the balance doesn't cover them.
+     * @throws IllegalStateException if the ledger has not been started.
+     */
+    public boolean tryDebit(BigDecimal credits) throws IllegalStateException {
+        Preconditions.notNull(credits, "no credits provided");
+        checkSeeded();
+
+        return debit(toFixedPoint(credits, RoundingMode.CEILING));
+    }
+
+    /**
+     * Returns credits to the balance, e.g. of a message debited with {@link #tryDebit(BigDecimal)} that was not sent.
+     */
+    public void refund(BigDecimal credits) {
+        Preconditions.notNull(credits, "no credits provided");
+        balance.addAndGet(toFixedPoint(credits, RoundingMode.FLOOR));
+    }
+
+    /**
+     * Replaces the estimate of a delivery sent through the ledger with the actual credits of its messages when it is
+     * finished. Deliveries that were already reconciled with the account are ignored.
+     */
+    @Override
+    public void onStatusChange(Delivery delivery, String previousStatus) {
+        if (!"finished".equalsIgnoreCase(delivery.getStatus()) || delivery.getMessages() == null) {
+            return;
+        }
+
+        Pending p = pending.remove(delivery.getId());
+        if (p == null) {
+            return;
+        }
+
+        long actual = 0;
+        for (Message message : delivery.getMessages()) {
+            if (message.getCredits() != null) {
+                actual += toFixedPoint(message.getCredits(), RoundingMode.CEILING);
+            }
+        }
+        balance.addAndGet(p.estimate - actual);
+    }
+
+    /**
+     * @return the number of messages that have been debited.
+     */
+    public long getDebits() {
+        return debits.get();
+    }
+
+    /**
+     * @return the number of messages that were not sent because the balance didn't cover them.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of background reconciliations that failed.
+     */
+    public long getReconcileFailures() {
+        return reconcileFailures.get();
+    }
+
+    private String send(String to, String text, String campaign) {
+        Preconditions.notEmpty(to, "no to provided");
+        Preconditions.notEmpty(text, "no text provided");
+        SmsSegmenter.checkSegments(text, campaign == null ? SmsSegmenter.MAX_SEGMENTS : 1);
+        checkSeeded();
+
+        long estimate = estimateUnscaled(to, text);
+        if (!debit(estimate)) {
+            throw new InsufficientCreditsException(BigDecimal.valueOf(estimate, SCALE), BigDecimal.valueOf(balance.get(), SCALE));
+        }
+
+        inFlight.addAndGet(estimate);
+        RetryPolicy retryPolicy = client.getRetryPolicy();
+        String deliveryId;
+        try {
+            if (campaign != null) {
+                deliveryId = client.sendMessage(to, text, campaign);
+            } else if (SmsSegmenter.segments(text) > 1) {
+                deliveryId = client.sendLargeMessage(to, text);
+            } else {
+                deliveryId = client.sendMessage(to, text);
+            }
+        } catch (RuntimeException e) {
+            // the failures keep the debit until the next reconciliation, unless no attempt reached the server
+            if (isNotSent(e, retryPolicy)) {
+                balance.addAndGet(estimate);
+            }
+            throw e;
+        } finally {
+            inFlight.addAndGet(-estimate);
+        }
+
+        pending.put(deliveryId, new Pending(estimate));
+        return deliveryId;
+    }
+
+    /**
+     * Only the failure of the last attempt is known, so a message is considered not sent if that failure happened
+     * before the request was written and the earlier attempts (if any) can't have been charged either. Without
+     * idempotency keys, a POST is only retried after a connection failure or a <code>429</code>; with them, it is also
+     * retried after failures that may have reached the server (e.g. a read timeout), so only the messages rejected by
+     * the client before the first attempt are considered not sent.
+     *
+     * @return true if no attempt to send the message can have been charged: it was rejected by the client or by the
+     * server, the connection couldn't be established or the thread was interrupted while waiting to send it.
+     */
+    private static boolean isNotSent(RuntimeException e, RetryPolicy retryPolicy) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        if (retryPolicy != null && retryPolicy.isUseIdempotencyKeys()) {
+            return false;
+        }
+        if (e instanceof HttpServerException) {
+            return true;
+        }
+
+        Throwable cause = e.getCause();
+        return cause instanceof ConnectException
+                || (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException));
+    }
+
+    private boolean debit(long credits) {
+        while (true) {
+            long current = balance.get();
+            if (credits > current) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (balance.compareAndSet(current, current - credits)) {
+                debits.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private long estimateUnscaled(String to, String text) {
+        Preconditions.notEmpty(to, "no to provided");
+        Preconditions.notNull(text, "no text provided");
+
+        return countDestinations(to) * SmsSegmenter.segments(text) * creditsPerSegment;
+    }
+
+    private void checkSeeded() {
+        if (!seeded) {
+            throw new IllegalStateException("The ledger has not been started");
+        }
+    }
+
+    private static int countDestinations(String to) {
+        int count = 1;
+        for (int i=0; i < to.length(); i++) {
+            if (to.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long toFixedPoint(BigDecimal value, RoundingMode roundingMode) {
+        return value.setScale(SCALE, roundingMode).unscaledValue().longValue();
+    }
+
+    private static class Pending {
+
+        private final long estimate;
+
+        private final long sentAt = System.nanoTime();
+
+        Pending(long estimate) {
+            this.estimate = estimate;
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parses and formats the dates used by the API (<code>yyyy-MM-dd HH:mm:ss</code> in the responses,
+ * <code>yyyy-MM-dd HH:mm</code> and <code>dd-MM-yyyy</code> in the requests) in a specific time zone.
+ *
+ * <p>Unlike <code>SimpleDateFormat</code>, this class is immutable and thread-safe, so a single instance is shared by
+ * all the models and requests, and it reads the fixed layouts directly without allocating intermediate objects.</p>
+ *
+ * <p>The dates of the API are local to the time zone of the account, which is not part of the responses. Use the
+ * constructor to set it explicitly (e.g. <code>new DateCodec(TimeZone.getTimeZone("America/Bogota"))</code>);
+ * {@link #DEFAULT} uses the default time zone of the JVM when the class is loaded, which is what previous versions
+ * did.</p>
+ *
+ * @author German Escobar
+ */
+public final class DateCodec {
+
+    /**
+     * A codec that uses the default time zone of the JVM.
+     */
+    public static final DateCodec DEFAULT = new DateCodec(TimeZone.getDefault());
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final TimeZone timeZone;
+
+    /**
+     * Initializes the codec.
+     *
+     * @param timeZone the time zone of the dates, it is copied.
+     */
+    public DateCodec(TimeZone timeZone) {
+        Preconditions.notNull(timeZone, "no timeZone provided");
+        this.timeZone = (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * Parses a date with the layout <code>yyyy-MM-dd HH:mm:ss</code> or <code>yyyy-MM-dd HH:mm</code>.
+     *
+     * @param value the value to parse.
+     *
+     * @return the parsed Date.
+     * @throws ParseException if the value doesn't have one of the layouts or a field is out of range.
+     */
+    public Date parse(String value) throws ParseException {
+        if (value == null || (value.length() != 19 && value.length() != 16)) {
+            throw new ParseException("Unparseable date: \"" + value + "\"", 0);
+        }
+
+        int year = digits(value, 0, 4);
+        expect(value, 4, '-');
+        int month = digits(value, 5, 2);
+        expect(value, 7, '-');
+        int day = digits(value, 8, 2);
+        expect(value, 10, ' ');
+        int hour = digits(value, 11, 2);
+        expect(value, 13, ':');
+        int minute = digits(value, 14, 2);
+        int second = 0;
+        if (value.length() == 19) {
+            expect(value, 16, ':');
+            second = digits(value, 17, 2);
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23 || minute > 59 || second > 59) {
+            throw new ParseException("Unparseable date: \"" + value + "\"", 0);
+        }
+
+        long local = daysFromCivil(year, month, day) * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L;
+        return new Date(toUtc(local));
+    }
+
+    /**
+     * @return the date with the layout <code>yyyy-MM-dd HH:mm:ss</code>.
+     */
+    public String format(Date date) {
+        char[] buffer = new char[19];
+        int secondOfDay = writeDate(date, buffer, 0);
+        buffer[10] = ' ';
+        write2(buffer, 11, secondOfDay / 3600);
+        buffer[13] = ':';
+        write2(buffer, 14, secondOfDay / 60 % 60);
+        buffer[16] = ':';
+        write2(buffer, 17, secondOfDay % 60);
+
+        return new String(buffer);
+    }
+
+    /**
+     * @return the date with the layout <code>yyyy-MM-dd HH:mm</code>, used to schedule messages.
+     */
+    public String formatMinutes(Date date) {
+        char[] buffer = new char[16];
+        int secondOfDay = writeDate(date, buffer, 0);
+        buffer[10] = ' ';
+        write2(buffer, 11, secondOfDay / 3600);
+        buffer[13] = ':';
+        write2(buffer, 14, secondOfDay / 60 % 60);
+
+        return new String(buffer);
+    }
+
+    /**
+     * @return the date with the layout <code>dd-MM-yyyy</code>, used to filter the messages.
+     */
+    public String formatDay(Date date) {
+        char[] ymd = new char[10];
+        writeDate(date, ymd, 0);
+
+        char[] buffer = new char[10];
+        System.arraycopy(ymd, 8, buffer, 0, 2);
+        buffer[2] = '-';
+        System.arraycopy(ymd, 5, buffer, 3, 2);
+        buffer[5] = '-';
+        System.arraycopy(ymd, 0, buffer, 6, 4);
+
+        return new String(buffer);
+    }
+
+    public TimeZone getTimeZone() {
+        return (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * Converts a local time to UTC. Local times in a gap (when the clocks move forward) are moved forward by the
+     * length of the gap and local times that happen twice (when the clocks move back) resolve to the later instant.
+     */
+    private long toUtc(long local) {
+        int offset = timeZone.getOffset(local - timeZone.getRawOffset());
+        int actual = timeZone.getOffset(local - offset);
+
+        return local - actual;
+    }
+
+    /**
+     * Writes the <code>yyyy-MM-dd</code> part of the date in local time.
+     *
+     * @return the second of the day in local time.
+     */
+    private int writeDate(Date date, char[] buffer, int pos) {
+        Preconditions.notNull(date, "no date provided");
+
+        long millis = date.getTime();
+        long local = millis + timeZone.getOffset(millis);
+        long days = floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        write2(buffer, pos, (int) (year / 100));
+        write2(buffer, pos + 2, (int) (year % 100));
+        buffer[pos + 4] = '-';
+        write2(buffer, pos + 5, month);
+        buffer[pos + 7] = '-';
+        write2(buffer, pos + 8, day);
+
+        return millisOfDay / 1000;
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static int digits(String value, int pos, int length) throws ParseException {
+        int result = 0;
+        for (int i=pos; i < pos + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new ParseException("Unparseable date: \"" + value + "\"", i);
+            }
+            result = result * 10 + (c - '0');
+        }
+
+        return result;
+    }
+
+    private static void expect(String value, int pos, char c) throws ParseException {
+        if (value.charAt(pos) != c) {
+            throw new ParseException("Unparseable date: \"" + value + "\"", pos);
+        }
+    }
+
+    private static void write2(char[] buffer, int pos, int value) {
+        buffer[pos] = (char) ('0' + value / 10);
+        buffer[pos + 1] = (char) ('0' + value % 10);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+}
@@ -27,6 +27,10 @@ public class Delivery {
     private List<Message> messages;
 
     public Delivery(JSONObject json) throws JSONException, ParseException {
+        this(json, DateCodec.DEFAULT);
+    }
+
+    public Delivery(JSONObject json, DateCodec dateCodec) throws JSONException, ParseException {
         this.json = json;
 
         this.id = json.getString("deliveryId");
@@ -37,10 +41,18 @@ public class Delivery {
         this.messages = new ArrayList<Message>();
         JSONArray jm = json.getJSONArray("messages");
         for (int i=0; i < jm.length(); i++) {
-            this.messages.add(new Message(jm.getJSONObject(i)));
+            this.messages.add(new Message(jm.getJSONObject(i), dateCodec));
         }
     }
 
+    public Delivery(String id, String status, int numSent, int numFailed, List<Message> messages) {
+        this.id = id;
+        this.status = status;
+        this.numSent = numSent;
+        this.numFailed = numFailed;
+        this.messages = messages;
+    }
+
     public String getId() {
         return id;
     }
@@ -63,7 +75,26 @@ public class Delivery {
 
     @Override
     public String toString() {
-        return json.toString();
+        if (json != null) {
+            return json.toString();
+        }
+
+        try {
+            JSONArray jm = new JSONArray();
+            for (Message message : messages) {
+                jm.put(message.toJson());
+            }
+
+            return new JSONObject()
+                    .put("deliveryId", id)
+                    .put("status", status)
+                    .put("numSent", numSent)
+                    .put("numFailed", numFailed)
+                    .put("messages", jm)
+                    .toString();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 }
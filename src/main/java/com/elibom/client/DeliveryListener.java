@@ -0,0 +1,21 @@
+package com.elibom.client;
+
+/**
+ * Receives the changes in the status of the deliveries tracked by a {@link DeliveryTracker} or pushed to a
+ * {@link DeliveryReceiver}.
+ *
+ * @author German Escobar
+ */
+public interface DeliveryListener {
+
+    /**
+     * Called from a background thread when the status of a delivery changes, including the first time it is received
+     * and when it reaches a final status.
+     *
+     * @param delivery the delivery with its new status.
+     * @param previousStatus the previous status or null if this is the first time the delivery was received. It is
+     *  always null for the receipts of a {@link DeliveryReceiver}.
+     */
+    void onStatusChange(Delivery delivery, String previousStatus);
+
+}
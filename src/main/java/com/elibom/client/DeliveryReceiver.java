@@ -0,0 +1,393 @@
+package com.elibom.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that receives the delivery receipts pushed by Elibom, an alternative to polling the
+ * deliveries with {@link DeliveryTracker}. It is based on the HTTP server of the JDK.
+ *
+ * <p>The receipts are <code>POST</code> requests to <code>path</code> with the same JSON body returned by
+ * {@link ElibomRestClient#getDelivery(String)}. Each receipt is decoded in the thread of the server and dispatched to
+ * the listeners in a pool of <code>threads</code> threads with a queue of <code>queueCapacity</code> receipts. When the
+ * queue is full, the server responds <code>503 Service Unavailable</code> with a <code>Retry-After</code> header so the
+ * receipt is sent again later; otherwise it responds <code>202 Accepted</code>.</p>
+ *
+ * <p><strong>Anyone who can reach the port can post receipts</strong>, which are dispatched to the listeners (e.g. a
+ * {@link CreditLedger}) as if they came from Elibom. Set a secret with {@link #setSecret(String)} so only the receipts
+ * signed with it are accepted, or bind the receiver to an address that only a trusted network (e.g. a reverse proxy
+ * that authenticates the requests) can reach.</p>
+ *
+ * <pre>
+ * DeliveryReceiver receiver = new DeliveryReceiver(new InetSocketAddress("127.0.0.1", 8080), "/deliveries", 2, 1000);
+ * receiver.setSecret(secret);
+ * receiver.addListener(listener);
+ * receiver.start();
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class DeliveryReceiver {
+
+    public static final String DEFAULT_PATH = "/deliveries";
+
+    public static final int DEFAULT_THREADS = 2;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    public static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    /**
+     * The header with the signature of a receipt: the HMAC-SHA256 of the body with the secret, in lower case hex.
+     */
+    public static final String SIGNATURE_HEADER = "X-Elibom-Signature";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final InetSocketAddress address;
+
+    private final String path;
+
+    private final int threads;
+
+    private final int queueCapacity;
+
+    private final List<DeliveryListener> listeners = new CopyOnWriteArrayList<DeliveryListener>();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong unauthorized = new AtomicLong();
+
+    private volatile SecretKeySpec secret;
+
+    private volatile ResponseDecoder responseDecoder = new StreamingDecoder();
+
+    private volatile DateCodec dateCodec = DateCodec.DEFAULT;
+
+    private HttpServer server;
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * Initializes the receiver on all the interfaces with the default values.
+     *
+     * @param port the port in which the receiver will listen, 0 to use any free port.
+     */
+    public DeliveryReceiver(int port) {
+        this(new InetSocketAddress(port), DEFAULT_PATH, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Initializes the receiver.
+     *
+     * @param address the address in which the receiver will listen.
+     * @param path the path that receives the receipts.
+     * @param threads the number of threads that notify the listeners.
+     * @param queueCapacity the max number of receipts waiting to be dispatched to the listeners.
+     */
+    public DeliveryReceiver(InetSocketAddress address, String path, int threads, int queueCapacity) {
+        Preconditions.notNull(address, "no address provided");
+        Preconditions.notEmpty(path, "no path provided");
+        Preconditions.isInteger(threads, "threads must be greater than zero");
+        Preconditions.isInteger(queueCapacity, "queueCapacity must be greater than zero");
+
+        this.address = address;
+        this.path = path;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Starts listening for receipts.
+     *
+     * @throws IllegalStateException if the receiver was already started.
+     * @throws RuntimeException wraps the IOException if the server can't be started (e.g. the port is in use).
+     */
+    public synchronized void start() throws IllegalStateException, RuntimeException {
+        if (server != null) {
+            throw new IllegalStateException("The receiver was already started");
+        }
+
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new AsyncDispatcher.DaemonThreadFactory("elibom-receiver"));
+
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            executor.shutdown();
+            executor = null;
+            throw new RuntimeException(e);
+        }
+
+        server.createContext(path, new ReceiptHandler());
+        server.start();
+    }
+
+    /**
+     * Stops the server and waits up to <code>delay</code> seconds for the receipts in the queue to be dispatched.
+     *
+     * @param delay the max number of seconds to wait.
+     */
+    public synchronized void stop(int delay) {
+        if (server == null) {
+            return;
+        }
+
+        server.stop(0);
+        server = null;
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delay, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    public void addListener(DeliveryListener listener) {
+        Preconditions.notNull(listener, "no listener provided");
+        listeners.add(listener);
+    }
+
+    public void removeListener(DeliveryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the secret used to verify the receipts. When it is set, the receipts without a valid
+     * {@link #SIGNATURE_HEADER} are rejected with a <code>401 Unauthorized</code> and are not dispatched.
+     *
+     * @param secret the secret shared with the sender or null to accept all the receipts (the default).
+     */
+    public void setSecret(String secret) {
+        if (secret != null) {
+            Preconditions.notEmpty(secret, "no secret provided");
+        }
+        this.secret = secret == null ? null : new SecretKeySpec(secret.getBytes(JsonBody.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * Sets the {@link ResponseDecoder} used to decode the receipts. Defaults to a {@link StreamingDecoder}.
+     *
+     * @param responseDecoder the decoder to use.
+     */
+    public void setResponseDecoder(ResponseDecoder responseDecoder) {
+        Preconditions.notNull(responseDecoder, "no responseDecoder provided");
+        this.responseDecoder = responseDecoder;
+    }
+
+    /**
+     * Sets the {@link DateCodec} used to parse the dates of the receipts. Defaults to {@link DateCodec#DEFAULT}.
+     *
+     * @param dateCodec the codec to use.
+     */
+    public void setDateCodec(DateCodec dateCodec) {
+        Preconditions.notNull(dateCodec, "no dateCodec provided");
+        this.dateCodec = dateCodec;
+    }
+
+    /**
+     * @return the port in which the receiver is listening (useful if it was started on port 0) or -1 if it is not
+     * started.
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of receipts waiting to be dispatched to the listeners.
+     */
+    public int getQueueDepth() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of receipts that have been accepted.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return the number of receipts rejected with a <code>503</code> because the queue was full.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of receipts rejected with a <code>401</code> because their signature was missing or invalid.
+     */
+    public long getUnauthorized() {
+        return unauthorized.get();
+    }
+
+    /**
+     * @return the lower case hex HMAC-SHA256 of <code>body</code> with <code>secret</code>, the value of the
+     * {@link #SIGNATURE_HEADER}.
+     */
+    public static String sign(byte[] body, String secret) {
+        Preconditions.notNull(body, "no body provided");
+        Preconditions.notEmpty(secret, "no secret provided");
+
+        return toHex(hmac(body, new SecretKeySpec(secret.getBytes(JsonBody.UTF_8), HMAC_ALGORITHM)));
+    }
+
+    private static byte[] hmac(byte[] body, SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i=0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Compares the signature in constant time, so the time of the response doesn't tell how much of it was right.
+     */
+    private boolean isSigned(HttpExchange exchange, byte[] body) {
+        SecretKeySpec secret = this.secret;
+        if (secret == null) {
+            return true;
+        }
+
+        String signature = exchange.getRequestHeaders().getFirst(SIGNATURE_HEADER);
+        if (signature == null) {
+            return false;
+        }
+
+        byte[] expected = toHex(hmac(body, secret)).getBytes(JsonBody.UTF_8);
+        return MessageDigest.isEqual(expected, signature.trim().toLowerCase(Locale.ENGLISH).getBytes(JsonBody.UTF_8));
+    }
+
+    private void dispatch(Delivery delivery) {
+        for (DeliveryListener listener : listeners) {
+            try {
+                listener.onStatusChange(delivery, null);
+            } catch (RuntimeException e) {
+                // a failing listener must not prevent the others from being notified
+            }
+        }
+    }
+
+    private class ReceiptHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    respond(exchange, 405);
+                    return;
+                }
+
+                byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    respond(exchange, 413);
+                    return;
+                }
+
+                if (!isSigned(exchange, body)) {
+                    unauthorized.incrementAndGet();
+                    respond(exchange, 401);
+                    return;
+                }
+
+                final Delivery delivery;
+                try {
+                    delivery = responseDecoder.decodeDelivery(body, dateCodec);
+                } catch (JSONException e) {
+                    respond(exchange, 400);
+                    return;
+                } catch (ParseException e) {
+                    respond(exchange, 400);
+                    return;
+                }
+
+                ThreadPoolExecutor executor = DeliveryReceiver.this.executor;
+                try {
+                    if (executor == null) {
+                        throw new RejectedExecutionException("The receiver is stopped");
+                    }
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            dispatch(delivery);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    rejected.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 503);
+                    return;
+                }
+
+                received.incrementAndGet();
+                respond(exchange, 202);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void respond(HttpExchange exchange, int statusCode) throws IOException {
+            exchange.sendResponseHeaders(statusCode, -1);
+        }
+
+        /**
+         * @return the body or null if it is larger than {@link DeliveryReceiver#MAX_BODY_BYTES}.
+         */
+        private byte[] readBody(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > MAX_BODY_BYTES) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the deliveries until they reach a final status, polling them with {@link ElibomRestClient#getDelivery(String)}.
+ *
+ * <p>Each delivery is polled at an interval that starts at <code>initialInterval</code> and grows by half after every
+ * poll in which the status doesn't change, up to <code>maxInterval</code>; when the status changes, the interval is
+ * reset. A delivery stops being polled as soon as its status is final ({@link #isFinal(String)}), when it has been
+ * tracked for more than <code>maxTrackingTime</code> or after {@link #MAX_CONSECUTIVE_ERRORS} failed polls in a row.
+ * Tracking a delivery that is already being tracked doesn't add more polls, it returns the same result.</p>
+ *
+ * <pre>
+ * DeliveryTracker tracker = new DeliveryTracker(elibom);
+ * tracker.addListener(listener);
+ * tracker.track(deliveryId).addCallback(callback);
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class DeliveryTracker {
+
+    public static final long DEFAULT_INITIAL_INTERVAL = 2000;
+
+    public static final long DEFAULT_MAX_INTERVAL = 60000;
+
+    public static final long DEFAULT_MAX_TRACKING_TIME = 24 * 60 * 60 * 1000L;
+
+    public static final int DEFAULT_THREADS = 2;
+
+    public static final int MAX_CONSECUTIVE_ERRORS = 5;
+
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+
+    private final ElibomRestClient client;
+
+    private final long initialInterval;
+
+    private final long maxInterval;
+
+    private final long maxTrackingTime;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ConcurrentMap<String,Tracked> tracked = new ConcurrentHashMap<String,Tracked>();
+
+    private final List<DeliveryListener> listeners = new CopyOnWriteArrayList<DeliveryListener>();
+
+    private final AtomicLong polls = new AtomicLong();
+
+    /**
+     * Initializes the tracker with the default values.
+     *
+     * @param client the client used to poll the deliveries.
+     */
+    public DeliveryTracker(ElibomRestClient client) {
+        this(client, DEFAULT_INITIAL_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_MAX_TRACKING_TIME, DEFAULT_THREADS);
+    }
+
+    /**
+     * Initializes the tracker.
+     *
+     * @param client the client used to poll the deliveries.
+     * @param initialInterval the milliseconds to wait before the first poll and after a change of status.
+     * @param maxInterval the max milliseconds between two polls of the same delivery.
+     * @param maxTrackingTime the max milliseconds a delivery is tracked before its result fails with a
+     *  TimeoutException.
+     * @param threads the number of threads used to poll the deliveries.
+     */
+    public DeliveryTracker(ElibomRestClient client, long initialInterval, long maxInterval, long maxTrackingTime, int threads) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isPositive(initialInterval, "initialInterval must be greater than zero");
+        Preconditions.isPositive(maxInterval, "maxInterval must be greater than zero");
+        Preconditions.isPositive(maxTrackingTime, "maxTrackingTime must be greater than zero");
+        Preconditions.isInteger(threads, "threads must be greater than zero");
+
+        this.client = client;
+        this.initialInterval = initialInterval;
+        this.maxInterval = Math.max(initialInterval, maxInterval);
+        this.maxTrackingTime = maxTrackingTime;
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, new AsyncDispatcher.DaemonThreadFactory("elibom-tracker"));
+    }
+
+    /**
+     * Starts tracking a delivery.
+     *
+     * @param deliveryId the delivery token returned when the message was sent.
+     *
+     * @return an AsyncResult that completes with the delivery when it reaches a final status. If the delivery is
+     * already being tracked, the same AsyncResult is returned.
+     */
+    public AsyncResult<Delivery> track(String deliveryId) {
+        Preconditions.notEmpty(deliveryId, "no deliveryId provided");
+
+        Tracked candidate = new Tracked(deliveryId);
+        Tracked existing = tracked.putIfAbsent(deliveryId, candidate);
+        if (existing != null) {
+            return existing.result;
+        }
+
+        schedule(candidate, initialInterval);
+        return candidate.result;
+    }
+
+    /**
+     * Starts tracking multiple deliveries. See {@link #track(String)}.
+     *
+     * @param deliveryIds the delivery tokens returned when the messages were sent.
+     *
+     * @return a List with the AsyncResult of each delivery, in the same order.
+     */
+    public List<AsyncResult<Delivery>> trackAll(Iterable<String> deliveryIds) {
+        Preconditions.notNull(deliveryIds, "no deliveryIds provided");
+
+        List<AsyncResult<Delivery>> results = new ArrayList<AsyncResult<Delivery>>();
+        for (String deliveryId : deliveryIds) {
+            results.add(track(deliveryId));
+        }
+
+        return results;
+    }
+
+    public void addListener(DeliveryListener listener) {
+        Preconditions.notNull(listener, "no listener provided");
+        listeners.add(listener);
+    }
+
+    public void removeListener(DeliveryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells if a status is final, i.e. it will not change anymore. Override this method if the account reports
+     * other final statuses.
+     *
+     * @param status the status of a delivery.
+     *
+     * @return true if the delivery doesn't need to be polled anymore.
+     */
+    protected boolean isFinal(String status) {
+        return "finished".equalsIgnoreCase(status) || "failed".equalsIgnoreCase(status)
+                || "cancelled".equalsIgnoreCase(status);
+    }
+
+    /**
+     * @return the number of deliveries that are being tracked.
+     */
+    public int getTracking() {
+        return tracked.size();
+    }
+
+    /**
+     * @return the number of polls that have been made.
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    /**
+     * Stops polling. The results of the deliveries that are still being tracked are cancelled.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+        for (Tracked t : tracked.values()) {
+            tracked.remove(t.deliveryId, t);
+            t.result.cancel(false);
+        }
+    }
+
+    private void schedule(final Tracked t, long delay) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(t);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            tracked.remove(t.deliveryId, t);
+            t.result.cancel(false);
+        }
+    }
+
+    private void poll(Tracked t) {
+        if (t.result.isDone()) {
+            return;
+        }
+
+        Delivery delivery;
+        try {
+            polls.incrementAndGet();
+            delivery = client.getDelivery(t.deliveryId);
+            t.errors = 0;
+        } catch (RuntimeException e) {
+            if (!isTransient(e) || ++t.errors >= MAX_CONSECUTIVE_ERRORS) {
+                finish(t, null, e);
+            } else {
+                reschedule(t);
+            }
+            return;
+        }
+
+        String status = delivery.getStatus();
+        if (status == null ? t.status != null : !status.equals(t.status)) {
+            String previousStatus = t.status;
+            t.status = status;
+            t.interval = initialInterval;
+            notifyListeners(delivery, previousStatus);
+        } else {
+            t.interval = Math.min(maxInterval, (long) (t.interval * BACKOFF_MULTIPLIER));
+        }
+
+        if (isFinal(status)) {
+            finish(t, delivery, null);
+        } else {
+            reschedule(t);
+        }
+    }
+
+    private void reschedule(Tracked t) {
+        if (System.currentTimeMillis() - t.startedAt >= maxTrackingTime) {
+            finish(t, null, new TimeoutException("The delivery " + t.deliveryId + " didn't reach a final status in " + maxTrackingTime + " ms"));
+            return;
+        }
+
+        schedule(t, t.interval);
+    }
+
+    private void finish(Tracked t, Delivery delivery, Throwable e) {
+        tracked.remove(t.deliveryId, t);
+        if (e == null) {
+            t.result.complete(delivery);
+        } else {
+            t.result.fail(e);
+        }
+    }
+
+    private boolean isTransient(RuntimeException e) {
+        if (e instanceof HttpServerException) {
+            int statusCode = ((HttpServerException) e).getStatusCode();
+            return statusCode >= 500 || statusCode == 429;
+        }
+
+        return true;
+    }
+
+    private void notifyListeners(Delivery delivery, String previousStatus) {
+        for (DeliveryListener listener : listeners) {
+            try {
+                listener.onStatusChange(delivery, previousStatus);
+            } catch (RuntimeException e) {
+                // a failing listener must not stop the tracking
+            }
+        }
+    }
+
+    /**
+     * The state of a delivery that is being tracked. It is only modified by the poll that is running, which happens
+     * before the next one is scheduled.
+     */
+    private class Tracked {
+
+        private final String deliveryId;
+
+        private final AsyncResult<Delivery> result = new AsyncResult<Delivery>();
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private volatile long interval = initialInterval;
+
+        private volatile String status;
+
+        private volatile int errors;
+
+        Tracked(String deliveryId) {
+            this.deliveryId = deliveryId;
+        }
+
+    }
+
+}
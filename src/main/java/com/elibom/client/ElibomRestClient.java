@@ -1,20 +1,22 @@
 package com.elibom.client;
 
-import java.io.BufferedReader;
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.xml.bind.DatatypeConverter;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -32,12 +34,59 @@ public class ElibomRestClient {
 
     private final String LIB_VERSION = "java-0.2.6";
 
+    /**
+     * The default number of threads used to run the asynchronous calls.
+     */
+    public static final int DEFAULT_ASYNC_THREADS = PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    /**
+     * The default max number of asynchronous calls that can be in flight (running or waiting for a thread).
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    /**
+     * The delivery decoded by {@link #warmUp(int, int)}.
+     */
+    private static final String WARM_UP_DELIVERY = "{\"deliveryId\":\"12345\",\"status\":\"finished\",\"numSent\":1,"
+            + "\"numFailed\":0,\"messages\":[{\"id\":171851,\"user\":{\"id\":2,\"url\":\"https://www.elibom.com/users/2\"},"
+            + "\"to\":\"573002175604\",\"operator\":\"Tigo (Colombia)\",\"text\":\"this is a test\",\"status\":\"sent\","
+            + "\"statusDetail\":\"sent\",\"credits\":1,\"from\":\"3542\",\"createdAt\":\"2013-07-24 15:05:34\","
+            + "\"sentAt\":\"2013-07-24 15:05:34\"}]}";
+
     private String host;
 
     private String username;
 
     private String apiPassword;
 
+    private final HttpTransport transport;
+
+    private AsyncDispatcher dispatcher;
+
+    private volatile RateLimiter rateLimiter;
+
+    private volatile RetryPolicy retryPolicy;
+
+    private volatile ResponseDecoder responseDecoder = new StreamingDecoder();
+
+    private volatile DateCodec dateCodec = DateCodec.DEFAULT;
+
+    private volatile ResponseCache responseCache;
+
+    private final List<RequestListener> requestListeners = new CopyOnWriteArrayList<RequestListener>();
+
+    /**
+     * The headers of every request, computed once.
+     */
+    private final Map<String,String> headers;
+
+    /**
+     * The headers of the requests that send messages, computed once.
+     */
+    private final Map<String,String> postHeaders;
+
+    private final URL messagesUrl;
+
     /**
      * Initializes the client with the supplied <code>username</code> and <code>apiPassword</code>.
      *
@@ -57,25 +106,48 @@ public class ElibomRestClient {
      * @param host the host to which the requests are going to be made.
      */
     public ElibomRestClient(String username, String apiPassword, String host) {
+        this(username, apiPassword, host, new PooledHttpTransport());
+    }
+
+    /**
+     * Initializes the client with the supplied <code>username</code>, <code>apiPassword</code>, <code>host</code> and
+     * the {@link HttpTransport} that is going to execute the requests (e.g. a {@link PooledHttpTransport} sized to your
+     * needs).
+     *
+     * @param username the email you use to access your account at <a href="http://www.elibom.com/">elibom.com</a>.
+     * @param apiPassword your API password, which you can find in the settings of your account.
+     * @param host the host to which the requests are going to be made.
+     * @param transport the transport used to execute the requests.
+     */
+    public ElibomRestClient(String username, String apiPassword, String host, HttpTransport transport) {
         Preconditions.notEmpty(username, "no username provided");
         Preconditions.notEmpty(apiPassword, "no apiPassword provided");
         Preconditions.notEmpty(host, "no host provided");
         Preconditions.isUrl(host, "host is not a valid URL");
+        Preconditions.notNull(transport, "no transport provided");
 
         this.username = username;
         this.apiPassword = apiPassword;
+        this.transport = transport;
 
         if (host.endsWith("/")) {
             host = host.substring(0, host.length() -1);
         }
         this.host = host;
+
+        this.headers = buildHeaders();
+        Map<String,String> postHeaders = new LinkedHashMap<String,String>(headers);
+        postHeaders.put("Content-Type", "application/json; charset=UTF-8");
+        this.postHeaders = Collections.unmodifiableMap(postHeaders);
+        this.messagesUrl = buildUrl("/messages");
     }
 
     /**
      * Sends an SMS message to one or more destinations with the specified <code>text</code>.
      *
      * @param to the destinations (separated by comma) to which you want to send the SMS message.
-     * @param text the text of the SMS message, max 160 characters.
+     * @param text the text of the SMS message, it must fit in a single segment (160 GSM-7 or 70 UCS-2
+     *  characters, see {@link SmsSegmenter}).
      *
      * @return a String that you can use to query the delivery (using the {@link #getDelivery(String)} method).
      * @throws HttpServerException if the server responds with a HTTP status code other than <code>200 OK</code>.
@@ -84,12 +156,11 @@ public class ElibomRestClient {
     public String sendMessage(String to, String text) throws HttpServerException, RuntimeException {
         Preconditions.notEmpty(to, "no destinations provided");
         Preconditions.notEmpty(text, "no text provided");
-        Preconditions.maxLength(text, 160, "text has more than 160 characters");
+        SmsSegmenter.checkSegments(text, 1);
 
         try {
-            JSONObject json = new JSONObject().put("to", to).put("text", text);
-            HttpURLConnection connection = post("/messages", json);
-            return getJsonObject(connection.getInputStream()).getString("deliveryToken");
+            HttpResponse response = postMessage(JsonBody.encode("to", to, "text", text));
+            return getJsonObject(response).getString("deliveryToken");
         } catch (JSONException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -101,6 +172,7 @@ public class ElibomRestClient {
      * Sends an large SMS message to one or more destinations with the specified <code>text</code>.
      *
      * @param to the destinations (separated by comma) to which you want to send the SMS message.
+     * @param text the text of the SMS message, max {@link SmsSegmenter#MAX_SEGMENTS} segments.
      *
      * @return a String that you can use to query the delivery (using the {@link #getDelivery(String)} method).
      * @throws HttpServerException if the server responds with a HTTP status code other than <code>200 OK</code>.
@@ -109,11 +181,11 @@ public class ElibomRestClient {
     public String sendLargeMessage(String to, String text) throws HttpServerException, RuntimeException {
         Preconditions.notEmpty(to, "no destinations provided");
         Preconditions.notEmpty(text, "no text provided");
+        SmsSegmenter.checkSegments(text, SmsSegmenter.MAX_SEGMENTS);
 
         try {
-            JSONObject json = new JSONObject().put("to", to).put("text", text);
-            HttpURLConnection connection = post("/messages", json);
-            return getJsonObject(connection.getInputStream()).getString("deliveryToken");
+            HttpResponse response = postMessage(JsonBody.encode("to", to, "text", text));
+            return getJsonObject(response).getString("deliveryToken");
         } catch (JSONException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -126,7 +198,8 @@ public class ElibomRestClient {
      * Sends an SMS message to one or more destinations with the specified <code>text</code> and a campaign id.
      *
      * @param to the destinations (separated by comma) to which you want to send the SMS message.
-     * @param text the text of the SMS message, max 160 characters.
+     * @param text the text of the SMS message, it must fit in a single segment (160 GSM-7 or 70 UCS-2
+     *  characters, see {@link SmsSegmenter}).
      * @param campaign a tag used to identify a group of messages.
      *
      * @return a String that you can use to query the delivery (using the {@link #getDelivery(String)} method).
@@ -137,12 +210,11 @@ public class ElibomRestClient {
         Preconditions.notEmpty(to, "no destinations provided");
         Preconditions.notEmpty(text, "no text provided");
         Preconditions.notEmpty(campaign, "no campaign provided");
-        Preconditions.maxLength(text, 160, "text has more than 160 characters");
+        SmsSegmenter.checkSegments(text, 1);
 
         try {
-            JSONObject json = new JSONObject().put("to", to).put("text", text).put("campaign", campaign);
-            HttpURLConnection connection = post("/messages", json);
-            return getJsonObject(connection.getInputStream()).getString("deliveryToken");
+            HttpResponse response = postMessage(JsonBody.encode("campaign", campaign, "to", to, "text", text));
+            return getJsonObject(response).getString("deliveryToken");
         } catch (JSONException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -155,7 +227,8 @@ public class ElibomRestClient {
      * <code>text</code>.
      *
      * @param to the destinations (separated by comma) to which we are going to send the scheduled SMS message.
-     * @param text the text of the SMS message, max 160 characters.
+     * @param text the text of the SMS message, it must fit in a single segment (160 GSM-7 or 70 UCS-2
+     *  characters, see {@link SmsSegmenter}).
      * @param scheduleDate the date in which the message is going to be sent.
      *
      * @return the id of the scheduled message which you can query using the {@link #getSchedule(long)} method.
@@ -165,14 +238,14 @@ public class ElibomRestClient {
     public long scheduleMessage(String to, String text, Date scheduleDate) throws HttpServerException, RuntimeException {
         Preconditions.notEmpty(to, "no destinations provided");
         Preconditions.notEmpty(text, "no text provided");
-        Preconditions.maxLength(text, 160, "text has more than 160 characters");
+        SmsSegmenter.checkSegments(text, 1);
         Preconditions.notNull(scheduleDate, "no scheduleDate provided");
 
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-            JSONObject json = new JSONObject().put("to", to).put("text", text).put("scheduleDate", sdf.format(scheduleDate));
-            HttpURLConnection connection = post("/messages", json);
-            return getJsonObject(connection.getInputStream()).getLong("scheduleId");
+            HttpResponse response = postMessage(JsonBody.encode("scheduleDate", dateCodec.formatMinutes(scheduleDate),
+                    "to", to, "text", text));
+            invalidate("/schedules/scheduled");
+            return getJsonObject(response).getLong("scheduleId");
         } catch (JSONException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -185,7 +258,8 @@ public class ElibomRestClient {
      * <code>text</code> and a campaign id.
      *
      * @param to the destinations (separated by comma) to which we are going to send the scheduled SMS message.
-     * @param text the text of the SMS message, max 160 characters.
+     * @param text the text of the SMS message, it must fit in a single segment (160 GSM-7 or 70 UCS-2
+     *  characters, see {@link SmsSegmenter}).
      * @param scheduleDate the date in which the message is going to be sent.
      * @param campaign an tag used to identify a group of messages.
      *
@@ -196,15 +270,15 @@ public class ElibomRestClient {
     public long scheduleMessage(String to, String text, Date scheduleDate,String campaign) throws HttpServerException, RuntimeException {
         Preconditions.notEmpty(to, "no destinations provided");
         Preconditions.notEmpty(text, "no text provided");
-        Preconditions.maxLength(text, 160, "text has more than 160 characters");
+        SmsSegmenter.checkSegments(text, 1);
         Preconditions.notEmpty(campaign, "no campaign provided");
         Preconditions.notNull(scheduleDate, "no scheduleDate provided");
 
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-            JSONObject json = new JSONObject().put("to", to).put("text", text).put("scheduleDate", sdf.format(scheduleDate)).put("campaign", campaign);
-            HttpURLConnection connection = post("/messages", json);
-            return getJsonObject(connection.getInputStream()).getLong("scheduleId");
+            HttpResponse response = postMessage(JsonBody.encode("scheduleDate", dateCodec.formatMinutes(scheduleDate),
+                    "campaign", campaign, "to", to, "text", text));
+            invalidate("/schedules/scheduled");
+            return getJsonObject(response).getLong("scheduleId");
         } catch (JSONException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -225,14 +299,8 @@ public class ElibomRestClient {
     	Preconditions.isInteger(numMessages, "numMessages must be greater than zero");
     	
     	try {
-    		HttpURLConnection connection = get("/messages?status=sent&perPage="+numMessages+"&user="+this.username);
-    		JSONObject json = getJsonObject(connection.getInputStream());List<Message> messages = new ArrayList<Message>();
-    		JSONArray jm = json.getJSONArray("messages");
-    		for (int i=0; i < jm.length(); i++) {
-    			messages.add(new Message(jm.getJSONObject(i)));
-    		}
-    		
-    		return messages;
+    		HttpResponse response = get("/messages?status=sent&perPage="+numMessages+"&user="+this.username);
+    		return responseDecoder.decodeMessages(response.getBody(), dateCodec);
     	} catch (IOException e) {
     		throw new RuntimeException(e);
     	} catch (JSONException e) {
@@ -259,15 +327,8 @@ public class ElibomRestClient {
         Preconditions.notNull(endDate, "no endDate provided");
         
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            HttpURLConnection connection = get("/messages?status=sent&perPage="+numMessages+"&user="+this.username+"&startDate="+sdf.format(startDate)+"&endDate="+sdf.format(endDate));
-            JSONObject json = getJsonObject(connection.getInputStream());List<Message> messages = new ArrayList<Message>();
-            JSONArray jm = json.getJSONArray("messages");
-            for (int i=0; i < jm.length(); i++) {
-                messages.add(new Message(jm.getJSONObject(i)));
-            }
-            
-            return messages;
+            HttpResponse response = get("/messages?status=sent&perPage="+numMessages+"&user="+this.username+"&startDate="+dateCodec.formatDay(startDate)+"&endDate="+dateCodec.formatDay(endDate));
+            return responseDecoder.decodeMessages(response.getBody(), dateCodec);
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -277,6 +338,62 @@ public class ElibomRestClient {
         }
     }
     
+    /**
+     * Returns the sent messages of the user as an Iterable that requests the pages lazily, as they are consumed. The
+     * next page is requested in the background while the current one is being consumed.
+     *
+     * @param perPage the number of messages requested in each page.
+     * @return a MessageHistory that can be iterated multiple times, each time from the first page.
+     * @see MessageHistory
+     */
+    public MessageHistory getMessageHistory(int perPage) {
+        return new MessageHistory(this, perPage, true);
+    }
+
+    /**
+     * Returns the messages sent by the user between two dates as an Iterable that requests the pages lazily, as they
+     * are consumed. The next page is requested in the background while the current one is being consumed.
+     *
+     * @param perPage the number of messages requested in each page.
+     * @param startDate the initial date from the report
+     * @param endDate the end date from the report
+     * @return a MessageHistory that can be iterated multiple times, each time from the first page.
+     * @see MessageHistory
+     */
+    public MessageHistory getMessageHistory(int perPage, Date startDate, Date endDate) {
+        return new MessageHistory(this, perPage, startDate, endDate, true);
+    }
+
+    /**
+     * Requests a page of the sent messages. <code>startDate</code> and <code>endDate</code> are optional.
+     */
+    List<Message> getMessagesPage(int page, int perPage, Date startDate, Date endDate) throws HttpServerException, RuntimeException {
+        String resource = "/messages?status=sent&perPage="+perPage+"&page="+page+"&user="+this.username;
+        if (startDate != null && endDate != null) {
+            resource += "&startDate="+dateCodec.formatDay(startDate)+"&endDate="+dateCodec.formatDay(endDate);
+        }
+
+        try {
+            HttpResponse response = get(resource);
+            return responseDecoder.decodeMessages(response.getBody(), dateCodec);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    AsyncResult<List<Message>> getMessagesPageAsync(final int page, final int perPage, final Date startDate, final Date endDate) {
+        return submit(new Callable<List<Message>>() {
+            @Override
+            public List<Message> call() throws Exception {
+                return getMessagesPage(page, perPage, startDate, endDate);
+            }
+        });
+    }
+
     /**
      * Query the delivery with the specified <code>deliveryId</code>.
      *
@@ -290,9 +407,8 @@ public class ElibomRestClient {
         Preconditions.notEmpty(deliveryId, "no deliveryId provided");
 
         try {
-            HttpURLConnection connection = get("/messages/" + deliveryId);
-            JSONObject json = getJsonObject(connection.getInputStream());
-            return new Delivery(json);
+            HttpResponse response = get("/messages/" + deliveryId);
+            return responseDecoder.decodeDelivery(response.getBody(), dateCodec);
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -311,12 +427,12 @@ public class ElibomRestClient {
      */
     public List<Schedule> getScheduledMessages() throws HttpServerException, RuntimeException {
         try {
-            HttpURLConnection connection = get("/schedules/scheduled");
+            HttpResponse response = get(ResponseCache.Endpoint.SCHEDULES, "/schedules/scheduled");
 
             List<Schedule> schedules = new ArrayList<Schedule>();
-            JSONArray json = getJsonArray(connection.getInputStream());
+            JSONArray json = getJsonArray(response);
             for (int i=0; i < json.length(); i++) {
-                schedules.add(new Schedule(json.getJSONObject(i)));
+                schedules.add(new Schedule(json.getJSONObject(i), dateCodec));
             }
 
             return schedules;
@@ -340,8 +456,8 @@ public class ElibomRestClient {
      */
     public Schedule getScheduledMessage(long id) throws HttpServerException, RuntimeException {
         try {
-            HttpURLConnection connection = get("/schedules/" + id);
-            return new Schedule(getJsonObject(connection.getInputStream()));
+            HttpResponse response = get(ResponseCache.Endpoint.SCHEDULE, "/schedules/" + id);
+            return new Schedule(getJsonObject(response), dateCodec);
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -362,6 +478,7 @@ public class ElibomRestClient {
     public void unschedule(long id) throws HttpServerException, RuntimeException {
         try {
             delete("/schedules/" + id);
+            invalidate("/schedules/" + id, "/schedules/scheduled");
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -379,10 +496,10 @@ public class ElibomRestClient {
      */
     public List<User> getUsers() throws HttpServerException, RuntimeException {
         try {
-            HttpURLConnection connection = get("/users");
+            HttpResponse response = get(ResponseCache.Endpoint.USERS, "/users");
 
             List<User> users = new ArrayList<User>();
-            JSONArray json = getJsonArray(connection.getInputStream());
+            JSONArray json = getJsonArray(response);
             for (int i=0; i < json.length(); i++) {
                 users.add(new User(json.getJSONObject(i)));
             }
@@ -406,8 +523,8 @@ public class ElibomRestClient {
      */
     public User getUser(long id) throws HttpServerException, RuntimeException {
         try {
-            HttpURLConnection connection = get("/users/" + id);
-            return new User(getJsonObject(connection.getInputStream()));
+            HttpResponse response = get(ResponseCache.Endpoint.USER, "/users/" + id);
+            return new User(getJsonObject(response));
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -425,8 +542,8 @@ public class ElibomRestClient {
      */
     public Account getAccount() throws HttpServerException, RuntimeException {
         try {
-            HttpURLConnection connection = get("/account");
-            return new Account(getJsonObject(connection.getInputStream()));
+            HttpResponse response = get(ResponseCache.Endpoint.ACCOUNT, "/account");
+            return new Account(getJsonObject(response));
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (JSONException e) {
@@ -434,78 +551,677 @@ public class ElibomRestClient {
         }
     }
 
-    private HttpURLConnection post(String resource, JSONObject json) throws JSONException, IOException {
-        URL url = buildUrl(resource);
+    /**
+     * Asynchronous version of {@link #sendMessage(String, String)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<String> sendMessageAsync(final String to, final String text) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return sendMessage(to, text);
+            }
+        });
+    }
 
-        OutputStreamWriter out = null;
-        try {
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestProperty("Authorization", buildAuthorizationHeader());
-            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("X-API-Source", LIB_VERSION);
+    /**
+     * Asynchronous version of {@link #sendLargeMessage(String, String)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<String> sendLargeMessageAsync(final String to, final String text) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return sendLargeMessage(to, text);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #sendMessage(String, String, String)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<String> sendMessageAsync(final String to, final String text, final String campaign) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return sendMessage(to, text, campaign);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #scheduleMessage(String, String, Date)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Long> scheduleMessageAsync(final String to, final String text, final Date scheduleDate) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return scheduleMessage(to, text, scheduleDate);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #scheduleMessage(String, String, Date, String)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Long> scheduleMessageAsync(final String to, final String text, final Date scheduleDate, final String campaign) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return scheduleMessage(to, text, scheduleDate, campaign);
+            }
+        });
+    }
 
-            connection.setDoOutput(true);
-            out = new OutputStreamWriter(connection.getOutputStream(), "UTF-8");
-            json.write(out);
-            out.flush();
+    /**
+     * Asynchronous version of {@link #getLastMessages(int)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<List<Message>> getLastMessagesAsync(final int numMessages) {
+        return submit(new Callable<List<Message>>() {
+            @Override
+            public List<Message> call() throws Exception {
+                return getLastMessages(numMessages);
+            }
+        });
+    }
 
-            int statusCode = connection.getResponseCode();
-            if (statusCode != 200) {
-                throw new HttpServerException(statusCode, getJsonObject(connection.getErrorStream()));
+    /**
+     * Asynchronous version of {@link #getLastMessages(int, Date, Date)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<List<Message>> getLastMessagesAsync(final int numMessages, final Date startDate, final Date endDate) {
+        return submit(new Callable<List<Message>>() {
+            @Override
+            public List<Message> call() throws Exception {
+                return getLastMessages(numMessages, startDate, endDate);
             }
+        });
+    }
 
-            return connection;
-        } finally {
-            closeResource(out);
-        }
+    /**
+     * Asynchronous version of {@link #getDelivery(String)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Delivery> getDeliveryAsync(final String deliveryId) {
+        return submit(new Callable<Delivery>() {
+            @Override
+            public Delivery call() throws Exception {
+                return getDelivery(deliveryId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #getScheduledMessages()}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<List<Schedule>> getScheduledMessagesAsync() {
+        return submit(new Callable<List<Schedule>>() {
+            @Override
+            public List<Schedule> call() throws Exception {
+                return getScheduledMessages();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #getScheduledMessage(long)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Schedule> getScheduledMessageAsync(final long id) {
+        return submit(new Callable<Schedule>() {
+            @Override
+            public Schedule call() throws Exception {
+                return getScheduledMessage(id);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #unschedule(long)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Void> unscheduleAsync(final long id) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                unschedule(id);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #getUsers()}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<List<User>> getUsersAsync() {
+        return submit(new Callable<List<User>>() {
+            @Override
+            public List<User> call() throws Exception {
+                return getUsers();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #getUser(long)}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<User> getUserAsync(final long id) {
+        return submit(new Callable<User>() {
+            @Override
+            public User call() throws Exception {
+                return getUser(id);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link #getAccount()}.
+     *
+     * @return an AsyncResult that completes with the result of the call or fails with its exception.
+     */
+    public AsyncResult<Account> getAccountAsync() {
+        return submit(new Callable<Account>() {
+            @Override
+            public Account call() throws Exception {
+                return getAccount();
+            }
+        });
+    }
+
+    /**
+     * Sets the executor used to run the asynchronous calls (by default, a pool of {@link #DEFAULT_ASYNC_THREADS}
+     * threads) and the max number of calls that can be in flight. When the limit is reached, the methods ending in
+     * <code>Async</code> block until a call completes. The executor is not shut down when the client is closed.
+     *
+     * @param executor the executor that will run the calls.
+     * @param maxInFlight the max number of calls that can be in flight.
+     */
+    public void setAsyncExecutor(ExecutorService executor, int maxInFlight) {
+        setDispatcher(new AsyncDispatcher(executor, maxInFlight, false));
+    }
+
+    /**
+     * Runs the asynchronous calls on virtual threads (Java 21 or later), one for each call, instead of a pool of
+     * platform threads. A blocked virtual thread doesn't hold an OS thread, so <code>maxInFlight</code> can be in the
+     * tens of thousands; size the {@link HttpTransport} accordingly. The threads are stopped when the client is closed.
+     *
+     * @param maxInFlight the max number of calls that can be in flight.
+     *
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads.
+     * @see VirtualThreads
+     */
+    public void useVirtualThreads(int maxInFlight) throws UnsupportedOperationException {
+        Preconditions.isInteger(maxInFlight, "maxInFlight must be greater than zero");
+        setDispatcher(new AsyncDispatcher(VirtualThreads.newExecutor("elibom-async"), maxInFlight, true));
+    }
+
+    /**
+     * Sets the {@link RateLimiter} that limits the rate at which this client sends requests. It is shared by all the
+     * threads using the client.
+     *
+     * @param rateLimiter the rate limiter or null to send the requests without limit (the default).
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the {@link RetryPolicy} that decides which failed requests are retried. The policy keeps counters of the
+     * attempts, retries and give ups of all the requests made with this client.
+     *
+     * @param retryPolicy the retry policy or null to never retry a request (the default).
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the {@link ResponseDecoder} used to decode the messages returned by {@link #getLastMessages(int)} and
+     * {@link #getDelivery(String)}. By default, a {@link StreamingDecoder}.
+     *
+     * @param responseDecoder the decoder to use.
+     */
+    public void setResponseDecoder(ResponseDecoder responseDecoder) {
+        Preconditions.notNull(responseDecoder, "no responseDecoder provided");
+        this.responseDecoder = responseDecoder;
+    }
+
+    public ResponseDecoder getResponseDecoder() {
+        return responseDecoder;
+    }
+
+    /**
+     * Sets the {@link DateCodec} used to parse the dates of the responses and to format the dates of the requests. By
+     * default, {@link DateCodec#DEFAULT}, which uses the default time zone of the JVM.
+     *
+     * @param dateCodec the codec to use.
+     */
+    public void setDateCodec(DateCodec dateCodec) {
+        Preconditions.notNull(dateCodec, "no dateCodec provided");
+        this.dateCodec = dateCodec;
+    }
+
+    public DateCodec getDateCodec() {
+        return dateCodec;
+    }
+
+    /**
+     * Sets the {@link ResponseCache} used by {@link #getAccount()}, {@link #getUsers()}, {@link #getUser(long)},
+     * {@link #getScheduledMessages()} and {@link #getScheduledMessage(long)}. By default, there is no cache.
+     *
+     * @param responseCache the cache to use or null to disable the cache.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Adds a {@link RequestListener} that is notified of each HTTP request, e.g. a {@link ClientMetrics}.
+     *
+     * @param listener the listener to add.
+     */
+    public void addRequestListener(RequestListener listener) {
+        Preconditions.notNull(listener, "no listener provided");
+        requestListeners.add(listener);
+    }
+
+    public void removeRequestListener(RequestListener listener) {
+        requestListeners.remove(listener);
+    }
+
+    /**
+     * @return the number of asynchronous calls that are in flight.
+     */
+    public int getInFlightRequests() {
+        return getDispatcher().getInFlight();
     }
 
-    private HttpURLConnection get(String resource) throws IOException, JSONException {
-        URL url = buildUrl(resource);
+    /**
+     * Prepares the client to receive traffic, so the first requests don't pay the costs of a cold start:
+     *
+     * <ol>
+     *   <li>resolves the host, which is then cached by the JVM (see the <code>networkaddress.cache.ttl</code> security
+     *   property);</li>
+     *   <li>opens <code>connections</code> connections to the host, including the TLS handshakes, and leaves them idle
+     *   in the pool (only if the transport is a {@link PooledHttpTransport});</li>
+     *   <li>encodes and decodes <code>iterations</code> sample messages and deliveries, so the JIT compiles the JSON,
+     *   date and segmentation code.</li>
+     * </ol>
+     *
+     * <p>Nothing is sent to the API. The steps are run in the calling thread and it stops at the first that fails,
+     * which is returned in the report instead of being thrown.</p>
+     *
+     * @param connections the number of connections that should be open, at most the max connections per host of the
+     * transport.
+     * @param iterations the number of times the encoding and decoding are exercised, 0 to skip it; a few thousands
+     * are needed for the JIT to compile the code.
+     *
+     * @return a WarmUpReport with the result of each step.
+     */
+    public WarmUpReport warmUp(int connections, int iterations) {
+        Preconditions.notNegative(connections, "connections must not be negative");
+        Preconditions.notNegative(iterations, "iterations must not be negative");
 
-        OutputStreamWriter out = null;
+        URL url = buildUrl("/");
+        List<String> addresses = new ArrayList<String>();
+        long start = System.nanoTime();
         try {
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestProperty("Authorization", buildAuthorizationHeader());
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("X-API-Source", LIB_VERSION);
+            for (InetAddress address : InetAddress.getAllByName(url.getHost())) {
+                addresses.add(address.getHostAddress());
+            }
+        } catch (UnknownHostException e) {
+            return new WarmUpReport(url.getHost(), addresses, elapsedMillis(start), 0, openConnections(), 0, 0, 0, e);
+        }
+        long resolveTime = elapsedMillis(start);
 
-            int statusCode = connection.getResponseCode();
-            if (statusCode != 200) {
-                throw new HttpServerException(statusCode, getJsonObject(connection.getErrorStream()));
+        int connectionsOpened = 0;
+        start = System.nanoTime();
+        if (connections > 0 && transport instanceof PooledHttpTransport) {
+            PooledHttpTransport pooledTransport = (PooledHttpTransport) transport;
+            try {
+                connectionsOpened = pooledTransport.warmUp(url, connections);
+            } catch (WarmUpException e) {
+                // the connections opened before the failure are kept in the pool
+                return new WarmUpReport(url.getHost(), addresses, resolveTime, e.getConnectionsOpened(),
+                        openConnections(), elapsedMillis(start), 0, 0, e.getCause());
+            } catch (IOException e) {
+                return new WarmUpReport(url.getHost(), addresses, resolveTime, 0, openConnections(),
+                        elapsedMillis(start), 0, 0, e);
             }
+        }
+        long connectTime = elapsedMillis(start);
+
+        start = System.nanoTime();
+        try {
+            exercise(iterations);
+        } catch (RuntimeException e) {
+            return new WarmUpReport(url.getHost(), addresses, resolveTime, connectionsOpened, openConnections(),
+                    connectTime, iterations, elapsedMillis(start), e);
+        }
+
+        return new WarmUpReport(url.getHost(), addresses, resolveTime, connectionsOpened, openConnections(), connectTime,
+                iterations, elapsedMillis(start), null);
+    }
 
-            return connection;
-        } finally {
-            closeResource(out);
+    /**
+     * Closes the connections held by the {@link HttpTransport} of this client and stops the threads that run the
+     * asynchronous calls (unless they were provided with {@link #setAsyncExecutor(ExecutorService, int)}). The client
+     * shouldn't be used after this method is called.
+     */
+    public void close() {
+        synchronized (this) {
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+            }
         }
+        transport.close();
     }
 
-    private HttpURLConnection delete(String resource) throws IOException, JSONException {
-        URL url = buildUrl(resource);
+    /**
+     * Runs the code of the requests and responses that doesn't do I/O.
+     */
+    private void exercise(int iterations) {
+        byte[] delivery = WARM_UP_DELIVERY.getBytes(JsonBody.UTF_8);
+        Date date = new Date();
 
-        OutputStreamWriter out = null;
         try {
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("DELETE");
+            for (int i=0; i < iterations; i++) {
+                String text = "this is a test " + i;
+                SmsSegmenter.checkSegments(text, SmsSegmenter.MAX_SEGMENTS);
+                JsonBody.encode("scheduleDate", dateCodec.formatMinutes(date), "campaign", null, "to", "573002175604",
+                        "text", text);
+
+                for (Message message : responseDecoder.decodeDelivery(delivery, dateCodec).getMessages()) {
+                    message.getCreatedAt();
+                }
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int openConnections() {
+        return transport instanceof PooledHttpTransport ? ((PooledHttpTransport) transport).getOpenConnections() : -1;
+    }
+
+    private long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    private <T> AsyncResult<T> submit(Callable<T> task) {
+        return getDispatcher().submit(task);
+    }
+
+    private void setDispatcher(AsyncDispatcher dispatcher) {
+        AsyncDispatcher previous;
+        synchronized (this) {
+            previous = this.dispatcher;
+            this.dispatcher = dispatcher;
+        }
+
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    private synchronized AsyncDispatcher getDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = new AsyncDispatcher(DEFAULT_ASYNC_THREADS, DEFAULT_MAX_IN_FLIGHT);
+        }
+
+        return dispatcher;
+    }
+
+    /**
+     * Posts an already encoded message (see {@link JsonBody}) to <code>/messages</code>.
+     */
+    private HttpResponse postMessage(byte[] body) throws JSONException, IOException {
+        Map<String,String> headers = postHeaders;
+
+        RetryPolicy retryPolicy = this.retryPolicy;
+        if (retryPolicy != null && retryPolicy.isUseIdempotencyKeys()) {
+            headers = new LinkedHashMap<String,String>(postHeaders);
+            headers.put(RetryPolicy.IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        }
+
+        return execute(HttpRequest.shared("POST", messagesUrl, headers, body));
+    }
+
+    private HttpResponse get(String resource) throws IOException, JSONException {
+        return execute(HttpRequest.shared("GET", buildUrl(resource), headers, null));
+    }
+
+    /**
+     * Executes a GET request through the response cache, if there is one.
+     */
+    private HttpResponse get(ResponseCache.Endpoint endpoint, final String resource) throws IOException, JSONException {
+        ResponseCache responseCache = this.responseCache;
+        if (responseCache == null) {
+            return get(resource);
+        }
+
+        return responseCache.get(endpoint, resource, new ResponseCache.Loader() {
+            @Override
+            public HttpResponse load(String etag) throws IOException {
+                if (etag == null) {
+                    return get(resource);
+                }
+
+                Map<String,String> revalidation = new LinkedHashMap<String,String>(headers);
+                revalidation.put("If-None-Match", etag);
+                return execute(HttpRequest.shared("GET", buildUrl(resource), revalidation, null));
+            }
+        });
+    }
+
+    private void invalidate(String... resources) {
+        ResponseCache responseCache = this.responseCache;
+        if (responseCache != null) {
+            for (String resource : resources) {
+                responseCache.invalidate(resource);
+            }
+        }
+    }
+
+    private HttpResponse delete(String resource) throws IOException, JSONException {
+        return execute(HttpRequest.shared("DELETE", buildUrl(resource), headers, null));
+    }
+
+    private HttpResponse execute(HttpRequest request) throws IOException, JSONException {
+        RateLimiter rateLimiter = this.rateLimiter;
+        RetryPolicy retryPolicy = this.retryPolicy;
+        String endpoint = requestListeners.isEmpty() ? null : endpointOf(request);
+
+        for (int attempt=1; ; attempt++) {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            if (retryPolicy != null) {
+                retryPolicy.onAttempt(attempt);
+            }
+            if (endpoint != null) {
+                fireRequest(endpoint, request);
+            }
+
+            long start = System.nanoTime();
+            HttpResponse response;
+            try {
+                response = transport.execute(request);
+            } catch (IOException e) {
+                if (endpoint != null) {
+                    fireFailure(endpoint, request, e, System.nanoTime() - start);
+                }
+                if (retryPolicy != null && retryPolicy.shouldRetry(request, attempt, e)) {
+                    if (endpoint != null) {
+                        fireRetry(endpoint, request, attempt);
+                    }
+                    sleep(retryPolicy.getDelay(attempt, -1));
+                    continue;
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                if (endpoint != null) {
+                    fireFailure(endpoint, request, new IOException(e), System.nanoTime() - start);
+                }
+                throw e;
+            }
+            if (endpoint != null) {
+                fireResponse(endpoint, request, response, System.nanoTime() - start);
+            }
+
+            int statusCode = response.getStatusCode();
+            if (rateLimiter != null) {
+                if (statusCode == 429 || statusCode == 503) {
+                    rateLimiter.onThrottle(response.getRetryAfter());
+                } else if (statusCode < 500) {
+                    rateLimiter.onSuccess();
+                }
+            }
+
+            if (statusCode != 200 && !(statusCode == 304 && request.getHeader("If-None-Match") != null)) {
+                long retryAfter = response.getRetryAfter();
+                if (retryPolicy != null && retryPolicy.shouldRetry(request, attempt, statusCode, retryAfter)) {
+                    if (endpoint != null) {
+                        fireRetry(endpoint, request, attempt);
+                    }
+                    sleep(retryPolicy.getDelay(attempt, retryAfter));
+                    continue;
+                }
+                throw new HttpServerException(statusCode, getJsonObject(response), retryAfter);
+            }
+
+            return response;
+        }
+    }
+
+    /**
+     * @return the method and the path of the request with the segments that have digits (the ids and delivery tokens)
+     * replaced by <code>{id}</code>, e.g. <code>GET /messages/{id}</code>.
+     */
+    static String endpointOf(HttpRequest request) {
+        String path = request.getUrl().getPath();
 
-            connection.setRequestProperty("Authorization", buildAuthorizationHeader());
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("X-API-Source", LIB_VERSION);
-            connection.connect();
+        StringBuilder endpoint = new StringBuilder(request.getMethod().length() + path.length() + 1);
+        endpoint.append(request.getMethod()).append(' ');
 
-            int statusCode = connection.getResponseCode();
-            if (statusCode != 200) {
-                throw new HttpServerException(statusCode, getJsonObject(connection.getErrorStream()));
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start + 1);
+            if (end == -1) {
+                end = path.length();
             }
 
-            return connection;
-        } finally {
-            closeResource(out);
+            boolean id = false;
+            for (int i=start; i < end && !id; i++) {
+                id = Character.isDigit(path.charAt(i));
+            }
+            if (id) {
+                endpoint.append("/{id}");
+            } else {
+                endpoint.append(path, start, end);
+            }
+
+            start = end;
+        }
+
+        return endpoint.toString();
+    }
+
+    private void fireRequest(String endpoint, HttpRequest request) {
+        for (RequestListener listener : requestListeners) {
+            try {
+                listener.onRequest(endpoint, request);
+            } catch (RuntimeException e) {
+                // a failing listener must not fail the request
+            }
+        }
+    }
+
+    private void fireResponse(String endpoint, HttpRequest request, HttpResponse response, long elapsedNanos) {
+        for (RequestListener listener : requestListeners) {
+            try {
+                listener.onResponse(endpoint, request, response, elapsedNanos);
+            } catch (RuntimeException e) {
+                // a failing listener must not fail the request
+            }
+        }
+    }
+
+    private void fireFailure(String endpoint, HttpRequest request, IOException failure, long elapsedNanos) {
+        for (RequestListener listener : requestListeners) {
+            try {
+                listener.onFailure(endpoint, request, failure, elapsedNanos);
+            } catch (RuntimeException e) {
+                // a failing listener must not fail the request
+            }
+        }
+    }
+
+    private void fireRetry(String endpoint, HttpRequest request, int attempt) {
+        for (RequestListener listener : requestListeners) {
+            try {
+                listener.onRetry(endpoint, request, attempt);
+            } catch (RuntimeException e) {
+                // a failing listener must not fail the request
+            }
         }
     }
 
+    private void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the request");
+        }
+    }
+
+    /**
+     * @return the headers of every request, which don't change during the life of the client.
+     */
+    private Map<String,String> buildHeaders() {
+        Map<String,String> headers = new LinkedHashMap<String,String>();
+        headers.put("Authorization", buildAuthorizationHeader());
+        headers.put("Accept", "application/json");
+        headers.put("X-API-Source", LIB_VERSION);
+
+        return Collections.unmodifiableMap(headers);
+    }
+
     private URL buildUrl(String resource) {
         Preconditions.notEmpty(resource, "no resource provided");
         if (!resource.startsWith("/")) {
@@ -519,56 +1235,36 @@ public class ElibomRestClient {
         }
     }
 
-    private String buildAuthorizationHeader() {
+    String buildAuthorizationHeader() {
         String credentials = username + ":" + apiPassword;
-        return "Basic " + DatatypeConverter.printBase64Binary(credentials.getBytes());
+        return "Basic " + Base64.encode(credentials.getBytes(JsonBody.UTF_8));
     }
 
-    private JSONObject getJsonObject(InputStream stream) throws JSONException, IOException {
-        if (stream == null) {
+    private JSONObject getJsonObject(HttpResponse response) throws JSONException {
+        String body = getBody(response);
+        if (body == null) {
             return null;
         }
 
-        try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(stream));
-            String body = getBody(in);
-
-            return new JSONObject(body);
-        } finally {
-            closeResource(stream);
-        }
+        return new JSONObject(body);
     }
 
-    private JSONArray getJsonArray(InputStream stream) throws JSONException, IOException {
-        if (stream == null) {
+    private JSONArray getJsonArray(HttpResponse response) throws JSONException {
+        String body = getBody(response);
+        if (body == null) {
             return null;
         }
 
-        try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(stream));
-            String body = getBody(in);
-
-            return new JSONArray(body);
-        } finally {
-            closeResource(stream);
-        }
+        return new JSONArray(body);
     }
 
-    private String getBody(BufferedReader in) throws IOException {
-        String body = "";
-        String line;
-        while ((line = in.readLine()) != null) {
-            body += line;
+    private String getBody(HttpResponse response) {
+        byte[] body = response.getBody();
+        if (body.length == 0) {
+            return null;
         }
 
-        return body;
+        return new String(body, JsonBody.UTF_8);
     }
 
-    private void closeResource(Closeable closeable) {
-        if (closeable != null) {
-            try { closeable.close(); } catch (Exception e) {}
-        }
-    }
-
-    
 }
@@ -0,0 +1,157 @@
+package com.elibom.client;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Verifies that the certificate of a TLS connection was issued for the host it connects to. On Java 7 or later the
+ * JSSE does it during the handshake (the endpoint identification is enabled by reflection, as the library targets Java
+ * 6); on Java 6 the certificate is checked after the handshake with the rules of RFC 2818: the DNS names of the
+ * subject alternative names, with a wildcard only in the leftmost label, or the common name of the subject if there
+ * are none.
+ *
+ * @author German Escobar
+ */
+final class HostnameChecker {
+
+    private static final Method SET_ENDPOINT_IDENTIFICATION_ALGORITHM = findSetEndpointIdentificationAlgorithm();
+
+    private static final int DNS_NAME = 2;
+
+    private static final int IP_ADDRESS = 7;
+
+    private HostnameChecker() {}
+
+    /**
+     * Asks the JSSE to verify the host during the handshake.
+     *
+     * @return true if it was enabled, false if the JVM doesn't support it (Java 6) and {@link #check(String,
+     * SSLSession)} must be called after the handshake.
+     */
+    public static boolean enableEndpointIdentification(SSLSocket socket) {
+        if (SET_ENDPOINT_IDENTIFICATION_ALGORITHM == null) {
+            return false;
+        }
+
+        SSLParameters parameters = socket.getSSLParameters();
+        try {
+            SET_ENDPOINT_IDENTIFICATION_ALGORITHM.invoke(parameters, "HTTPS");
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        socket.setSSLParameters(parameters);
+
+        return true;
+    }
+
+    /**
+     * @throws SSLPeerUnverifiedException if the certificate of the server wasn't issued for <code>host</code>.
+     */
+    public static void check(String host, SSLSession session) throws SSLPeerUnverifiedException {
+        Certificate[] certificates = session.getPeerCertificates();
+        if (certificates.length == 0 || !(certificates[0] instanceof X509Certificate)) {
+            throw new SSLPeerUnverifiedException("The server didn't send an X.509 certificate");
+        }
+
+        if (!matches(host, (X509Certificate) certificates[0])) {
+            throw new SSLPeerUnverifiedException("The certificate of the server doesn't match " + host);
+        }
+    }
+
+    static boolean matches(String host, X509Certificate certificate) {
+        host = host.toLowerCase(Locale.ENGLISH);
+        boolean ipAddress = host.indexOf(':') != -1 || host.matches("[0-9.]+");
+
+        Collection<List<?>> names;
+        try {
+            names = certificate.getSubjectAlternativeNames();
+        } catch (CertificateParsingException e) {
+            return false;
+        }
+
+        boolean hasDnsNames = false;
+        if (names != null) {
+            for (List<?> name : names) {
+                int type = (Integer) name.get(0);
+                if (ipAddress && type == IP_ADDRESS && host.equals(name.get(1))) {
+                    return true;
+                }
+                if (!ipAddress && type == DNS_NAME) {
+                    hasDnsNames = true;
+                    if (matches(host, ((String) name.get(1)).toLowerCase(Locale.ENGLISH))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        if (ipAddress || hasDnsNames) {
+            return false;
+        }
+
+        String commonName = getCommonName(certificate);
+        return commonName != null && matches(host, commonName.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @param host the lower case host.
+     * @param pattern the lower case name of the certificate, which can start with <code>*.</code>
+     */
+    static boolean matches(String host, String pattern) {
+        if (!pattern.startsWith("*.")) {
+            return host.equals(pattern);
+        }
+
+        // the wildcard matches a single label and needs at least two labels after it
+        String suffix = pattern.substring(1);
+        if (suffix.indexOf('.', 1) == -1 || !host.endsWith(suffix) || host.length() == suffix.length()) {
+            return false;
+        }
+
+        return host.lastIndexOf('.', host.length() - suffix.length() - 1) == -1;
+    }
+
+    /**
+     * @return the most specific common name of the subject or null if it has none.
+     */
+    private static String getCommonName(X509Certificate certificate) {
+        try {
+            String commonName = null;
+            // the RDNs are in reverse order, the last one is the most specific
+            for (Rdn rdn : new LdapName(certificate.getSubjectX500Principal().getName()).getRdns()) {
+                if ("CN".equalsIgnoreCase(rdn.getType())) {
+                    commonName = rdn.getValue().toString();
+                }
+            }
+            return commonName;
+        } catch (InvalidNameException e) {
+            return null;
+        }
+    }
+
+    private static Method findSetEndpointIdentificationAlgorithm() {
+        try {
+            return SSLParameters.class.getMethod("setEndpointIdentificationAlgorithm", String.class);
+        } catch (NoSuchMethodException e) {
+            // Java 6
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.elibom.client;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP request that is going to be executed by an {@link HttpTransport}.
+ *
+ * @author German Escobar
+ */
+public class HttpRequest {
+
+    private final String method;
+
+    private final URL url;
+
+    private final Map<String,String> headers;
+
+    private final byte[] body;
+
+    /**
+     * Creates a request without body.
+     *
+     * @param method the HTTP method (e.g. GET, DELETE).
+     * @param url the absolute URL of the resource.
+     * @param headers the headers of the request, may be null.
+     */
+    public HttpRequest(String method, URL url, Map<String,String> headers) {
+        this(method, url, headers, null);
+    }
+
+    /**
+     * Creates a request with the specified <code>body</code>.
+     *
+     * @param method the HTTP method (e.g. POST).
+     * @param url the absolute URL of the resource.
+     * @param headers the headers of the request, may be null.
+     * @param body the already encoded body of the request, may be null.
+     */
+    public HttpRequest(String method, URL url, Map<String,String> headers, byte[] body) {
+        this(method, url, body, headers == null ? Collections.<String,String>emptyMap() : new LinkedHashMap<String,String>(headers));
+    }
+
+    /**
+     * Uses the <code>headers</code> as they are; the public constructors pass a copy. The body goes before the headers
+     * only to tell it apart from the public constructor with the same parameters.
+     */
+    private HttpRequest(String method, URL url, byte[] body, Map<String,String> headers) {
+        Preconditions.notEmpty(method, "no method provided");
+        Preconditions.notNull(url, "no url provided");
+
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Creates a request that uses the <code>headers</code> without copying them, so they must not be modified
+     * afterwards (e.g. the headers that the client computes once).
+     */
+    static HttpRequest shared(String method, URL url, Map<String,String> headers, byte[] body) {
+        return new HttpRequest(method, url, body, headers);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public Map<String,String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public String getHeader(String name) {
+        for (Map.Entry<String,String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+
+}
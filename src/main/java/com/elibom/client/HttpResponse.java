@@ -0,0 +1,105 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A complete HTTP response returned by an {@link HttpTransport}. The body is fully read so the underlying connection
+ * can be reused as soon as the response is created.
+ *
+ * @author German Escobar
+ */
+public class HttpResponse {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final int statusCode;
+
+    private final Map<String,String> headers;
+
+    private final byte[] body;
+
+    /**
+     * Constructor.
+     *
+     * @param statusCode the HTTP status code.
+     * @param headers the headers of the response, may be null.
+     * @param body the body of the response, may be null.
+     */
+    public HttpResponse(int statusCode, Map<String,String> headers, byte[] body) {
+        this.statusCode = statusCode;
+        this.headers = new HashMap<String,String>();
+        if (headers != null) {
+            for (Map.Entry<String,String> header : headers.entrySet()) {
+                this.headers.put(header.getKey().toLowerCase(Locale.ENGLISH), header.getValue());
+            }
+        }
+        this.body = body == null ? EMPTY_BODY : body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the headers of the response with their names in lower case.
+     */
+    public Map<String,String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @param name the name of the header, case insensitive.
+     *
+     * @return the value of the header or null if the response doesn't have it.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Parses the <code>Retry-After</code> header, which can be a number of seconds or an HTTP date.
+     *
+     * @return the time in milliseconds the server asked to wait before retrying or -1 if the header is missing or
+     * invalid.
+     */
+    public long getRetryAfter() {
+        String value = getHeader("Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // not a number of seconds, try with a date
+        }
+
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return Math.max(0, format.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the body of the response or an empty array if the response has no body.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP " + statusCode + " (" + body.length + " bytes)";
+    }
+
+}
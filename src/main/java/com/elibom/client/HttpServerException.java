@@ -17,13 +17,20 @@ public class HttpServerException extends RuntimeException {
 
     private JSONObject body;
 
+    private long retryAfter = -1;
+
     public HttpServerException(int statusCode) {
         this(statusCode, null);
     }
 
     public HttpServerException(int statusCode, JSONObject body) {
+        this(statusCode, body, -1);
+    }
+
+    public HttpServerException(int statusCode, JSONObject body, long retryAfter) {
         this.statusCode = statusCode;
         this.body = body;
+        this.retryAfter = retryAfter;
     }
 
     @Override
@@ -39,13 +46,33 @@ public class HttpServerException extends RuntimeException {
         return body;
     }
 
+    /**
+     * @return the time in milliseconds the server asked to wait before retrying (from the <code>Retry-After</code>
+     * header) or -1 if it didn't specify one.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return true if the server rejected the request because it is receiving too many (429) or is temporarily
+     * unavailable (503), false otherwise.
+     */
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+
     public String getStatusDescription(int statusCode) {
         Map<Integer,String> status = new HashMap<Integer,String>();
         status.put(400, "Bad Request");
         status.put(401, "Unauthorized");
         status.put(404, "Not Found");
         status.put(409, "Conflict");
+        status.put(429, "Too Many Requests");
         status.put(500, "Internal Server Error");
+        status.put(502, "Bad Gateway");
+        status.put(503, "Service Unavailable");
+        status.put(504, "Gateway Timeout");
 
         String ret = status.get(statusCode);
         if (ret == null) {
@@ -0,0 +1,28 @@
+package com.elibom.client;
+
+import java.io.IOException;
+
+/**
+ * Executes the HTTP requests made by the {@link ElibomRestClient}. Implementations must be thread-safe as a single
+ * transport is shared by all the threads using the client.
+ *
+ * @author German Escobar
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends the <code>request</code> and waits for the complete response.
+     *
+     * @param request the request to be sent.
+     *
+     * @return the response of the server, whatever its status code is.
+     * @throws IOException if the request couldn't be sent or the response couldn't be read.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+
+    /**
+     * Releases the resources (e.g. open connections) held by this transport.
+     */
+    void close();
+
+}
@@ -0,0 +1,39 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+
+/**
+ * Thrown by {@link CreditLedger} when the estimated credits of a message are more than the local balance. The message
+ * is not sent.
+ *
+ * @author German Escobar
+ */
+public class InsufficientCreditsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BigDecimal required;
+
+    private final BigDecimal available;
+
+    public InsufficientCreditsException(BigDecimal required, BigDecimal available) {
+        super("Insufficient credits: " + required + " required, " + available + " available");
+        this.required = required;
+        this.available = available;
+    }
+
+    /**
+     * @return the estimated credits of the message.
+     */
+    public BigDecimal getRequired() {
+        return required;
+    }
+
+    /**
+     * @return the local balance when the message was rejected.
+     */
+    public BigDecimal getAvailable() {
+        return available;
+    }
+
+}
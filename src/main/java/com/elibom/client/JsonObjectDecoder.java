@@ -0,0 +1,41 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A {@link ResponseDecoder} that parses the whole body into a {@link JSONObject} and then creates the objects from it.
+ * The messages keep a reference to their JSON object.
+ *
+ * @author German Escobar
+ */
+public class JsonObjectDecoder implements ResponseDecoder {
+
+    @Override
+    public List<Message> decodeMessages(byte[] body, DateCodec dateCodec) throws JSONException, ParseException {
+        JSONObject json = parse(body);
+
+        List<Message> messages = new ArrayList<Message>();
+        JSONArray jm = json.getJSONArray("messages");
+        for (int i=0; i < jm.length(); i++) {
+            messages.add(new Message(jm.getJSONObject(i), dateCodec));
+        }
+
+        return messages;
+    }
+
+    @Override
+    public Delivery decodeDelivery(byte[] body, DateCodec dateCodec) throws JSONException, ParseException {
+        return new Delivery(parse(body), dateCodec);
+    }
+
+    private JSONObject parse(byte[] body) throws JSONException {
+        return new JSONObject(new String(body, JsonBody.UTF_8));
+    }
+
+}
@@ -0,0 +1,539 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+
+import org.json.JSONException;
+
+/**
+ * A pull parser that reads a JSON document directly from its UTF-8 bytes, one token at a time, without building an
+ * intermediate string or object tree. Syntax errors are reported with a {@link JSONException}, like the rest of the
+ * JSON handling of the client.
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(body);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     ...
+ * }
+ * reader.endObject();
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class JsonReader {
+
+    /**
+     * The kinds of tokens returned by {@link JsonReader#peek()}.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final byte[] buffer;
+
+    private final int limit;
+
+    private int pos;
+
+    private int[] stack = new int[16];
+
+    private int depth;
+
+    private Token peeked;
+
+    /**
+     * The position of the first byte of the peeked token.
+     */
+    private int tokenStart;
+
+    /**
+     * Creates a reader for the whole <code>buffer</code>.
+     */
+    public JsonReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a reader for <code>length</code> bytes of the <code>buffer</code> starting at <code>offset</code>.
+     */
+    public JsonReader(byte[] buffer, int offset, int length) {
+        Preconditions.notNull(buffer, "no buffer provided");
+
+        this.buffer = buffer;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @return the type of the next token without consuming it.
+     */
+    public Token peek() throws JSONException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    /**
+     * @return true if the current object or array has more elements, false otherwise.
+     */
+    public boolean hasNext() throws JSONException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws JSONException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = null;
+    }
+
+    public void endObject() throws JSONException {
+        expect(Token.END_OBJECT);
+        depth--;
+        peeked = null;
+    }
+
+    public void beginArray() throws JSONException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = null;
+    }
+
+    public void endArray() throws JSONException {
+        expect(Token.END_ARRAY);
+        depth--;
+        peeked = null;
+    }
+
+    public String nextName() throws JSONException {
+        expect(Token.NAME);
+        peeked = null;
+        return readString();
+    }
+
+    /**
+     * @return the next string value, the literal of the next number or null if the next value is null.
+     */
+    public String nextString() throws JSONException {
+        Token token = peek();
+        peeked = null;
+        if (token == Token.STRING) {
+            return readString();
+        } else if (token == Token.NUMBER) {
+            int start = pos;
+            skipLiteral();
+            return new String(buffer, start, pos - start, JsonBody.UTF_8);
+        } else if (token == Token.NULL) {
+            pos += 4;
+            return null;
+        }
+
+        peeked = token;
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    /**
+     * @return the next number (or string containing a number) as a long.
+     */
+    public long nextLong() throws JSONException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw syntaxError("Expected a number but was " + token);
+        }
+
+        if (token == Token.NUMBER) {
+            int start = pos;
+            boolean negative = buffer[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+
+            long value = 0;
+            int digits = 0;
+            while (pos < limit && buffer[pos] >= '0' && buffer[pos] <= '9' && digits < 18) {
+                value = value * 10 + (buffer[pos++] - '0');
+                digits++;
+            }
+
+            if (digits > 0 && (pos == limit || !isLiteralByte(buffer[pos]))) {
+                peeked = null;
+                return negative ? -value : value;
+            }
+
+            // a fraction, an exponent or too many digits, let BigDecimal deal with it
+            pos = start;
+        }
+
+        String value = nextString();
+        try {
+            return new BigDecimal(value.trim()).longValueExact();
+        } catch (ArithmeticException e) {
+            throw syntaxError("Expected a long but was " + value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a long but was " + value);
+        }
+    }
+
+    public int nextInt() throws JSONException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw syntaxError("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return the next number (or string containing a number) as a BigDecimal.
+     */
+    public BigDecimal nextBigDecimal() throws JSONException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw syntaxError("Expected a number but was " + token);
+        }
+
+        String value = nextString();
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + value);
+        }
+    }
+
+    public boolean nextBoolean() throws JSONException {
+        expect(Token.BOOLEAN);
+        peeked = null;
+        if (buffer[pos] == 't') {
+            pos += 4;
+            return true;
+        }
+        pos += 5;
+        return false;
+    }
+
+    public void nextNull() throws JSONException {
+        expect(Token.NULL);
+        peeked = null;
+        pos += 4;
+    }
+
+    /**
+     * Skips the next value, including all the nested values if it is an object or an array.
+     */
+    public void skipValue() throws JSONException {
+        int count = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+            case BEGIN_OBJECT:
+                beginObject();
+                count++;
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                count++;
+                break;
+            case END_OBJECT:
+                endObject();
+                count--;
+                break;
+            case END_ARRAY:
+                endArray();
+                count--;
+                break;
+            case NAME:
+                peeked = null;
+                skipString();
+                break;
+            case STRING:
+                peeked = null;
+                skipString();
+                break;
+            case NUMBER:
+                peeked = null;
+                skipLiteral();
+                break;
+            case BOOLEAN:
+                nextBoolean();
+                break;
+            case NULL:
+                nextNull();
+                break;
+            default:
+                throw syntaxError("Unexpected " + token);
+            }
+        } while (count > 0);
+    }
+
+    /**
+     * @return the position in the buffer of the first byte of the token returned by {@link #peek()}.
+     */
+    public int getTokenStart() throws JSONException {
+        peek();
+        return tokenStart;
+    }
+
+    /**
+     * @return the position in the buffer of the next byte to be read.
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    private Token doPeek() throws JSONException {
+        int context = stack[depth - 1];
+
+        if (context == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+        } else if (context == NONEMPTY_ARRAY) {
+            int c = nextNonWhitespace();
+            if (c == ']') {
+                return token(Token.END_ARRAY, 1);
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+            pos++;
+        } else if (context == EMPTY_OBJECT || context == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            int c = nextNonWhitespace();
+            if (c == '}') {
+                return token(Token.END_OBJECT, 1);
+            }
+
+            if (context == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                pos++;
+                c = nextNonWhitespace();
+            }
+
+            if (c != '"') {
+                throw syntaxError("Expected a name");
+            }
+            return token(Token.NAME, 1);
+        } else if (context == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+            pos++;
+        } else if (context == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (context == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace() == -1) {
+                tokenStart = pos;
+                return Token.END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected data after the end of the document");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+        case '{':
+            return token(Token.BEGIN_OBJECT, 1);
+        case '[':
+            return token(Token.BEGIN_ARRAY, 1);
+        case ']':
+            if (context == EMPTY_ARRAY) {
+                return token(Token.END_ARRAY, 1);
+            }
+            throw syntaxError("Unexpected ']'");
+        case '"':
+            return token(Token.STRING, 1);
+        case 't':
+            return literal("true", Token.BOOLEAN);
+        case 'f':
+            return literal("false", Token.BOOLEAN);
+        case 'n':
+            return literal("null", Token.NULL);
+        case -1:
+            throw syntaxError("Unexpected end of document");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                tokenStart = pos;
+                return Token.NUMBER;
+            }
+            throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Records the start of a token and consumes its first <code>length</code> bytes.
+     */
+    private Token token(Token token, int length) {
+        tokenStart = pos;
+        if (token == Token.END_ARRAY || token == Token.END_OBJECT || token == Token.BEGIN_ARRAY
+                || token == Token.BEGIN_OBJECT || token == Token.NAME || token == Token.STRING) {
+            pos += length;
+        }
+        return token;
+    }
+
+    /**
+     * Checks a literal (true, false or null) without consuming it.
+     */
+    private Token literal(String literal, Token token) throws JSONException {
+        int length = literal.length();
+        if (pos + length > limit) {
+            throw syntaxError("Unexpected end of document");
+        }
+        for (int i=0; i < length; i++) {
+            if (buffer[pos + i] != literal.charAt(i)) {
+                throw syntaxError("Unexpected literal");
+            }
+        }
+        if (pos + length < limit && isLiteralByte(buffer[pos + length])) {
+            throw syntaxError("Unexpected literal");
+        }
+
+        tokenStart = pos;
+        return token;
+    }
+
+    private void expect(Token expected) throws JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+    }
+
+    private void push(int context) {
+        if (depth == stack.length) {
+            int[] newStack = new int[depth * 2];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+        stack[depth++] = context;
+    }
+
+    private int nextNonWhitespace() {
+        while (pos < limit) {
+            byte c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a string whose opening quote has been consumed, including the closing quote.
+     */
+    private String readString() throws JSONException {
+        int start = pos;
+        while (pos < limit) {
+            byte c = buffer[pos];
+            if (c == '"') {
+                String value = new String(buffer, start, pos - start, JsonBody.UTF_8);
+                pos++;
+                return value;
+            } else if (c == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readEscapedString(int start) throws JSONException {
+        StringBuilder value = new StringBuilder(pos - start + 16);
+        value.append(new String(buffer, start, pos - start, JsonBody.UTF_8));
+
+        int segment = pos;
+        while (pos < limit) {
+            byte c = buffer[pos];
+            if (c == '"') {
+                value.append(new String(buffer, segment, pos - segment, JsonBody.UTF_8));
+                pos++;
+                return value.toString();
+            } else if (c == '\\') {
+                value.append(new String(buffer, segment, pos - segment, JsonBody.UTF_8));
+                if (++pos == limit) {
+                    break;
+                }
+
+                byte escaped = buffer[pos++];
+                switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > limit) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    int ch = 0;
+                    for (int i=0; i < 4; i++) {
+                        int digit = Character.digit(buffer[pos++], 16);
+                        if (digit == -1) {
+                            throw syntaxError("Invalid escape sequence");
+                        }
+                        ch = (ch << 4) | digit;
+                    }
+                    value.append((char) ch);
+                    break;
+                default:
+                    value.append((char) escaped);
+                }
+                segment = pos;
+            } else {
+                pos++;
+            }
+        }
+
+        throw syntaxError("Unterminated string");
+    }
+
+    private void skipString() throws JSONException {
+        while (pos < limit) {
+            byte c = buffer[pos++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                pos++;
+            }
+        }
+
+        throw syntaxError("Unterminated string");
+    }
+
+    private void skipLiteral() {
+        while (pos < limit && isLiteralByte(buffer[pos])) {
+            pos++;
+        }
+    }
+
+    private boolean isLiteralByte(byte c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '+'
+                || c == '.';
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at position " + pos);
+    }
+
+}
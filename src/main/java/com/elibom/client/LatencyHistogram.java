@@ -0,0 +1,142 @@
+package com.elibom.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram: each power of
+ * two is split in {@link #SUB_BUCKETS} buckets, so a percentile is within about 3% of the real value. Recording a
+ * value is a few atomic increments, without locks or allocation, so it can be shared by all the threads.
+ *
+ * <p>The percentiles are computed from the counts at the moment they are read; values recorded meanwhile may or may
+ * not be included.</p>
+ *
+ * @author German Escobar
+ */
+public class LatencyHistogram {
+
+    private static final int PRECISION_BITS = 5;
+
+    public static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+
+    private static final int BUCKETS = (64 - PRECISION_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the mean latency in nanoseconds, 0 if there are no values.
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * @return the max latency in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100 (e.g. 99.9).
+     *
+     * @return the latency in nanoseconds below which <code>percentile</code> of the values are, rounded up to the
+     * upper bound of its bucket; 0 if there are no values.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("A precondition failed: percentile must be between 0 and 100");
+        }
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i=0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulative = 0;
+        for (int i=0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram [count=" + getCount() + ", mean=" + micros(getMean()) + "us, p50=" + micros(getPercentile(50))
+                + "us, p99=" + micros(getPercentile(99)) + "us, max=" + micros(getMax()) + "us]";
+    }
+
+    /**
+     * The values below {@link #SUB_BUCKETS} have a bucket each; above, the bucket is given by the position of the
+     * highest bit and the {@link #PRECISION_BITS} bits after it.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - PRECISION_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - PRECISION_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value that is recorded in the bucket.
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + PRECISION_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        int shift = exponent - PRECISION_BITS;
+        long lower = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
@@ -0,0 +1,305 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Date;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A {@link Message} that keeps the position of its JSON object in the body of the response and decodes each field the
+ * first time it is accessed. It is created by a {@link StreamingDecoder} in lazy mode.
+ *
+ * <p>The first access to a field finds where the values of all the fields start, so each field is read directly from
+ * then on. Reading only a few fields of many messages (e.g. <code>getId()</code> and <code>getStatus()</code>) avoids
+ * creating the strings, dates and decimals of the rest. The body of the response is shared by all its messages and is
+ * kept in memory while any of them is referenced.</p>
+ *
+ * <p>The values are validated when they are decoded, so the getters throw a RuntimeException wrapping the
+ * JSONException or ParseException if a field is malformed.</p>
+ *
+ * @author German Escobar
+ */
+public class LazyMessage extends Message {
+
+    private static final String[] FIELDS = { "id", "user", "to", "operator", "from", "text", "status", "statusDetail",
+        "credits", "createdAt", "sentAt" };
+
+    private static final int ID = 0;
+    private static final int USER = 1;
+    private static final int TO = 2;
+    private static final int OPERATOR = 3;
+    private static final int FROM = 4;
+    private static final int TEXT = 5;
+    private static final int STATUS = 6;
+    private static final int STATUS_DETAIL = 7;
+    private static final int CREDITS = 8;
+    private static final int CREATED_AT = 9;
+    private static final int SENT_AT = 10;
+
+    private final byte[] buffer;
+
+    private final int start;
+
+    private final int end;
+
+    /**
+     * The position of the value of each field or -1 if the field is not present. Created on the first access.
+     */
+    private volatile int[] valueStarts;
+
+    /**
+     * A bit for each field that has been decoded. The fields are written before the bit is set, so the volatile write
+     * publishes them; if two threads decode different fields at the same time a bit can be lost, which only means the
+     * field is decoded again.
+     */
+    private volatile int decoded;
+
+    /**
+     * Creates a message from the JSON object between <code>start</code> (inclusive) and <code>end</code> (exclusive).
+     *
+     * @param buffer the UTF-8 body of the response, it is not copied.
+     * @param start the position of the <code>{</code> of the object.
+     * @param end the position after the <code>}</code> of the object.
+     * @param dateCodec the codec used to parse the dates.
+     */
+    public LazyMessage(byte[] buffer, int start, int end, DateCodec dateCodec) {
+        Preconditions.notNull(buffer, "no buffer provided");
+        Preconditions.notNull(dateCodec, "no dateCodec provided");
+        if (start < 0 || end > buffer.length || start >= end) {
+            throw new IllegalArgumentException("invalid range [" + start + ", " + end + ") for a buffer of " + buffer.length + " bytes");
+        }
+
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.dateCodec = dateCodec;
+    }
+
+    @Override
+    public long getId() {
+        if (!isDecoded(ID)) {
+            try {
+                JsonReader reader = reader(ID);
+                id = reader == null ? 0 : reader.nextLong();
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+            setDecoded(ID);
+        }
+        return id;
+    }
+
+    @Override
+    public long getUserId() {
+        if (!isDecoded(USER)) {
+            try {
+                JsonReader reader = reader(USER);
+                userId = reader == null ? 0 : readUserId(reader);
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+            setDecoded(USER);
+        }
+        return userId;
+    }
+
+    @Override
+    public String getTo() {
+        if (!isDecoded(TO)) {
+            to = decodeString(TO);
+            setDecoded(TO);
+        }
+        return to;
+    }
+
+    @Override
+    public String getOperator() {
+        if (!isDecoded(OPERATOR)) {
+            operator = decodeString(OPERATOR);
+            setDecoded(OPERATOR);
+        }
+        return operator;
+    }
+
+    @Override
+    public String getFrom() {
+        if (!isDecoded(FROM)) {
+            from = decodeString(FROM);
+            setDecoded(FROM);
+        }
+        return from;
+    }
+
+    @Override
+    public String getText() {
+        if (!isDecoded(TEXT)) {
+            text = decodeString(TEXT);
+            setDecoded(TEXT);
+        }
+        return text;
+    }
+
+    @Override
+    public String getStatus() {
+        if (!isDecoded(STATUS)) {
+            status = decodeString(STATUS);
+            setDecoded(STATUS);
+        }
+        return status;
+    }
+
+    @Override
+    public String getStatusDetail() {
+        if (!isDecoded(STATUS_DETAIL)) {
+            statusDetail = decodeString(STATUS_DETAIL);
+            setDecoded(STATUS_DETAIL);
+        }
+        return statusDetail;
+    }
+
+    @Override
+    public BigDecimal getCredits() {
+        if (!isDecoded(CREDITS)) {
+            try {
+                JsonReader reader = reader(CREDITS);
+                credits = reader == null ? null : reader.nextBigDecimal();
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+            setDecoded(CREDITS);
+        }
+        return credits;
+    }
+
+    @Override
+    public Date getCreatedAt() {
+        if (!isDecoded(CREATED_AT)) {
+            createdAt = decodeDate(CREATED_AT);
+            setDecoded(CREATED_AT);
+        }
+        return createdAt;
+    }
+
+    @Override
+    public Date getSentAt() {
+        if (!isDecoded(SENT_AT)) {
+            sentAt = decodeDate(SENT_AT);
+            setDecoded(SENT_AT);
+        }
+        return sentAt;
+    }
+
+    @Override
+    JSONObject toJson() {
+        try {
+            return new JSONObject(toString());
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the JSON object of the message as it was received.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, start, end - start, JsonBody.UTF_8);
+    }
+
+    private boolean isDecoded(int field) {
+        return (decoded & (1 << field)) != 0;
+    }
+
+    private void setDecoded(int field) {
+        decoded |= 1 << field;
+    }
+
+    private String decodeString(int field) {
+        try {
+            JsonReader reader = reader(field);
+            return reader == null ? null : reader.nextString();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Date decodeDate(int field) {
+        String value = decodeString(field);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return dateCodec.parse(value);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return a reader positioned at the value of the field or null if the field is not present or its value is null.
+     */
+    private JsonReader reader(int field) throws JSONException {
+        int[] starts = valueStarts;
+        if (starts == null) {
+            starts = indexFields();
+            valueStarts = starts;
+        }
+
+        if (starts[field] == -1) {
+            return null;
+        }
+
+        JsonReader reader = new JsonReader(buffer, starts[field], end - starts[field]);
+        if (reader.peek() == JsonReader.Token.NULL) {
+            return null;
+        }
+
+        return reader;
+    }
+
+    private int[] indexFields() throws JSONException {
+        int[] starts = new int[FIELDS.length];
+        for (int i=0; i < starts.length; i++) {
+            starts[i] = -1;
+        }
+
+        JsonReader reader = new JsonReader(buffer, start, end - start);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            for (int i=0; i < FIELDS.length; i++) {
+                if (FIELDS[i].equals(name)) {
+                    starts[i] = reader.getTokenStart();
+                    break;
+                }
+            }
+            reader.skipValue();
+        }
+        reader.endObject();
+
+        return starts;
+    }
+
+    /**
+     * Reads the id of the user object, <code>{ "id": 2, "url": "..." }</code>.
+     */
+    private long readUserId(JsonReader reader) throws JSONException {
+        long id = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("id".equals(reader.nextName())) {
+                id = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return id;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.elibom.client;
+
+import java.util.Arrays;
+
+/**
+ * A set of positive <code>long</code>s in a single array with open addressing, without boxing. It takes 16 bytes per
+ * value at most (the table is at most half full), so millions of phone numbers fit in a few tens of megabytes.
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author German Escobar
+ */
+final class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The value of an empty slot, which is why only positive values can be added.
+     */
+    private static final long EMPTY = 0;
+
+    private long[] table;
+
+    private int size;
+
+    LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of values for which space is allocated initially.
+     */
+    LongHashSet(int expectedSize) {
+        Preconditions.isInteger(expectedSize, "expectedSize must be greater than zero");
+
+        int capacity = 2;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+    }
+
+    /**
+     * @return true if the value was added, false if it was already in the set.
+     */
+    boolean add(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("A precondition failed: value must be greater than zero");
+        }
+
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+
+        if (!insert(table, value)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    boolean contains(long value) {
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] newTable = new long[capacity];
+        for (long value : table) {
+            if (value != EMPTY) {
+                insert(newTable, value);
+            }
+        }
+        table = newTable;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int i = mix(value) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        return true;
+    }
+
+    /**
+     * Spreads the bits of the value (the finalizer of MurmurHash3), as phone numbers share most of their digits.
+     */
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+
+}
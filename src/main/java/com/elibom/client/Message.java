@@ -2,7 +2,6 @@ package com.elibom.client;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import org.json.JSONException;
@@ -14,32 +13,46 @@ import org.json.JSONObject;
  */
 public class Message {
 
-    private JSONObject json;
+    JSONObject json;
 
-    private long id;
+    long id;
 
-    private long userId;
+    long userId;
 
-    private String to;
+    String to;
 
-    private String operator;
+    String operator;
 
-    private String text;
+    String text;
 
-    private String status;
+    String status;
 
-    private String statusDetail;
+    String statusDetail;
 
-    private BigDecimal credits;
+    BigDecimal credits;
 
-    private String from;
+    String from;
 
-    private Date createdAt;
+    Date createdAt;
 
-    private Date sentAt;
+    Date sentAt;
+
+    DateCodec dateCodec = DateCodec.DEFAULT;
+
+    /**
+     * Used by {@link LazyMessage}, which decodes the fields when they are accessed and stores them in the fields of this
+     * class (package-private for that reason).
+     */
+    Message() {}
 
     public Message(JSONObject json) throws JSONException, ParseException {
+        this(json, DateCodec.DEFAULT);
+    }
+
+    public Message(JSONObject json, DateCodec dateCodec) throws JSONException, ParseException {
+        Preconditions.notNull(dateCodec, "no dateCodec provided");
         this.json = json;
+        this.dateCodec = dateCodec;
 
         this.id = json.getLong("id");
         if (json.has("user")) {
@@ -53,10 +66,9 @@ public class Message {
         this.statusDetail = json.getString("statusDetail");
         this.credits = json.getBigDecimal("credits");
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        this.createdAt = sdf.parse(json.getString("createdAt"));
+        this.createdAt = dateCodec.parse(json.getString("createdAt"));
         if (json.has("sentAt") && json.getString("sentAt") != null) {
-            this.sentAt = sdf.parse(json.getString("sentAt"));
+            this.sentAt = dateCodec.parse(json.getString("sentAt"));
         }
 
     }
@@ -75,6 +87,11 @@ public class Message {
         this.sentAt = sentAt;
     }
 
+    Message(long id, long userId, String to, String operator, String from, String text, String status, String statusDetail, BigDecimal credits, Date createdAt, Date sentAt, DateCodec dateCodec) {
+        this(id, userId, to, operator, from, text, status, statusDetail, credits, createdAt, sentAt);
+        this.dateCodec = dateCodec;
+    }
+
     public long getId() {
         return id;
     }
@@ -119,9 +136,36 @@ public class Message {
         return sentAt;
     }
 
+    /**
+     * @return the JSON object from which this message was created or, if it was created from its fields, a new JSON
+     * object with them.
+     */
+    JSONObject toJson() {
+        if (json != null) {
+            return json;
+        }
+
+        try {
+            return new JSONObject()
+                    .put("id", id)
+                    .put("user", new JSONObject().put("id", userId))
+                    .put("to", to)
+                    .put("operator", operator)
+                    .put("from", from)
+                    .put("text", text)
+                    .put("status", status)
+                    .put("statusDetail", statusDetail)
+                    .put("credits", credits)
+                    .put("createdAt", createdAt == null ? null : dateCodec.format(createdAt))
+                    .put("sentAt", sentAt == null ? null : dateCodec.format(sentAt));
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public String toString() {
-        return json.toString();
+        return toJson().toString();
     }
 
 }
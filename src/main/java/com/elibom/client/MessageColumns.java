@@ -0,0 +1,343 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, columnar store of messages for analytics over large histories. Each field is kept in a primitive array
+ * instead of a {@link Message} object per row:
+ *
+ * <ul>
+ *   <li>the ids, user ids and dates (as epoch millis, {@link #NO_DATE} if absent) in <code>long</code> arrays,</li>
+ *   <li>the operator, status and sender (<code>from</code>) in <code>int</code> arrays of codes of a dictionary of the
+ *   distinct values,</li>
+ *   <li>the credits as fixed-point <code>long</code>s with {@link #CREDITS_SCALE} decimals.</li>
+ * </ul>
+ *
+ * <p>The destinations, texts and status details are not stored as they are mostly unique. A row takes 52 bytes plus
+ * the growth of the arrays, so millions of messages fit in a few hundred megabytes.</p>
+ *
+ * <pre>
+ * MessageColumns columns = new MessageColumns();
+ * columns.addAll(elibom.getMessageHistory(500, startDate, endDate));
+ * Map&lt;String,BigDecimal&gt; creditsByOperator = columns.sumCreditsBy(MessageColumns.Column.OPERATOR);
+ * </pre>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author German Escobar
+ */
+public class MessageColumns {
+
+    /**
+     * The columns that are dictionary-encoded and can be used to group the rows.
+     */
+    public enum Column {
+        OPERATOR, STATUS, FROM
+    }
+
+    public static final int CREDITS_SCALE = 4;
+
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private int size;
+
+    private long[] ids;
+
+    private long[] userIds;
+
+    private long[] createdAts;
+
+    private long[] sentAts;
+
+    private long[] credits;
+
+    private final Dictionary[] dictionaries = new Dictionary[Column.values().length];
+
+    private final int[][] codes = new int[Column.values().length][];
+
+    public MessageColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of rows for which space is allocated initially.
+     */
+    public MessageColumns(int initialCapacity) {
+        Preconditions.isInteger(initialCapacity, "initialCapacity must be greater than zero");
+
+        ids = new long[initialCapacity];
+        userIds = new long[initialCapacity];
+        createdAts = new long[initialCapacity];
+        sentAts = new long[initialCapacity];
+        credits = new long[initialCapacity];
+        for (int i=0; i < codes.length; i++) {
+            codes[i] = new int[initialCapacity];
+            dictionaries[i] = new Dictionary();
+        }
+    }
+
+    /**
+     * Adds a row with the fields of the message.
+     *
+     * @param message the message to add.
+     *
+     * @throws IllegalArgumentException if the credits have more than {@link #CREDITS_SCALE} decimals.
+     */
+    public void add(Message message) throws IllegalArgumentException {
+        Preconditions.notNull(message, "no message provided");
+
+        ensureCapacity(size + 1);
+
+        ids[size] = message.getId();
+        userIds[size] = message.getUserId();
+        createdAts[size] = toMillis(message.getCreatedAt());
+        sentAts[size] = toMillis(message.getSentAt());
+        credits[size] = toFixedPoint(message.getCredits());
+        codes[Column.OPERATOR.ordinal()][size] = dictionaries[Column.OPERATOR.ordinal()].encode(message.getOperator());
+        codes[Column.STATUS.ordinal()][size] = dictionaries[Column.STATUS.ordinal()].encode(message.getStatus());
+        codes[Column.FROM.ordinal()][size] = dictionaries[Column.FROM.ordinal()].encode(message.getFrom());
+
+        size++;
+    }
+
+    /**
+     * Adds a row for each message. The messages are consumed one by one, so they can come from a
+     * {@link MessageHistory} without being held in memory.
+     *
+     * @param messages the messages to add.
+     */
+    public void addAll(Iterable<? extends Message> messages) {
+        Preconditions.notNull(messages, "no messages provided");
+
+        for (Message message : messages) {
+            add(message);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public long getUserId(int row) {
+        checkRow(row);
+        return userIds[row];
+    }
+
+    /**
+     * @return the epoch millis of the creation date or {@link #NO_DATE}.
+     */
+    public long getCreatedAt(int row) {
+        checkRow(row);
+        return createdAts[row];
+    }
+
+    /**
+     * @return the epoch millis of the date in which the message was sent or {@link #NO_DATE}.
+     */
+    public long getSentAt(int row) {
+        checkRow(row);
+        return sentAts[row];
+    }
+
+    /**
+     * @return the credits with {@link #CREDITS_SCALE} decimals, e.g. <code>15000</code> for <code>1.5</code>.
+     */
+    public long getCreditsUnscaled(int row) {
+        checkRow(row);
+        return credits[row];
+    }
+
+    public BigDecimal getCredits(int row) {
+        return BigDecimal.valueOf(getCreditsUnscaled(row), CREDITS_SCALE);
+    }
+
+    public String getOperator(int row) {
+        return getValue(Column.OPERATOR, row);
+    }
+
+    public String getStatus(int row) {
+        return getValue(Column.STATUS, row);
+    }
+
+    public String getFrom(int row) {
+        return getValue(Column.FROM, row);
+    }
+
+    /**
+     * @return the value of a dictionary-encoded column in a row, may be null.
+     */
+    public String getValue(Column column, int row) {
+        checkRow(row);
+        return dictionaries[column.ordinal()].decode(codes[column.ordinal()][row]);
+    }
+
+    /**
+     * @return the distinct values of the column (including null if some rows don't have a value), in the order in
+     * which they were first added.
+     */
+    public List<String> getDistinctValues(Column column) {
+        Preconditions.notNull(column, "no column provided");
+        return new ArrayList<String>(dictionaries[column.ordinal()].values);
+    }
+
+    /**
+     * @return the number of rows for each value of the column.
+     */
+    public Map<String,Long> countBy(Column column) {
+        return countBy(column, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of rows created between <code>from</code> (inclusive) and <code>to</code> (exclusive) for each
+     * value of the column.
+     */
+    public Map<String,Long> countBy(Column column, long from, long to) {
+        Preconditions.notNull(column, "no column provided");
+
+        int[] columnCodes = codes[column.ordinal()];
+        long[] counts = new long[dictionaries[column.ordinal()].size()];
+        for (int i=0; i < size; i++) {
+            if (createdAts[i] >= from && createdAts[i] < to) {
+                counts[columnCodes[i]]++;
+            }
+        }
+
+        Map<String,Long> result = new LinkedHashMap<String,Long>();
+        for (int code=0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(dictionaries[column.ordinal()].decode(code), counts[code]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the sum of the credits of the rows for each value of the column.
+     */
+    public Map<String,BigDecimal> sumCreditsBy(Column column) {
+        return sumCreditsBy(column, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the sum of the credits of the rows created between <code>from</code> (inclusive) and <code>to</code>
+     * (exclusive) for each value of the column.
+     */
+    public Map<String,BigDecimal> sumCreditsBy(Column column, long from, long to) {
+        Preconditions.notNull(column, "no column provided");
+
+        int[] columnCodes = codes[column.ordinal()];
+        long[] sums = new long[dictionaries[column.ordinal()].size()];
+        boolean[] present = new boolean[sums.length];
+        for (int i=0; i < size; i++) {
+            if (createdAts[i] >= from && createdAts[i] < to) {
+                sums[columnCodes[i]] += credits[i];
+                present[columnCodes[i]] = true;
+            }
+        }
+
+        Map<String,BigDecimal> result = new LinkedHashMap<String,BigDecimal>();
+        for (int code=0; code < sums.length; code++) {
+            if (present[code]) {
+                result.put(dictionaries[column.ordinal()].decode(code), BigDecimal.valueOf(sums[code], CREDITS_SCALE));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the sum of the credits of all the rows.
+     */
+    public BigDecimal sumCredits() {
+        long sum = 0;
+        for (int i=0; i < size; i++) {
+            sum += credits[i];
+        }
+
+        return BigDecimal.valueOf(sum, CREDITS_SCALE);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        userIds = Arrays.copyOf(userIds, newCapacity);
+        createdAts = Arrays.copyOf(createdAts, newCapacity);
+        sentAts = Arrays.copyOf(sentAts, newCapacity);
+        credits = Arrays.copyOf(credits, newCapacity);
+        for (int i=0; i < codes.length; i++) {
+            codes[i] = Arrays.copyOf(codes[i], newCapacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+    }
+
+    private long toMillis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+
+    private long toFixedPoint(BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return value.setScale(CREDITS_SCALE).unscaledValue().longValue();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("credits have more than " + CREDITS_SCALE + " decimals: " + value, e);
+        }
+    }
+
+    /**
+     * Assigns a code to each distinct value, in the order in which they are added.
+     */
+    private static class Dictionary {
+
+        private final Map<String,Integer> codes = new HashMap<String,Integer>();
+
+        private final List<String> values = new ArrayList<String>();
+
+        public int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+
+            return code;
+        }
+
+        public String decode(int code) {
+            return values.get(code);
+        }
+
+        public int size() {
+            return values.size();
+        }
+
+    }
+
+}
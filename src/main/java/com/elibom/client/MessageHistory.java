@@ -0,0 +1,174 @@
+package com.elibom.client;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The sent messages of the user, fetched lazily one page at a time. Each call to {@link #iterator()} starts a new walk
+ * from the first page and requests the next page only when the current one has been consumed, so the memory used is
+ * bounded by the size of the page (two pages if <code>prefetch</code> is enabled) regardless of the number of messages.
+ *
+ * <p>If <code>prefetch</code> is enabled, the next page is requested asynchronously as soon as a page is received,
+ * while the messages of the current one are being consumed.</p>
+ *
+ * <pre>
+ * MessageHistory history = new MessageHistory(elibom, 500, startDate, endDate, true);
+ * for (Message message : history) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>The iterators are not thread-safe and they throw the same exceptions as
+ * {@link ElibomRestClient#getLastMessages(int, Date, Date)} from <code>hasNext()</code> if a page can't be fetched.</p>
+ *
+ * @author German Escobar
+ */
+public class MessageHistory implements Iterable<Message> {
+
+    private final ElibomRestClient client;
+
+    private final int perPage;
+
+    private final Date startDate;
+
+    private final Date endDate;
+
+    private final boolean prefetch;
+
+    /**
+     * Initializes the history with all the sent messages.
+     *
+     * @param client the client used to request the pages.
+     * @param perPage the number of messages requested in each page.
+     * @param prefetch true to request the next page while the current one is being consumed.
+     */
+    public MessageHistory(ElibomRestClient client, int perPage, boolean prefetch) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(perPage, "perPage must be greater than zero");
+
+        this.client = client;
+        this.perPage = perPage;
+        this.startDate = null;
+        this.endDate = null;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Initializes the history with the messages sent between two dates.
+     *
+     * @param client the client used to request the pages.
+     * @param perPage the number of messages requested in each page.
+     * @param startDate the initial date of the messages.
+     * @param endDate the end date of the messages.
+     * @param prefetch true to request the next page while the current one is being consumed.
+     */
+    public MessageHistory(ElibomRestClient client, int perPage, Date startDate, Date endDate, boolean prefetch) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(perPage, "perPage must be greater than zero");
+        Preconditions.notNull(startDate, "no startDate provided");
+        Preconditions.notNull(endDate, "no endDate provided");
+
+        this.client = client;
+        this.perPage = perPage;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public Iterator<Message> iterator() {
+        return new PageIterator();
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    private class PageIterator implements Iterator<Message> {
+
+        /**
+         * The number of the last page that was requested (pages start at 1).
+         */
+        private int lastRequested = 0;
+
+        private List<Message> page;
+
+        private int index;
+
+        private AsyncResult<List<Message>> next;
+
+        private boolean lastPage;
+
+        @Override
+        public boolean hasNext() {
+            while (page == null || index >= page.size()) {
+                if (lastPage) {
+                    page = null;
+                    return false;
+                }
+
+                page = fetchNext();
+                index = 0;
+                lastPage = page.size() < perPage;
+
+                if (prefetch && !lastPage) {
+                    next = client.getMessagesPageAsync(++lastRequested, perPage, startDate, endDate);
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return page.get(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<Message> fetchNext() {
+            if (next == null) {
+                return client.getMessagesPage(++lastRequested, perPage, startDate, endDate);
+            }
+
+            AsyncResult<List<Message>> result = next;
+            next = null;
+
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+    }
+
+}
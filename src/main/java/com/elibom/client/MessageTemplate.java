@@ -0,0 +1,280 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The text of a message with variables, e.g. <code>"Hola ${name}, tu c&oacute;digo es ${code}"</code>, that is parsed once
+ * and rendered for each recipient.
+ *
+ * <p>A variable is a name of letters, digits, <code>_</code> or <code>.</code> between <code>${</code> and
+ * <code>}</code>; any other <code>$</code> is part of the text. The values are rendered with
+ * <code>String.valueOf</code>.</p>
+ *
+ * <p>{@link #group(Iterable, int)} renders the texts of many recipients into a single buffer and groups the recipients
+ * by text, so a {@link BulkSender} sends each distinct text once to all its destinations and a new String is only
+ * created for each distinct text. A template is immutable and thread-safe.</p>
+ *
+ * <pre>
+ * MessageTemplate template = new MessageTemplate("Your code is ${code}");
+ * String text = template.render(Collections.singletonMap("code", "1234"));
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class MessageTemplate {
+
+    private final String source;
+
+    /**
+     * The text before each variable and, at the end, the text after the last one.
+     */
+    private final String[] literals;
+
+    private final String[] variables;
+
+    /**
+     * Parses a template.
+     *
+     * @param source the text of the template.
+     *
+     * @throws IllegalArgumentException if a variable is not closed or has an invalid name.
+     */
+    public MessageTemplate(String source) throws IllegalArgumentException {
+        Preconditions.notEmpty(source, "no template provided");
+
+        List<String> literals = new ArrayList<String>();
+        List<String> variables = new ArrayList<String>();
+
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < source.length()) {
+            int start = source.indexOf("${", pos);
+            if (start == -1) {
+                literal.append(source, pos, source.length());
+                break;
+            }
+            literal.append(source, pos, start);
+
+            int end = source.indexOf('}', start + 2);
+            if (end == -1) {
+                throw new IllegalArgumentException("A precondition failed: the variable at " + start + " is not closed");
+            }
+
+            String name = source.substring(start + 2, end);
+            checkName(name, start);
+
+            literals.add(literal.toString());
+            variables.add(name);
+            literal.setLength(0);
+
+            pos = end + 1;
+        }
+        literals.add(literal.toString());
+
+        this.source = source;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.variables = variables.toArray(new String[variables.size()]);
+    }
+
+    /**
+     * @return the names of the variables in the order in which they appear, with repetitions.
+     */
+    public List<String> getVariables() {
+        List<String> result = new ArrayList<String>(variables.length);
+        Collections.addAll(result, variables);
+        return result;
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param values the values of the variables by name.
+     *
+     * @return the rendered text.
+     * @throws IllegalArgumentException if a variable has no value.
+     */
+    public String render(Map<String,?> values) throws IllegalArgumentException {
+        StringBuilder out = new StringBuilder(source.length() + 16 * variables.length);
+        render(values, out);
+        return out.toString();
+    }
+
+    /**
+     * Renders the template at the end of <code>out</code>, which can be reused between calls to avoid allocating a
+     * new buffer for each text.
+     *
+     * @param values the values of the variables by name.
+     * @param out the buffer in which the text is appended.
+     *
+     * @throws IllegalArgumentException if a variable has no value.
+     */
+    public void render(Map<String,?> values, StringBuilder out) throws IllegalArgumentException {
+        Preconditions.notNull(values, "no values provided");
+        Preconditions.notNull(out, "no out provided");
+
+        for (int i=0; i < variables.length; i++) {
+            out.append(literals[i]);
+
+            Object value = values.get(variables[i]);
+            if (value == null && !values.containsKey(variables[i])) {
+                throw new IllegalArgumentException("A precondition failed: no value for the variable " + variables[i]);
+            }
+            if (value instanceof CharSequence) {
+                out.append((CharSequence) value);
+            } else {
+                out.append(value);
+            }
+        }
+        out.append(literals[variables.length]);
+    }
+
+    /**
+     * Renders the template for each recipient and groups the destinations by text, checking the segments of each
+     * distinct text once.
+     *
+     * @param recipients the recipients.
+     * @param maxSegments the max number of segments of a text (see {@link SmsSegmenter}).
+     *
+     * @return the destinations of each distinct text, in the order in which the texts were first rendered.
+     * @throws IllegalArgumentException if a variable has no value or a text takes more than <code>maxSegments</code>
+     * segments.
+     */
+    public Map<String,List<String>> group(Iterable<? extends Recipient> recipients, int maxSegments) throws IllegalArgumentException {
+        Preconditions.notNull(recipients, "no recipients provided");
+        Preconditions.isInteger(maxSegments, "maxSegments must be greater than zero");
+
+        StringBuilder buffer = new StringBuilder(source.length() + 16 * variables.length);
+        TextTable table = new TextTable();
+        Map<String,List<String>> groups = new LinkedHashMap<String,List<String>>();
+
+        for (Recipient recipient : recipients) {
+            buffer.setLength(0);
+            render(recipient.getVariables(), buffer);
+
+            List<String> destinations = table.get(buffer);
+            if (destinations == null) {
+                SmsSegmenter.checkSegments(buffer, maxSegments);
+
+                String text = buffer.toString();
+                destinations = new ArrayList<String>();
+                table.put(text, destinations);
+                groups.put(text, destinations);
+            }
+            destinations.add(recipient.getDestination());
+        }
+
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static void checkName(String name, int pos) {
+        if (name.length() == 0) {
+            throw new IllegalArgumentException("A precondition failed: the variable at " + pos + " has no name");
+        }
+
+        for (int i=0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+                throw new IllegalArgumentException("A precondition failed: the variable at " + pos + " has an invalid name: " + name);
+            }
+        }
+    }
+
+    /**
+     * A hash table from the texts to their destinations that is looked up with the rendered buffer, so a String is only
+     * created for a text that is not in the table.
+     */
+    private static class TextTable {
+
+        private Node[] nodes = new Node[64];
+
+        private int size;
+
+        List<String> get(CharSequence text) {
+            int hash = hash(text);
+            for (Node node = nodes[hash & (nodes.length - 1)]; node != null; node = node.next) {
+                if (node.hash == hash && equals(node.text, text)) {
+                    return node.destinations;
+                }
+            }
+            return null;
+        }
+
+        void put(String text, List<String> destinations) {
+            if (size * 4 >= nodes.length * 3) {
+                resize();
+            }
+
+            int hash = hash(text);
+            int index = hash & (nodes.length - 1);
+            nodes[index] = new Node(text, hash, destinations, nodes[index]);
+            size++;
+        }
+
+        private void resize() {
+            Node[] newNodes = new Node[nodes.length * 2];
+            for (Node node : nodes) {
+                while (node != null) {
+                    Node next = node.next;
+                    int index = node.hash & (newNodes.length - 1);
+                    node.next = newNodes[index];
+                    newNodes[index] = node;
+                    node = next;
+                }
+            }
+            nodes = newNodes;
+        }
+
+        /**
+         * The same hash of <code>String.hashCode()</code>, spread to use the high bits in the index.
+         */
+        private static int hash(CharSequence text) {
+            int h = 0;
+            for (int i=0; i < text.length(); i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equals(String a, CharSequence b) {
+            if (a.length() != b.length()) {
+                return false;
+            }
+            for (int i=0; i < a.length(); i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static class Node {
+
+        private final String text;
+
+        private final int hash;
+
+        private final List<String> destinations;
+
+        private Node next;
+
+        Node(String text, int hash, List<String> destinations, Node next) {
+            this.text = text;
+            this.hash = hash;
+            this.destinations = destinations;
+            this.next = next;
+        }
+
+    }
+
+}
@@ -0,0 +1,680 @@
+package com.elibom.client;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent queue of messages that are sent in the background, so the messages that were enqueued but not sent
+ * when the process died are sent when it is started again (at-least-once delivery).
+ *
+ * <p>Each message is appended to a log in <code>directory</code> before {@link #enqueue(String, String)} returns, so
+ * the producers are not slowed down by the network. The log is split in memory-mapped segments of
+ * <code>segmentSize</code> bytes; each record has a CRC32 so a record torn by a crash is detected and ignored. The
+ * messages are sent by <code>workers</code> threads and a record with the delivery token (or the error, if the server
+ * rejects the message) is appended when they complete. Messages that fail for a transient reason (an I/O error, a
+ * <code>5xx</code> or a <code>429</code> response) are sent again after <code>retryDelay</code> milliseconds, up to
+ * {@link #setMaxAttempts(int) maxAttempts} times; any other failure (e.g. a response that can't be decoded, which means
+ * the message may have been accepted) fails the message right away, so it is never sent again.</p>
+ *
+ * <p>{@link #open()} replays the log and sends again the messages that have no result. A message that was sent right
+ * before a crash can be sent twice. The oldest segments are deleted as soon as all their messages complete;
+ * {@link #compact()} moves the messages of the old segments to the current one so they can be deleted.</p>
+ *
+ * <p>The segments are written to the page cache of the operating system, which survives a crash of the process but
+ * not of the machine; call {@link #flush()} to force them to the disk.</p>
+ *
+ * <pre>
+ * Outbox outbox = new Outbox(elibom, new File("/var/spool/elibom"));
+ * outbox.open();
+ * SendRequest request = outbox.enqueue("3201111111", "This is a test");
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class Outbox {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    public static final int DEFAULT_WORKERS = 2;
+
+    public static final long DEFAULT_RETRY_DELAY = 5000;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    private static final String PREFIX = "outbox-";
+
+    private static final String SUFFIX = ".log";
+
+    private static final byte SEND = 1;
+
+    private static final byte COMPLETE = 2;
+
+    private static final byte FAILED = 3;
+
+    /**
+     * The length, the CRC and the type of a record.
+     */
+    private static final int HEADER_SIZE = 9;
+
+    private final ElibomRestClient client;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int workers;
+
+    private final long retryDelay;
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /**
+     * Guards the segments and the pending messages. A lock is used instead of synchronized methods because the log is
+     * written (and forced) while holding it, which would pin a virtual thread to its carrier.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The segments by sequence, the last one is the current. Guarded by the lock, as everything that writes.
+     */
+    private final TreeMap<Long,Segment> segments = new TreeMap<Long,Segment>();
+
+    private final Map<Long,SendRequest> pending = new LinkedHashMap<Long,SendRequest>();
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private long nextId = 1;
+
+    private int replayed;
+
+    private Segment current;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private boolean closed;
+
+    /**
+     * Initializes the outbox with the default values.
+     *
+     * @param client the client used to send the messages.
+     * @param directory the directory of the log, it is created if it doesn't exist.
+     */
+    public Outbox(ElibomRestClient client, File directory) {
+        this(client, directory, DEFAULT_SEGMENT_SIZE, DEFAULT_WORKERS, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Initializes the outbox.
+     *
+     * @param client the client used to send the messages.
+     * @param directory the directory of the log, it is created if it doesn't exist.
+     * @param segmentSize the size in bytes of each segment of the log.
+     * @param workers the number of threads that send the messages.
+     * @param retryDelay the milliseconds to wait before sending again a message that failed for a transient reason.
+     */
+    public Outbox(ElibomRestClient client, File directory, int segmentSize, int workers, long retryDelay) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.notNull(directory, "no directory provided");
+        Preconditions.isInteger(segmentSize - 1024, "segmentSize must be greater than 1024");
+        Preconditions.isInteger(workers, "workers must be greater than zero");
+        Preconditions.notNegative(retryDelay, "retryDelay must not be negative");
+
+        this.client = client;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.workers = workers;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Replays the log, starts the workers and sends the messages that were not completed.
+     *
+     * @throws IllegalStateException if the outbox was already opened.
+     * @throws RuntimeException wraps the IOException if the log can't be read or created.
+     */
+    public void open() throws IllegalStateException, RuntimeException {
+        lock.lock();
+        try {
+            if (executor != null || closed) {
+                throw new IllegalStateException("The outbox was already opened");
+            }
+
+            try {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Couldn't create the directory " + directory);
+                }
+
+                for (File file : listSegments()) {
+                    replay(file);
+                }
+                for (SendRequest request : pending.values()) {
+                    segments.get(request.segment).live++;
+                }
+                replayed = pending.size();
+
+                long sequence = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+                current = Segment.create(file(sequence), sequence, segmentSize);
+                segments.put(sequence, current);
+                deleteCompleted();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            executor = new ScheduledThreadPoolExecutor(workers, new AsyncDispatcher.DaemonThreadFactory("elibom-outbox"));
+            for (SendRequest request : pending.values()) {
+                dispatch(request, 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a message to the log and schedules it to be sent.
+     *
+     * @param to the destinations (separated by comma) of the message.
+     * @param text the text of the message, max {@link SmsSegmenter#MAX_SEGMENTS} segments.
+     *
+     * @return the SendRequest with the result of the message.
+     * @throws IllegalStateException if the outbox is not open.
+     * @throws RuntimeException wraps the IOException if the message can't be appended to the log.
+     */
+    public SendRequest enqueue(String to, String text) throws IllegalStateException, RuntimeException {
+        Preconditions.notEmpty(to, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+        SmsSegmenter.checkSegments(text, SmsSegmenter.MAX_SEGMENTS);
+
+        return append(to, text, null);
+    }
+
+    /**
+     * Same as {@link #enqueue(String, String)} but with a campaign, in which case the text must fit in a single
+     * segment.
+     */
+    public SendRequest enqueue(String to, String text, String campaign) throws IllegalStateException, RuntimeException {
+        Preconditions.notEmpty(to, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+        Preconditions.notEmpty(campaign, "no campaign provided");
+        SmsSegmenter.checkSegments(text, 1);
+
+        return append(to, text, campaign);
+    }
+
+    /**
+     * Forces the current segment to the disk.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if (current != null) {
+                current.buffer.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the messages that are not completed from the old segments to the current one and deletes the old
+     * segments.
+     *
+     * @throws IllegalStateException if the outbox is not open.
+     * @throws RuntimeException wraps the IOException if a message can't be appended to the log.
+     */
+    public void compact() throws IllegalStateException, RuntimeException {
+        lock.lock();
+        try {
+            checkOpen();
+
+            try {
+                for (SendRequest request : new ArrayList<SendRequest>(pending.values())) {
+                    if (request.segment != current.sequence) {
+                        Segment previous = segments.get(request.segment);
+                        write(SEND, encodeSend(request), request);
+                        previous.live--;
+                    }
+                }
+                deleteCompleted();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the workers and forces the log to the disk. The messages that were not completed are sent again the next
+     * time the outbox is opened.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the max number of times a message is sent (in this process) before it is failed. Defaults to
+     * {@link #DEFAULT_MAX_ATTEMPTS}.
+     *
+     * @param maxAttempts the max number of attempts, including the first one.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        Preconditions.isInteger(maxAttempts, "maxAttempts must be greater than zero");
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the messages that have not been completed.
+     */
+    public List<SendRequest> getPending() {
+        lock.lock();
+        try {
+            return new ArrayList<SendRequest>(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages that were not completed when the outbox was opened.
+     */
+    public int getReplayed() {
+        lock.lock();
+        try {
+            return replayed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of segments of the log, including the current one.
+     */
+    public int getSegments() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of messages that failed: rejected by the server, with a response that couldn't be decoded or
+     * that reached the max number of attempts.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of times a message was scheduled to be sent again after a transient failure.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    private SendRequest append(String to, String text, String campaign) {
+        lock.lock();
+        try {
+            checkOpen();
+
+            SendRequest request = new SendRequest(nextId++, to, text, campaign);
+            try {
+                write(SEND, encodeSend(request), request);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            pending.put(request.getId(), request);
+
+            dispatch(request, 0);
+            return request;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch(final SendRequest request, long delay) {
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(request);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the outbox was closed, the message is sent when it is opened again
+        }
+    }
+
+    private void send(SendRequest request) {
+        String deliveryToken;
+        try {
+            request.attempts++;
+            if (request.getCampaign() != null) {
+                deliveryToken = client.sendMessage(request.getTo(), request.getText(), request.getCampaign());
+            } else if (SmsSegmenter.segments(request.getText()) > 1) {
+                deliveryToken = client.sendLargeMessage(request.getTo(), request.getText());
+            } else {
+                deliveryToken = client.sendMessage(request.getTo(), request.getText());
+            }
+        } catch (RuntimeException e) {
+            if (isTransient(e) && request.attempts < maxAttempts) {
+                retries.incrementAndGet();
+                dispatch(request, retryDelay);
+            } else {
+                complete(request, FAILED, String.valueOf(e.getMessage()));
+                failed.incrementAndGet();
+                request.getResult().fail(e);
+            }
+            return;
+        }
+
+        complete(request, COMPLETE, deliveryToken);
+        sent.incrementAndGet();
+        request.getResult().complete(deliveryToken);
+    }
+
+    private void complete(SendRequest request, byte type, String value) {
+        lock.lock();
+        try {
+            if (pending.remove(request.getId()) == null) {
+                return;
+            }
+
+            Segment segment = segments.get(request.segment);
+            segment.live--;
+
+            if (closed) {
+                // the result is lost and the message is sent again when the outbox is opened
+                return;
+            }
+
+            try {
+                write(type, encodeResult(request.getId(), value), null);
+                deleteCompleted();
+            } catch (IOException e) {
+                // the message is sent again when the outbox is opened
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the message failed because of an I/O error, a <code>5xx</code> or a <code>429</code>. A response
+     * that can't be decoded (a <code>JSONException</code>) is not transient: the message may have been accepted.
+     */
+    private boolean isTransient(RuntimeException e) {
+        if (e instanceof HttpServerException) {
+            int statusCode = ((HttpServerException) e).getStatusCode();
+            return statusCode >= 500 || statusCode == 429;
+        }
+
+        return e.getCause() instanceof IOException;
+    }
+
+    /**
+     * Appends a record to the current segment, rolling to a new one if it doesn't fit.
+     *
+     * @param request the request that is sent, whose segment is updated, or null if the record is a result.
+     */
+    private void write(byte type, byte[] payload, SendRequest request) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize - 4) {
+            throw new IllegalArgumentException("A precondition failed: the message takes " + size + " bytes, more than segmentSize");
+        }
+
+        if (current.buffer.remaining() < size + 4) {
+            current.buffer.force();
+
+            long sequence = current.sequence + 1;
+            current = Segment.create(file(sequence), sequence, segmentSize);
+            segments.put(sequence, current);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        current.buffer.putInt(payload.length);
+        current.buffer.putInt((int) crc.getValue());
+        current.buffer.put(type);
+        current.buffer.put(payload);
+
+        if (request != null) {
+            request.segment = current.sequence;
+            current.live++;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments while all their messages are completed. A segment can have the results of messages
+     * of older segments, so it is only deleted after them.
+     */
+    private void deleteCompleted() {
+        Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment == current || segment.live > 0) {
+                return;
+            }
+            if (segment.file.delete() || !segment.file.exists()) {
+                iterator.remove();
+            } else {
+                // the file is still mapped (e.g. on Windows), it is deleted next time
+                return;
+            }
+        }
+    }
+
+    private void replay(File file) throws IOException {
+        long sequence = parseSequence(file);
+        segments.put(sequence, new Segment(file, sequence, null));
+
+        ByteBuffer buffer = ByteBuffer.wrap(readFully(file));
+        CRC32 crc = new CRC32();
+        try {
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                byte type = buffer.get();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return;
+                }
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                crc.reset();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    // a record torn by a crash, nothing was written after it
+                    return;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                long id = record.getLong();
+                nextId = Math.max(nextId, id + 1);
+                if (type == SEND) {
+                    SendRequest request = new SendRequest(id, readString(record), readString(record), readString(record));
+                    request.segment = sequence;
+                    pending.put(id, request);
+                } else {
+                    pending.remove(id);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // a truncated record, the end of the segment
+        }
+    }
+
+    private File[] listSegments() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files);
+        return files;
+    }
+
+    private File file(long sequence) {
+        return new File(directory, PREFIX + String.format("%020d", sequence) + SUFFIX);
+    }
+
+    private long parseSequence(File file) throws IOException {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid segment name: " + name);
+        }
+    }
+
+    private void checkOpen() {
+        if (executor == null || closed) {
+            throw new IllegalStateException("The outbox is not open");
+        }
+    }
+
+    private static byte[] encodeSend(SendRequest request) {
+        byte[] to = request.getTo().getBytes(JsonBody.UTF_8);
+        byte[] text = request.getText().getBytes(JsonBody.UTF_8);
+        byte[] campaign = request.getCampaign() == null ? null : request.getCampaign().getBytes(JsonBody.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + to.length + 4 + text.length + 4 + (campaign == null ? 0 : campaign.length));
+        buffer.putLong(request.getId());
+        writeBytes(buffer, to);
+        writeBytes(buffer, text);
+        writeBytes(buffer, campaign);
+
+        return buffer.array();
+    }
+
+    private static byte[] encodeResult(long id, String value) {
+        byte[] bytes = value.getBytes(JsonBody.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + bytes.length);
+        buffer.putLong(id);
+        writeBytes(buffer, bytes);
+
+        return buffer.array();
+    }
+
+    private static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        String value = new String(buffer.array(), buffer.position(), length, JsonBody.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * A file of the log. Only the current segment is mapped.
+     */
+    private static class Segment {
+
+        private final File file;
+
+        private final long sequence;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * The number of messages whose last record is in this segment and are not completed.
+         */
+        private int live;
+
+        Segment(File file, long sequence, MappedByteBuffer buffer) {
+            this.file = file;
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, long sequence, int size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Segment(file, sequence, buffer);
+            } finally {
+                raf.close();
+            }
+        }
+
+    }
+
+}
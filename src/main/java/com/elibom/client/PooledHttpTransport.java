@@ -0,0 +1,807 @@
+package com.elibom.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The default {@link HttpTransport}. It speaks HTTP/1.1 directly over sockets and keeps a bounded pool of keep-alive
+ * connections per host, so consecutive requests don't pay the TCP and TLS handshakes again.
+ *
+ * <p>Each host can have at most <code>maxConnectionsPerHost</code> open connections; when all of them are in use, the
+ * calling thread waits up to <code>connectTimeout</code> milliseconds for one to be released. Connections that have been
+ * idle for more than <code>idleTimeout</code> milliseconds are closed instead of being reused.</p>
+ *
+ * <p>Proxies are not supported, use your own {@link HttpTransport} implementation if you need one.</p>
+ *
+ * @author German Escobar
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final int maxConnectionsPerHost;
+
+    private final long idleTimeout;
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private final ConcurrentMap<String,HostPool> pools = new ConcurrentHashMap<String,HostPool>();
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+
+    private final AtomicLong connectionsReused = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Initializes the transport with the default values.
+     */
+    public PooledHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Initializes the transport.
+     *
+     * @param maxConnectionsPerHost the max number of connections (idle or in use) that can be open to a single host.
+     * @param idleTimeout the time in milliseconds after which an idle connection is closed.
+     * @param connectTimeout the time in milliseconds to wait for a connection to be established (or released by other
+     * thread if the pool is full).
+     * @param readTimeout the time in milliseconds to wait for data from the server.
+     */
+    public PooledHttpTransport(int maxConnectionsPerHost, long idleTimeout, int connectTimeout, int readTimeout) {
+        Preconditions.isInteger(maxConnectionsPerHost, "maxConnectionsPerHost must be greater than zero");
+        Preconditions.notNegative(idleTimeout, "idleTimeout must not be negative");
+        Preconditions.notNegative(connectTimeout, "connectTimeout must not be negative");
+        Preconditions.notNegative(readTimeout, "readTimeout must not be negative");
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleTimeout = idleTimeout;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (closed) {
+            throw new IOException("The transport is closed");
+        }
+
+        HostPool pool = getPool(request.getUrl());
+        try {
+            return exchange(pool, pool.lease(), request);
+        } catch (StaleConnectionException e) {
+            // the server closed the keep-alive connection before we used it, the others are probably stale too; only
+            // requests that the server can't have processed (or that are idempotent) get here, see exchange
+            pool.closeIdle(0);
+            return exchange(pool, pool.lease(), request);
+        }
+    }
+
+    /**
+     * Opens connections to the host of <code>url</code> (including the TLS handshake) until <code>connections</code> of
+     * them are open, so the first requests don't pay the handshakes. The connections are left idle in the pool and are
+     * closed as usual if they are not used within <code>idleTimeout</code> milliseconds.
+     *
+     * @param url a URL of the host, only the protocol, host and port are used.
+     * @param connections the number of connections that should be open, at most <code>maxConnectionsPerHost</code>.
+     *
+     * @return the number of connections that were opened, 0 if there were already enough.
+     * @throws WarmUpException if a connection can't be established, with the number of connections opened before it,
+     * which are kept.
+     * @throws IOException if the transport is closed.
+     */
+    public int warmUp(URL url, int connections) throws WarmUpException, IOException {
+        Preconditions.notNull(url, "no url provided");
+        Preconditions.notNegative(connections, "connections must not be negative");
+        if (closed) {
+            throw new IOException("The transport is closed");
+        }
+
+        return getPool(url).warmUp(Math.min(connections, maxConnectionsPerHost));
+    }
+
+    /**
+     * Closes the connections that have been idle for more than <code>idleTimeout</code> milliseconds. This is also
+     * done each time a connection is leased or released.
+     */
+    public void closeIdleConnections() {
+        for (HostPool pool : pools.values()) {
+            pool.closeIdle(idleTimeout);
+        }
+    }
+
+    /**
+     * @return the number of open connections (idle or in use) to all the hosts.
+     */
+    public int getOpenConnections() {
+        int total = 0;
+        for (HostPool pool : pools.values()) {
+            total += pool.getOpenConnections();
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the number of idle connections to all the hosts.
+     */
+    public int getIdleConnections() {
+        int total = 0;
+        for (HostPool pool : pools.values()) {
+            total += pool.getIdleConnections();
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the number of connections that have been opened.
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * @return the number of requests that were sent on an idle connection instead of opening a new one.
+     */
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (HostPool pool : pools.values()) {
+            pool.closeIdle(0);
+        }
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    private HostPool getPool(URL url) {
+        String protocol = url.getProtocol().toLowerCase(Locale.ENGLISH);
+        boolean secure = "https".equals(protocol);
+        if (!secure && !"http".equals(protocol)) {
+            throw new IllegalArgumentException("Unsupported protocol: " + protocol);
+        }
+
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        String key = protocol + "://" + url.getHost().toLowerCase(Locale.ENGLISH) + ":" + port;
+
+        HostPool pool = pools.get(key);
+        if (pool == null) {
+            HostPool newPool = new HostPool(url.getHost(), port, secure);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+
+        return pool;
+    }
+
+    private HttpResponse exchange(HostPool pool, Connection connection, HttpRequest request) throws IOException {
+        boolean reusable = false;
+        boolean written = false;
+        try {
+            writeRequest(connection, request);
+            written = true;
+
+            String statusLine = readLine(connection.in);
+            if (statusLine == null) {
+                if (isReplayable(connection, request, written)) {
+                    throw new StaleConnectionException();
+                }
+                throw new EOFException("The server closed the connection without sending a response");
+            }
+
+            int statusCode = parseStatusCode(statusLine);
+            Map<String,String> headers = readHeaders(connection.in);
+            while (statusCode >= 100 && statusCode < 200) {
+                // skip interim responses (e.g. 100 Continue)
+                statusLine = readLine(connection.in);
+                if (statusLine == null) {
+                    throw new EOFException("The server closed the connection without sending a response");
+                }
+                statusCode = parseStatusCode(statusLine);
+                headers = readHeaders(connection.in);
+            }
+
+            boolean keepAlive = isKeepAlive(statusLine, headers);
+            byte[] body;
+            if ("HEAD".equals(request.getMethod()) || statusCode == 204 || statusCode == 304) {
+                body = null;
+            } else if (headers.containsKey("transfer-encoding") && headers.get("transfer-encoding").toLowerCase(Locale.ENGLISH).contains("chunked")) {
+                body = readChunkedBody(connection.in);
+            } else if (headers.containsKey("content-length")) {
+                body = readFully(connection.in, parseContentLength(headers.get("content-length")));
+            } else {
+                body = readToEnd(connection.in);
+                keepAlive = false;
+            }
+
+            reusable = keepAlive;
+            return new HttpResponse(statusCode, headers, body);
+        } catch (IOException e) {
+            if (isReplayable(connection, request, written) && !(e instanceof StaleConnectionException)
+                    && !(e instanceof SocketTimeoutException)) {
+                throw new StaleConnectionException();
+            }
+            throw e;
+        } finally {
+            pool.release(connection, reusable && !closed);
+        }
+    }
+
+    /**
+     * A request that failed on a reused connection before any byte of the response was received can be sent again on a
+     * new connection if it is idempotent or if it wasn't completely written (so the server can't have processed it). A
+     * POST that was written is never sent again here, the server may have accepted it before closing the connection;
+     * the error is thrown so the {@link RetryPolicy} decides.
+     */
+    private boolean isReplayable(Connection connection, HttpRequest request, boolean written) {
+        if (!connection.reused || connection.received) {
+            return false;
+        }
+
+        String method = request.getMethod();
+        return !written || "GET".equals(method) || "DELETE".equals(method) || "HEAD".equals(method);
+    }
+
+    private void writeRequest(Connection connection, HttpRequest request) throws IOException {
+        URL url = request.getUrl();
+        String path = url.getFile();
+        if (path == null || path.length() == 0) {
+            path = "/";
+        }
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(request.getMethod()).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            head.append(':').append(url.getPort());
+        }
+        head.append("\r\n");
+
+        for (Map.Entry<String,String> header : request.getHeaders().entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+
+        byte[] body = request.getBody();
+        if (body != null || "POST".equals(request.getMethod()) || "PUT".equals(request.getMethod())) {
+            head.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        OutputStream out = connection.out;
+        out.write(head.toString().getBytes(ISO_8859_1));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+    }
+
+    private int parseStatusCode(String statusLine) throws IOException {
+        // HTTP/1.1 200 OK
+        int start = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || start == -1 || statusLine.length() < start + 4) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+
+        try {
+            return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private Map<String,String> readHeaders(InputStream in) throws IOException {
+        Map<String,String> headers = new LinkedHashMap<String,String>();
+
+        String line;
+        while ((line = readLine(in)) != null && line.length() > 0) {
+            int separator = line.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+
+            String name = line.substring(0, separator).trim().toLowerCase(Locale.ENGLISH);
+            String value = line.substring(separator + 1).trim();
+            String previous = headers.get(name);
+            headers.put(name, previous == null ? value : previous + ", " + value);
+        }
+
+        if (line == null) {
+            throw new EOFException("The server closed the connection while sending the headers");
+        }
+
+        return headers;
+    }
+
+    private boolean isKeepAlive(String statusLine, Map<String,String> headers) {
+        String connection = headers.get("connection");
+        if (connection != null) {
+            connection = connection.toLowerCase(Locale.ENGLISH);
+        }
+
+        if (statusLine.startsWith("HTTP/1.0")) {
+            return connection != null && connection.contains("keep-alive");
+        }
+
+        return connection == null || !connection.contains("close");
+    }
+
+    private int parseContentLength(String value) throws IOException {
+        try {
+            int length = Integer.parseInt(value.trim());
+            if (length < 0) {
+                throw new IOException("Invalid Content-Length: " + value);
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Content-Length: " + value);
+        }
+    }
+
+    private byte[] readChunkedBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        while (true) {
+            String line = readLine(in);
+            if (line == null) {
+                throw new EOFException("The server closed the connection while sending the body");
+            }
+
+            int extension = line.indexOf(';');
+            String size = extension == -1 ? line.trim() : line.substring(0, extension).trim();
+
+            int remaining;
+            try {
+                remaining = Integer.parseInt(size, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + line);
+            }
+
+            if (remaining == 0) {
+                // trailers
+                while ((line = readLine(in)) != null && line.length() > 0);
+                return body.toByteArray();
+            }
+
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new EOFException("The server closed the connection while sending the body");
+                }
+                body.write(buffer, 0, read);
+                remaining -= read;
+            }
+            readLine(in);
+        }
+    }
+
+    private byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] body = new byte[length];
+
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(body, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException("The server closed the connection while sending the body");
+            }
+            offset += read;
+        }
+
+        return body;
+    }
+
+    private byte[] readToEnd(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+
+        return body.toByteArray();
+    }
+
+    /**
+     * Reads a line terminated by CRLF (or LF) in ISO-8859-1, as defined for the HTTP status line and headers.
+     *
+     * @return the line without the line terminator or null if the stream ended before any byte was read.
+     */
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Line exceeds " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append((char) b);
+        }
+
+        if (line.length() == 0) {
+            return null;
+        }
+
+        throw new EOFException("The server closed the connection in the middle of a line");
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try { socket.close(); } catch (Exception e) {}
+        }
+    }
+
+    /**
+     * Thrown when a reused connection fails before any byte of the response is received, which means the server closed
+     * it while it was idle in the pool.
+     */
+    private static class StaleConnectionException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public StaleConnectionException() {
+            super("The pooled connection was closed by the server");
+        }
+
+    }
+
+    /**
+     * An open connection to a host.
+     */
+    private static class Connection {
+
+        private final Socket socket;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private long lastUsed;
+
+        private boolean reused;
+
+        private boolean received;
+
+        public Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new TrackingInputStream(this, new BufferedInputStream(socket.getInputStream(), 8192));
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        }
+
+    }
+
+    /**
+     * Records whether any byte has been received in the current exchange, so stale connections can be told apart from
+     * requests that failed in the middle of the response.
+     */
+    private static class TrackingInputStream extends InputStream {
+
+        private final Connection connection;
+
+        private final InputStream in;
+
+        public TrackingInputStream(Connection connection, InputStream in) {
+            this.connection = connection;
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                connection.received = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                connection.received = true;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+    /**
+     * The connections to a single host. A lock is used instead of synchronized blocks and no I/O is done while holding
+     * it, so threads waiting for a connection never pin a carrier thread.
+     */
+    private class HostPool {
+
+        private final String host;
+
+        private final int port;
+
+        private final boolean secure;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition released = lock.newCondition();
+
+        private final Deque<Connection> idle = new ArrayDeque<Connection>();
+
+        private int open;
+
+        public HostPool(String host, int port, boolean secure) {
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+        }
+
+        public Connection lease() throws IOException {
+            List<Connection> expired = new ArrayList<Connection>();
+            Connection connection = null;
+
+            lock.lock();
+            try {
+                long remaining = connectTimeout == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+                while (connection == null) {
+                    long now = System.currentTimeMillis();
+                    while (!idle.isEmpty() && connection == null) {
+                        Connection candidate = idle.pollFirst();
+                        if (now - candidate.lastUsed > idleTimeout || candidate.socket.isClosed()) {
+                            open--;
+                            expired.add(candidate);
+                        } else {
+                            connection = candidate;
+                        }
+                    }
+
+                    if (connection == null) {
+                        if (open < maxConnectionsPerHost) {
+                            open++;
+                            break;
+                        }
+
+                        if (remaining <= 0) {
+                            throw new ConnectException("Timed out waiting for a connection to " + host + ":" + port);
+                        }
+
+                        try {
+                            remaining = released.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new ConnectException("Interrupted while waiting for a connection to " + host + ":" + port);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+                for (Connection c : expired) {
+                    closeQuietly(c.socket);
+                }
+            }
+
+            if (connection != null) {
+                connection.reused = true;
+                connection.received = false;
+                connectionsReused.incrementAndGet();
+                return connection;
+            }
+
+            try {
+                Connection connected = connect();
+                connectionsOpened.incrementAndGet();
+                return connected;
+            } catch (IOException e) {
+                release(null, false);
+                throw e;
+            } catch (RuntimeException e) {
+                release(null, false);
+                throw e;
+            }
+        }
+
+        /**
+         * Returns a leased connection to the pool or, if it can't be reused, closes it and frees its slot.
+         */
+        public void release(Connection connection, boolean reusable) {
+            lock.lock();
+            try {
+                if (connection != null && reusable) {
+                    connection.lastUsed = System.currentTimeMillis();
+                    idle.addFirst(connection);
+                } else {
+                    open--;
+                }
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            if (connection != null && !reusable) {
+                closeQuietly(connection.socket);
+            }
+        }
+
+        /**
+         * Opens connections, one at a time, until <code>target</code> are open and releases them to the pool.
+         */
+        public int warmUp(int target) throws WarmUpException {
+            List<Connection> opened = new ArrayList<Connection>();
+            try {
+                while (true) {
+                    lock.lock();
+                    try {
+                        if (open >= target) {
+                            return opened.size();
+                        }
+                        open++;
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    try {
+                        opened.add(connect());
+                        connectionsOpened.incrementAndGet();
+                    } catch (IOException e) {
+                        release(null, false);
+                        throw new WarmUpException(opened.size(), e);
+                    } catch (RuntimeException e) {
+                        release(null, false);
+                        throw e;
+                    }
+                }
+            } finally {
+                for (Connection connection : opened) {
+                    release(connection, true);
+                }
+            }
+        }
+
+        public void closeIdle(long maxIdleTime) {
+            List<Connection> expired = new ArrayList<Connection>();
+
+            lock.lock();
+            try {
+                long now = System.currentTimeMillis();
+                // the least recently used connections are at the end of the deque
+                while (!idle.isEmpty() && now - idle.peekLast().lastUsed >= maxIdleTime) {
+                    expired.add(idle.pollLast());
+                    open--;
+                }
+                if (!expired.isEmpty()) {
+                    released.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (Connection connection : expired) {
+                closeQuietly(connection.socket);
+            }
+        }
+
+        public int getOpenConnections() {
+            lock.lock();
+            try {
+                return open;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int getIdleConnections() {
+            lock.lock();
+            try {
+                return idle.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Connection connect() throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                socket.connect(new InetSocketAddress(host, port), connectTimeout);
+                socket.setSoTimeout(readTimeout);
+
+                if (secure) {
+                    SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                    SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+
+                    boolean identified = HostnameChecker.enableEndpointIdentification(sslSocket);
+                    sslSocket.startHandshake();
+                    if (!identified) {
+                        HostnameChecker.check(host, sslSocket.getSession());
+                    }
+
+                    socket = sslSocket;
+                }
+
+                return new Connection(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+
+                ConnectException ce = new ConnectException("Couldn't connect to " + host + ":" + port + ": " + e.getMessage());
+                ce.initCause(e);
+                throw ce;
+            }
+        }
+
+    }
+
+}
@@ -73,6 +73,34 @@ public class Preconditions {
         }
     }
     
+    /**
+     * Checks that a number is not negative.
+     *
+     * @param value the number to be tested.
+     * @param message the message for the exception in case the number is negative.
+     *
+     * @throws IllegalArgumentException if the number is negative.
+     */
+    public static void notNegative(long value, String message) throws IllegalArgumentException {
+        if (value < 0) {
+            throw new IllegalArgumentException("A precondition failed: " + message);
+        }
+    }
+
+    /**
+     * Checks that a number is greater than zero.
+     *
+     * @param value the number to be tested.
+     * @param message the message for the exception in case the number is not greater than zero.
+     *
+     * @throws IllegalArgumentException if the number is not greater than zero.
+     */
+    public static void isPositive(double value, String message) throws IllegalArgumentException {
+        if (!(value > 0)) {
+            throw new IllegalArgumentException("A precondition failed: " + message);
+        }
+    }
+
     public static void isInteger(int value, String message) throws IllegalArgumentException {
     	if(value < 1) {
     		throw new IllegalArgumentException("A precondition failed: " + message);
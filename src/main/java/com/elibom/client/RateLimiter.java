@@ -0,0 +1,229 @@
+package com.elibom.client;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the rate at which the {@link ElibomRestClient} sends requests. It allows up to
+ * <code>burst</code> requests at once and <code>permitsPerSecond</code> requests per second on average. The state is
+ * kept in atomic variables, so threads waiting for a permit don't contend on a lock.
+ *
+ * <p>In adaptive mode, the rate is halved (down to 5% of the configured rate) each time the server responds with
+ * <code>429 Too Many Requests</code> or <code>503 Service Unavailable</code>, and the requests are held until the time
+ * specified in the <code>Retry-After</code> header. Then, while the server keeps accepting the requests, the rate grows
+ * back by 5% of the configured rate every second.</p>
+ *
+ * <pre>
+ * elibom.setRateLimiter(new RateLimiter(50, 10, true));
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public class RateLimiter {
+
+    private static final double MIN_RATE_FACTOR = 0.05;
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private static final double INCREASE_FACTOR = 0.05;
+
+    private static final long ADJUST_PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRate;
+
+    private final int burst;
+
+    private final boolean adaptive;
+
+    /**
+     * The theoretical arrival time (in nanoseconds) of the next request if the requests were evenly spaced.
+     */
+    private final AtomicLong theoreticalArrival;
+
+    private final AtomicLong rate;
+
+    private final AtomicLong lastIncrease;
+
+    private final AtomicLong lastDecrease;
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Initializes a non adaptive rate limiter.
+     *
+     * @param permitsPerSecond the max number of requests per second.
+     * @param burst the max number of requests that can be sent at once.
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, false);
+    }
+
+    /**
+     * Initializes the rate limiter.
+     *
+     * @param permitsPerSecond the max number of requests per second.
+     * @param burst the max number of requests that can be sent at once.
+     * @param adaptive true if the rate should adapt to the throttling responses of the server, false otherwise.
+     */
+    public RateLimiter(double permitsPerSecond, int burst, boolean adaptive) {
+        Preconditions.isPositive(permitsPerSecond, "permitsPerSecond must be greater than zero");
+        Preconditions.isInteger(burst, "burst must be greater than zero");
+
+        this.maxRate = permitsPerSecond;
+        this.burst = burst;
+        this.adaptive = adaptive;
+
+        long now = System.nanoTime();
+        this.theoreticalArrival = new AtomicLong(now);
+        this.rate = new AtomicLong(Double.doubleToLongBits(permitsPerSecond));
+        // the first adjustments are allowed right away, the server may throttle the initial burst
+        this.lastIncrease = new AtomicLong(now - ADJUST_PERIOD);
+        this.lastDecrease = new AtomicLong(now - ADJUST_PERIOD);
+    }
+
+    /**
+     * Takes a permit, waiting until it is available.
+     *
+     * @return the time in nanoseconds the calling thread waited.
+     * @throws InterruptedIOException if the thread is interrupted while waiting.
+     */
+    public long acquire() throws InterruptedIOException {
+        long wait = reserve();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+            }
+        }
+
+        return wait;
+    }
+
+    /**
+     * Takes a permit only if it is available right now.
+     *
+     * @return true if the permit was taken, false otherwise.
+     */
+    public boolean tryAcquire() {
+        long interval = getInterval();
+        long tolerance = interval * (burst - 1);
+
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            if (tat - tolerance - now > 0) {
+                return false;
+            }
+
+            if (theoreticalArrival.compareAndSet(tat, Math.max(tat, now) + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Notifies the limiter that the server accepted a request. In adaptive mode, this grows the rate back to the
+     * configured one.
+     */
+    public void onSuccess() {
+        if (!adaptive || getRate() >= maxRate) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long last = lastIncrease.get();
+        if (now - last >= ADJUST_PERIOD && lastIncrease.compareAndSet(last, now)) {
+            updateRate(Math.min(maxRate, getRate() + maxRate * INCREASE_FACTOR));
+        }
+    }
+
+    /**
+     * Notifies the limiter that the server throttled a request. In adaptive mode, this halves the rate (at most once per
+     * second, so a batch of concurrent rejections doesn't collapse it) and holds the next requests for
+     * <code>retryAfter</code> milliseconds.
+     *
+     * @param retryAfter the time in milliseconds the server asked to wait or -1 if unknown.
+     */
+    public void onThrottle(long retryAfter) {
+        throttled.incrementAndGet();
+        if (!adaptive) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long last = lastDecrease.get();
+        if (now - last >= ADJUST_PERIOD && lastDecrease.compareAndSet(last, now)) {
+            updateRate(Math.max(maxRate * MIN_RATE_FACTOR, getRate() * DECREASE_FACTOR));
+        }
+
+        if (retryAfter > 0) {
+            // the first request after the pause is allowed at now + retryAfter, without a burst
+            long until = now + TimeUnit.MILLISECONDS.toNanos(retryAfter) + getInterval() * (burst - 1);
+            while (true) {
+                long tat = theoreticalArrival.get();
+                if (tat - until >= 0 || theoreticalArrival.compareAndSet(tat, until)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the current rate in requests per second, which is lower than the configured one if the server has been
+     * throttling the requests.
+     */
+    public double getRate() {
+        return Double.longBitsToDouble(rate.get());
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return the number of throttling responses received from the server.
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Reserves the next permit.
+     *
+     * @return the time in nanoseconds to wait before using it.
+     */
+    private long reserve() {
+        long interval = getInterval();
+        long tolerance = interval * (burst - 1);
+
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, now) + interval;
+
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return Math.max(0, tat - tolerance - now);
+            }
+        }
+    }
+
+    private long getInterval() {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / getRate());
+    }
+
+    private void updateRate(double value) {
+        rate.set(Double.doubleToLongBits(value));
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.elibom.client;
+
+import java.util.Map;
+
+/**
+ * A destination with the values of the variables of a {@link MessageTemplate}.
+ *
+ * @author German Escobar
+ */
+public class Recipient {
+
+    private final String destination;
+
+    private final Map<String,?> variables;
+
+    /**
+     * @param destination the destination of the message.
+     * @param variables the values of the variables of the template by name, they are not copied.
+     */
+    public Recipient(String destination, Map<String,?> variables) {
+        Preconditions.notEmpty(destination, "no destination provided");
+        Preconditions.notNull(variables, "no variables provided");
+
+        this.destination = destination;
+        this.variables = variables;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public Map<String,?> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return "Recipient [destination=" + destination + ", variables=" + variables + "]";
+    }
+
+}
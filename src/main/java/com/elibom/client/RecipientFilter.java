@@ -0,0 +1,365 @@
+package com.elibom.client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Normalizes and deduplicates the destinations of a message before they are sent, so malformed and repeated numbers
+ * are not billed.
+ *
+ * <p>Each destination is normalized to its E.164 digits (without the <code>+</code>), the format expected by the API:</p>
+ *
+ * <ul>
+ *   <li>Spaces, dashes, dots and parentheses are ignored; any other character rejects the destination.</li>
+ *   <li>A destination that starts with <code>+</code> or <code>00</code> already has its country code.</li>
+ *   <li>A destination with a trunk prefix (a single leading <code>0</code>) or with exactly <code>nationalLength</code>
+ *   digits is national and gets the default country code.</li>
+ *   <li>Any other destination is assumed to have its country code (e.g. <code>573002111111</code>).</li>
+ *   <li>The result must have between {@link #MIN_DIGITS} and {@link #MAX_DIGITS} digits.</li>
+ * </ul>
+ *
+ * <p>The numbers are parsed into <code>long</code>s without intermediate strings and kept in a primitive hash set,
+ * so a filter can check millions of destinations per second and remember millions of them in a few tens of megabytes.
+ * {@link #filter(Iterable)} consumes the destinations lazily, so it can be chained with a file reader and a
+ * {@link BulkSender} without loading the list in memory:</p>
+ *
+ * <pre>
+ * RecipientFilter filter = new RecipientFilter("57", 10);
+ * filter.setRejectionListener(listener);
+ * BulkResult result = sender.send(filter.filter(destinations), "This is a test");
+ * </pre>
+ *
+ * <p>A filter remembers all the destinations it has accepted until {@link #reset()} is called. This class is not
+ * thread-safe.</p>
+ *
+ * @author German Escobar
+ */
+public class RecipientFilter {
+
+    /**
+     * The reasons for which a destination is rejected.
+     */
+    public enum Rejection {
+        EMPTY, INVALID_CHARACTER, INVALID_PREFIX, TOO_SHORT, TOO_LONG, DUPLICATE
+    }
+
+    /**
+     * Notified of each destination that is rejected.
+     */
+    public interface RejectionListener {
+        void onRejected(String destination, Rejection reason);
+    }
+
+    public static final int MIN_DIGITS = 8;
+
+    public static final int MAX_DIGITS = 15;
+
+    private static final Rejection[] REJECTIONS = Rejection.values();
+
+    private final long countryCode;
+
+    private final int countryCodeDigits;
+
+    private final int nationalLength;
+
+    private final LongHashSet accepted = new LongHashSet();
+
+    private final long[] rejected = new long[REJECTIONS.length];
+
+    private RejectionListener rejectionListener;
+
+    /**
+     * Initializes a filter without a default country code: all the destinations must have their country code.
+     */
+    public RecipientFilter() {
+        this.countryCode = 0;
+        this.countryCodeDigits = 0;
+        this.nationalLength = 0;
+    }
+
+    /**
+     * Initializes a filter with a default country code.
+     *
+     * @param countryCode the country code of the national destinations, e.g. <code>"57"</code>.
+     * @param nationalLength the number of digits of a national destination without the trunk prefix (e.g. 10 in
+     *  Colombia), 0 if it varies.
+     */
+    public RecipientFilter(String countryCode, int nationalLength) {
+        Preconditions.notEmpty(countryCode, "no countryCode provided");
+        Preconditions.notNegative(nationalLength, "nationalLength must not be negative");
+        if (countryCode.length() > 3 || countryCode.charAt(0) < '1' || countryCode.charAt(0) > '9') {
+            throw new IllegalArgumentException("A precondition failed: countryCode is not a valid country code");
+        }
+
+        long code = 0;
+        for (int i=0; i < countryCode.length(); i++) {
+            char c = countryCode.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("A precondition failed: countryCode is not a valid country code");
+            }
+            code = code * 10 + (c - '0');
+        }
+
+        this.countryCode = code;
+        this.countryCodeDigits = countryCode.length();
+        this.nationalLength = nationalLength;
+    }
+
+    public void setRejectionListener(RejectionListener rejectionListener) {
+        this.rejectionListener = rejectionListener;
+    }
+
+    /**
+     * Normalizes a destination, without checking for duplicates.
+     *
+     * @param destination the destination to normalize.
+     *
+     * @return the E.164 digits of the destination or null if it is not valid.
+     */
+    public String normalize(String destination) {
+        long number = parse(destination);
+        return number > 0 ? Long.toString(number) : null;
+    }
+
+    /**
+     * Normalizes and deduplicates the destinations as they are consumed. The rejected destinations are counted and
+     * reported to the {@link RejectionListener}.
+     *
+     * @param destinations the raw destinations.
+     *
+     * @return an Iterable with the E.164 digits of each accepted destination.
+     */
+    public Iterable<String> filter(final Iterable<String> destinations) {
+        Preconditions.notNull(destinations, "no destinations provided");
+
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new FilterIterator(destinations.iterator());
+            }
+        };
+    }
+
+    /**
+     * Normalizes and deduplicates comma separated destinations, as they are passed to
+     * {@link ElibomRestClient#sendMessage(String, String)}.
+     *
+     * @param to the comma separated destinations.
+     *
+     * @return the comma separated E.164 digits of the accepted destinations, empty if none was accepted.
+     */
+    public String filter(String to) {
+        Preconditions.notNull(to, "no destinations provided");
+
+        StringBuilder result = new StringBuilder(to.length());
+        int start = 0;
+        while (start <= to.length()) {
+            int end = to.indexOf(',', start);
+            if (end == -1) {
+                end = to.length();
+            }
+
+            long number = accept(to, start, end);
+            if (number > 0) {
+                if (result.length() > 0) {
+                    result.append(',');
+                }
+                result.append(number);
+            } else {
+                reject(to.substring(start, end), REJECTIONS[(int) -number - 1]);
+            }
+
+            start = end + 1;
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * @return the number of distinct destinations that have been accepted.
+     */
+    public int getAccepted() {
+        return accepted.size();
+    }
+
+    /**
+     * @return the number of destinations that have been rejected for any reason.
+     */
+    public long getRejected() {
+        long total = 0;
+        for (long count : rejected) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of destinations that have been rejected for a reason.
+     */
+    public long getRejected(Rejection reason) {
+        Preconditions.notNull(reason, "no reason provided");
+        return rejected[reason.ordinal()];
+    }
+
+    /**
+     * Forgets the accepted destinations and the counts of rejections.
+     */
+    public void reset() {
+        accepted.clear();
+        for (int i=0; i < rejected.length; i++) {
+            rejected[i] = 0;
+        }
+    }
+
+    /**
+     * @return the number of the destination if it is valid and not a duplicate, otherwise <code>-(ordinal + 1)</code>
+     * of the reason.
+     */
+    private long accept(CharSequence destination, int start, int end) {
+        long number = parse(destination, start, end);
+        if (number > 0 && !accepted.add(number)) {
+            return -(Rejection.DUPLICATE.ordinal() + 1);
+        }
+        return number;
+    }
+
+    private long parse(CharSequence destination) {
+        if (destination == null) {
+            return -(Rejection.EMPTY.ordinal() + 1);
+        }
+        return parse(destination, 0, destination.length());
+    }
+
+    /**
+     * Parses the destination between <code>start</code> (inclusive) and <code>end</code> (exclusive).
+     *
+     * @return the number or <code>-(ordinal + 1)</code> of the reason for which it is rejected.
+     */
+    private long parse(CharSequence destination, int start, int end) {
+        while (start < end && Character.isWhitespace(destination.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(destination.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return -(Rejection.EMPTY.ordinal() + 1);
+        }
+
+        boolean plus = destination.charAt(start) == '+';
+        if (plus) {
+            start++;
+        }
+
+        long number = 0;
+        int digits = 0;
+        int leadingZeros = 0;
+        for (int i=start; i < end; i++) {
+            char c = destination.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == 0 && c == '0') {
+                    leadingZeros++;
+                } else if (digits == MAX_DIGITS) {
+                    return -(Rejection.TOO_LONG.ordinal() + 1);
+                } else {
+                    number = number * 10 + (c - '0');
+                    digits++;
+                }
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                return -(Rejection.INVALID_CHARACTER.ordinal() + 1);
+            }
+        }
+
+        if (digits == 0) {
+            return -(Rejection.TOO_SHORT.ordinal() + 1);
+        }
+
+        boolean national;
+        if (plus) {
+            if (leadingZeros > 0) {
+                return -(Rejection.INVALID_PREFIX.ordinal() + 1);
+            }
+            national = false;
+        } else if (leadingZeros == 2) {
+            national = false;
+        } else if (leadingZeros == 1) {
+            if (countryCodeDigits == 0 || (nationalLength > 0 && digits != nationalLength)) {
+                return -(Rejection.INVALID_PREFIX.ordinal() + 1);
+            }
+            national = true;
+        } else if (leadingZeros == 0) {
+            national = countryCodeDigits > 0 && digits == nationalLength;
+        } else {
+            return -(Rejection.INVALID_PREFIX.ordinal() + 1);
+        }
+
+        if (national) {
+            if (digits + countryCodeDigits > MAX_DIGITS) {
+                return -(Rejection.TOO_LONG.ordinal() + 1);
+            }
+            long factor = 1;
+            for (int i=0; i < digits; i++) {
+                factor *= 10;
+            }
+            number += countryCode * factor;
+            digits += countryCodeDigits;
+        }
+
+        if (digits < MIN_DIGITS) {
+            return -(Rejection.TOO_SHORT.ordinal() + 1);
+        }
+
+        return number;
+    }
+
+    private void reject(String destination, Rejection reason) {
+        rejected[reason.ordinal()]++;
+        if (rejectionListener != null) {
+            rejectionListener.onRejected(destination, reason);
+        }
+    }
+
+    private class FilterIterator implements Iterator<String> {
+
+        private final Iterator<String> destinations;
+
+        private String next;
+
+        FilterIterator(Iterator<String> destinations) {
+            this.destinations = destinations;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && destinations.hasNext()) {
+                String destination = destinations.next();
+
+                long number = destination == null ? parse(null) : accept(destination, 0, destination.length());
+                if (number > 0) {
+                    next = Long.toString(number);
+                } else {
+                    reject(destination, REJECTIONS[(int) -number - 1]);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,417 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the requests of threads that send the same thing at the same time. The messages with the same text (and
+ * campaign) that are sent within <code>window</code> milliseconds of the first one are sent as a single request with
+ * comma separated destinations; a request is sent earlier if it reaches <code>maxDestinations</code>. Each caller gets
+ * its own result, which completes with the delivery token of the request its destinations were sent in (or fails
+ * with its exception).
+ *
+ * <p>Concurrent calls to {@link #getDelivery(String)} with the same delivery token share a single request, in the same
+ * way as the {@link ResponseCache} does, but the response is not kept once it is received.</p>
+ *
+ * <pre>
+ * RequestCoalescer coalescer = new RequestCoalescer(elibom, 10, 500);
+ * String deliveryToken = coalescer.sendMessage("3201111111", "Your order has shipped"); // from many threads
+ * </pre>
+ *
+ * <p>A message waits up to <code>window</code> milliseconds before it is sent, so a sender that calls this class
+ * from a single thread only gets the latency, not the merging.</p>
+ *
+ * <p>The callers merged in a request share its fate and its delivery:</p>
+ *
+ * <ul>
+ *   <li>if the server rejects the request (e.g. because one of the destinations is invalid), every caller in it fails
+ *   with the same exception, so validate the destinations before sending them through the coalescer;</li>
+ *   <li>every caller gets the same delivery token, and {@link ElibomRestClient#getDelivery(String)} with it returns
+ *   the messages (and destinations) of all the callers. Don't merge messages of callers that must not see each other's
+ *   recipients.</li>
+ * </ul>
+ *
+ * @author German Escobar
+ */
+public class RequestCoalescer {
+
+    public static final long DEFAULT_WINDOW = 10;
+
+    public static final int DEFAULT_MAX_DESTINATIONS = BulkSender.DEFAULT_BATCH_SIZE;
+
+    private final ElibomRestClient client;
+
+    private final long window;
+
+    private final int maxDestinations;
+
+    private final ConcurrentMap<Key,Batch> batches = new ConcurrentHashMap<Key,Batch>();
+
+    private final ConcurrentMap<String,AsyncResult<Delivery>> deliveries = new ConcurrentHashMap<String,AsyncResult<Delivery>>();
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final AtomicLong messages = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong sharedReads = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Initializes the coalescer with the default values.
+     *
+     * @param client the client used to send the requests.
+     */
+    public RequestCoalescer(ElibomRestClient client) {
+        this(client, DEFAULT_WINDOW, DEFAULT_MAX_DESTINATIONS);
+    }
+
+    /**
+     * Initializes the coalescer.
+     *
+     * @param client the client used to send the requests.
+     * @param window the milliseconds a message waits for other messages with the same text.
+     * @param maxDestinations the max number of destinations of each request.
+     */
+    public RequestCoalescer(ElibomRestClient client, long window, int maxDestinations) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.notNegative(window, "window must not be negative");
+        Preconditions.isInteger(maxDestinations, "maxDestinations must be greater than zero");
+
+        this.client = client;
+        this.window = window;
+        this.maxDestinations = maxDestinations;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new AsyncDispatcher.DaemonThreadFactory("elibom-coalescer"));
+    }
+
+    /**
+     * Sends an SMS message, blocking until the request it is merged in is sent.
+     *
+     * @param to the destinations (separated by comma) of the message.
+     * @param text the text of the message, max {@link SmsSegmenter#MAX_SEGMENTS} segments.
+     *
+     * @return the delivery token of the request, shared with the other messages merged in it.
+     * @throws HttpServerException if the server responds with a HTTP status code other than <code>200 OK</code>.
+     * @throws RuntimeException wraps any other unexpected exception.
+     */
+    public String sendMessage(String to, String text) throws HttpServerException, RuntimeException {
+        return await(sendMessageAsync(to, text));
+    }
+
+    /**
+     * Same as {@link #sendMessage(String, String)} but with a campaign, in which case the text must fit in a single
+     * segment.
+     */
+    public String sendMessage(String to, String text, String campaign) throws HttpServerException, RuntimeException {
+        return await(sendMessageAsync(to, text, campaign));
+    }
+
+    /**
+     * Asynchronous version of {@link #sendMessage(String, String)}.
+     *
+     * @return an AsyncResult that completes with the delivery token or fails with the exception of the request.
+     * @throws IllegalStateException if the coalescer was closed.
+     */
+    public AsyncResult<String> sendMessageAsync(String to, String text) throws IllegalStateException {
+        Preconditions.notEmpty(to, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+        SmsSegmenter.checkSegments(text, SmsSegmenter.MAX_SEGMENTS);
+
+        return add(to, new Key(text, null));
+    }
+
+    /**
+     * Asynchronous version of {@link #sendMessage(String, String, String)}.
+     */
+    public AsyncResult<String> sendMessageAsync(String to, String text, String campaign) throws IllegalStateException {
+        Preconditions.notEmpty(to, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+        Preconditions.notEmpty(campaign, "no campaign provided");
+        SmsSegmenter.checkSegments(text, 1);
+
+        return add(to, new Key(text, campaign));
+    }
+
+    /**
+     * Same as {@link ElibomRestClient#getDelivery(String)} but the concurrent calls with the same
+     * <code>deliveryId</code> share a single request.
+     */
+    public Delivery getDelivery(String deliveryId) throws HttpServerException, RuntimeException {
+        Preconditions.notEmpty(deliveryId, "no deliveryId provided");
+
+        AsyncResult<Delivery> candidate = new AsyncResult<Delivery>();
+        AsyncResult<Delivery> existing = deliveries.putIfAbsent(deliveryId, candidate);
+        if (existing != null) {
+            sharedReads.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            Delivery delivery = client.getDelivery(deliveryId);
+            candidate.complete(delivery);
+            return delivery;
+        } catch (RuntimeException e) {
+            candidate.fail(e);
+            throw e;
+        } catch (Error e) {
+            candidate.fail(e);
+            throw e;
+        } finally {
+            deliveries.remove(deliveryId, candidate);
+        }
+    }
+
+    /**
+     * Sends the messages that are waiting and stops the timer. The messages sent after this method is called are
+     * rejected.
+     */
+    public void close() {
+        closed = true;
+        for (Batch batch : batches.values()) {
+            flush(batch);
+        }
+        scheduler.shutdown();
+    }
+
+    /**
+     * @return the number of messages that have been sent (or are waiting to be sent).
+     */
+    public long getMessages() {
+        return messages.get();
+    }
+
+    /**
+     * @return the number of requests that have been sent to the server, which is lower than the number of messages
+     * when the messages are merged.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of calls to {@link #getDelivery(String)} that used the request of another call.
+     */
+    public long getSharedReads() {
+        return sharedReads.get();
+    }
+
+    private AsyncResult<String> add(String to, Key key) {
+        if (closed) {
+            throw new IllegalStateException("The coalescer was closed");
+        }
+
+        int numDestinations = countDestinations(to);
+        AsyncResult<String> result = new AsyncResult<String>();
+        messages.incrementAndGet();
+
+        while (true) {
+            Batch batch = batches.get(key);
+            if (batch == null) {
+                Batch candidate = new Batch(key);
+                batch = batches.putIfAbsent(key, candidate);
+                if (batch == null) {
+                    batch = candidate;
+                }
+            }
+
+            Batch full = null;
+            boolean added = false;
+            boolean first = false;
+            synchronized (batch) {
+                if (!batch.closed) {
+                    if (batch.destinations > 0 && batch.destinations + numDestinations > maxDestinations) {
+                        // the message doesn't fit, the batch is sent and the message goes to a new one
+                        batch.closed = true;
+                        full = batch;
+                    } else {
+                        first = batch.destinations == 0;
+                        batch.add(to, numDestinations, result);
+                        added = true;
+                        if (batch.destinations >= maxDestinations) {
+                            batch.closed = true;
+                            full = batch;
+                        }
+                    }
+                }
+            }
+
+            if (full != null) {
+                batches.remove(key, full);
+                send(full);
+            }
+            if (added) {
+                if (first && full == null) {
+                    schedule(batch);
+                }
+                return result;
+            }
+        }
+    }
+
+    private void schedule(final Batch batch) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(batch);
+                }
+            }, window, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the coalescer was closed meanwhile
+            flush(batch);
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            batch.closed = true;
+        }
+
+        batches.remove(batch.key, batch);
+        send(batch);
+    }
+
+    /**
+     * Sends a closed batch. The batch is not modified once it is closed, so its fields are read without the lock.
+     */
+    private void send(final Batch batch) {
+        requests.incrementAndGet();
+
+        String to = batch.to.toString();
+        String text = batch.key.text;
+
+        AsyncResult<String> delivery;
+        try {
+            if (batch.key.campaign != null) {
+                delivery = client.sendMessageAsync(to, text, batch.key.campaign);
+            } else if (SmsSegmenter.segments(text) > 1) {
+                delivery = client.sendLargeMessageAsync(to, text);
+            } else {
+                delivery = client.sendMessageAsync(to, text);
+            }
+        } catch (RuntimeException e) {
+            for (AsyncResult<String> result : batch.results) {
+                result.fail(e);
+            }
+            return;
+        }
+
+        delivery.addCallback(new Callback<String>() {
+            @Override
+            public void onSuccess(String deliveryToken) {
+                for (AsyncResult<String> result : batch.results) {
+                    result.complete(deliveryToken);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                for (AsyncResult<String> result : batch.results) {
+                    result.fail(e);
+                }
+            }
+        });
+    }
+
+    private int countDestinations(String to) {
+        int count = 1;
+        for (int i=0; i < to.length(); i++) {
+            if (to.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private <T> T await(AsyncResult<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * The text and campaign of the messages that can be merged.
+     */
+    private static class Key {
+
+        private final String text;
+
+        private final String campaign;
+
+        public Key(String text, String campaign) {
+            this.text = text;
+            this.campaign = campaign;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + (campaign == null ? 0 : campaign.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return text.equals(other.text) && (campaign == null ? other.campaign == null : campaign.equals(other.campaign));
+        }
+
+    }
+
+    /**
+     * The messages that are waiting to be sent in a request, guarded by its own monitor (no I/O is done while holding
+     * it).
+     */
+    private static class Batch {
+
+        private final Key key;
+
+        private final StringBuilder to = new StringBuilder();
+
+        private final List<AsyncResult<String>> results = new ArrayList<AsyncResult<String>>();
+
+        private int destinations;
+
+        private boolean closed;
+
+        public Batch(Key key) {
+            this.key = key;
+        }
+
+        public void add(String to, int numDestinations, AsyncResult<String> result) {
+            if (this.to.length() > 0) {
+                this.to.append(',');
+            }
+            this.to.append(to);
+            destinations += numDestinations;
+            results.add(result);
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.elibom.client;
+
+import java.io.IOException;
+
+/**
+ * Notified of each HTTP request made by an {@link ElibomRestClient}, in the thread that makes it. See
+ * {@link ElibomRestClient#addRequestListener(RequestListener)} and {@link ClientMetrics}, which records the events.
+ *
+ * <p>The <code>endpoint</code> is the method and the path of the request with the ids replaced by <code>{id}</code>
+ * (e.g. <code>GET /messages/{id}</code>), so the events of the same API method can be grouped. A call that is retried
+ * notifies each attempt. Implementations must be thread-safe and fast, and exceptions thrown by them are ignored.</p>
+ *
+ * @author German Escobar
+ */
+public interface RequestListener {
+
+    /**
+     * Called before each attempt of a request is sent.
+     */
+    void onRequest(String endpoint, HttpRequest request);
+
+    /**
+     * Called when the response of an attempt is received, whatever its status code is.
+     *
+     * @param elapsedNanos the nanoseconds since the attempt was sent.
+     */
+    void onResponse(String endpoint, HttpRequest request, HttpResponse response, long elapsedNanos);
+
+    /**
+     * Called when an attempt fails without a response (e.g. a timeout).
+     *
+     * @param elapsedNanos the nanoseconds since the attempt was sent.
+     */
+    void onFailure(String endpoint, HttpRequest request, IOException e, long elapsedNanos);
+
+    /**
+     * Called when a failed attempt is going to be retried.
+     *
+     * @param attempt the number of the attempt that failed, starting from 1.
+     */
+    void onRetry(String endpoint, HttpRequest request, int attempt);
+
+}
@@ -0,0 +1,321 @@
+package com.elibom.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-through cache of the responses of the read endpoints ({@link Endpoint}), shared by all the threads that use
+ * a client. See {@link ElibomRestClient#setResponseCache(ResponseCache)}.
+ *
+ * <ul>
+ *   <li>Each endpoint has its own time to live ({@link #setTtl(Endpoint, long)}); an endpoint with a TTL of 0 is not
+ *   cached.</li>
+ *   <li>At most <code>maxEntries</code> responses are kept, the least recently used one is evicted.</li>
+ *   <li>Concurrent misses of the same resource share a single request.</li>
+ *   <li>If the server returned an <code>ETag</code>, an expired response is revalidated with
+ *   <code>If-None-Match</code> and reused if the server responds <code>304 Not Modified</code>.</li>
+ *   <li>The schedules are invalidated when a message is scheduled or unscheduled with the client.</li>
+ * </ul>
+ *
+ * <p>The responses are cached, not the objects, so each call returns new objects.</p>
+ *
+ * @author German Escobar
+ */
+public class ResponseCache {
+
+    /**
+     * The endpoints that can be cached.
+     */
+    public enum Endpoint {
+        ACCOUNT, USERS, USER, SCHEDULES, SCHEDULE
+    }
+
+    /**
+     * Loads a response, conditionally if <code>etag</code> is not null.
+     */
+    interface Loader {
+        HttpResponse load(String etag) throws IOException;
+    }
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    public static final long DEFAULT_TTL = 5000;
+
+    private final int maxEntries;
+
+    private final Map<Endpoint,Long> ttls = new EnumMap<Endpoint,Long>(Endpoint.class);
+
+    /**
+     * The entries in access order, guarded by itself. The lock is never held while a response is loaded.
+     */
+    private final LinkedHashMap<String,CachedResponse> entries;
+
+    private final ConcurrentMap<String,AsyncResult<HttpResponse>> inFlight = new ConcurrentHashMap<String,AsyncResult<HttpResponse>>();
+
+    /**
+     * Incremented on every invalidation, so a response loaded before an invalidation is not stored.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Initializes the cache with the default values.
+     */
+    public ResponseCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Initializes the cache.
+     *
+     * @param maxEntries the max number of responses that are kept.
+     * @param ttl the milliseconds a response is used before it is requested again, for all the endpoints.
+     */
+    public ResponseCache(int maxEntries, long ttl) {
+        Preconditions.isInteger(maxEntries, "maxEntries must be greater than zero");
+        Preconditions.notNegative(ttl, "ttl must not be negative");
+
+        this.maxEntries = maxEntries;
+        for (Endpoint endpoint : Endpoint.values()) {
+            ttls.put(endpoint, ttl);
+        }
+
+        this.entries = new LinkedHashMap<String,CachedResponse>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CachedResponse> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Sets the time to live of the responses of an endpoint. Set it before the cache is used.
+     *
+     * @param endpoint the endpoint.
+     * @param ttl the milliseconds a response is used before it is requested again, 0 to not cache the endpoint.
+     *
+     * @return this object, for chaining.
+     */
+    public ResponseCache setTtl(Endpoint endpoint, long ttl) {
+        Preconditions.notNull(endpoint, "no endpoint provided");
+        Preconditions.notNegative(ttl, "ttl must not be negative");
+
+        synchronized (ttls) {
+            ttls.put(endpoint, ttl);
+        }
+        return this;
+    }
+
+    public long getTtl(Endpoint endpoint) {
+        synchronized (ttls) {
+            return ttls.get(endpoint);
+        }
+    }
+
+    /**
+     * Removes the response of a resource (e.g. <code>/schedules/12</code>).
+     */
+    public void invalidate(String resource) {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.remove(resource);
+        }
+    }
+
+    /**
+     * Removes the responses of all the resources that start with <code>prefix</code>.
+     */
+    public void invalidatePrefix(String prefix) {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            Iterator<String> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the responses.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of calls that were served from the cache, without a request.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of calls that made a request, including the revalidations.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of calls that waited for the request of another call for the same resource.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of expired responses that were reused after the server responded 304 Not Modified.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return the number of responses that were evicted because the cache was full.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the response of a resource from the cache or loads it.
+     */
+    HttpResponse get(Endpoint endpoint, String resource, Loader loader) throws IOException {
+        long ttl = getTtl(endpoint);
+        if (ttl == 0) {
+            return loader.load(null);
+        }
+
+        CachedResponse entry;
+        synchronized (entries) {
+            entry = entries.get(resource);
+        }
+        if (entry != null && !entry.isExpired()) {
+            hits.incrementAndGet();
+            return entry.response;
+        }
+
+        AsyncResult<HttpResponse> candidate = new AsyncResult<HttpResponse>();
+        AsyncResult<HttpResponse> existing = inFlight.putIfAbsent(resource, candidate);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        misses.incrementAndGet();
+        try {
+            HttpResponse response = load(resource, ttl, entry, loader);
+            candidate.complete(response);
+            return response;
+        } catch (IOException e) {
+            candidate.fail(e);
+            throw e;
+        } catch (RuntimeException e) {
+            candidate.fail(e);
+            throw e;
+        } catch (Error e) {
+            candidate.fail(e);
+            throw e;
+        } finally {
+            inFlight.remove(resource, candidate);
+        }
+    }
+
+    private HttpResponse load(String resource, long ttl, CachedResponse stale, Loader loader) throws IOException {
+        long loadGeneration = generation.get();
+
+        String etag = stale == null ? null : stale.etag;
+        HttpResponse response = loader.load(etag);
+
+        CachedResponse entry;
+        if (response.getStatusCode() == 304 && stale != null) {
+            revalidations.incrementAndGet();
+            entry = new CachedResponse(stale.response, stale.etag, ttl);
+        } else {
+            entry = new CachedResponse(response, response.getHeader("ETag"), ttl);
+        }
+
+        if (generation.get() == loadGeneration) {
+            synchronized (entries) {
+                entries.put(resource, entry);
+            }
+        }
+
+        return entry.response;
+    }
+
+    private HttpResponse await(AsyncResult<HttpResponse> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static class CachedResponse {
+
+        private final HttpResponse response;
+
+        private final String etag;
+
+        private final long expiresAt;
+
+        CachedResponse(HttpResponse response, String etag, long ttl) {
+            this.response = response;
+            this.etag = etag;
+            this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+
+    }
+
+}
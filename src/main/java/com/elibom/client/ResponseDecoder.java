@@ -0,0 +1,36 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.util.List;
+
+import org.json.JSONException;
+
+/**
+ * Decodes the responses that contain messages, which can be large. See {@link StreamingDecoder} (the default) and
+ * {@link JsonObjectDecoder}.
+ *
+ * @author German Escobar
+ */
+public interface ResponseDecoder {
+
+    /**
+     * Decodes a list of messages: an object with a <code>messages</code> array.
+     *
+     * @param body the UTF-8 body of the response.
+     * @param dateCodec the codec used to parse the dates.
+     *
+     * @return a List of Message objects or an empty List if there are no messages.
+     */
+    List<Message> decodeMessages(byte[] body, DateCodec dateCodec) throws JSONException, ParseException;
+
+    /**
+     * Decodes a delivery with its messages.
+     *
+     * @param body the UTF-8 body of the response.
+     * @param dateCodec the codec used to parse the dates.
+     *
+     * @return a Delivery object.
+     */
+    Delivery decodeDelivery(byte[] body, DateCodec dateCodec) throws JSONException, ParseException;
+
+}
@@ -0,0 +1,295 @@
+package com.elibom.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which failed requests of the {@link ElibomRestClient} are retried and how long to wait before each retry.
+ *
+ * <p>The delay before the n-th retry is a random value between 0 and <code>min(maxDelay, baseDelay * 2^(n-1))</code>
+ * (exponential backoff with full jitter), or the time specified by the <code>Retry-After</code> header of the
+ * response. A request is never retried if the server asks to wait more than <code>maxDelay</code>.</p>
+ *
+ * <p>Requests are retried according to their method:</p>
+ * <ul>
+ *   <li>GET and DELETE requests are idempotent, they are retried on I/O errors and retryable status codes.</li>
+ *   <li>POST requests (e.g. sending a message) are retried only if the connection couldn't be established (so the
+ *   request never reached the server) or the server responded with <code>429 Too Many Requests</code>. If
+ *   {@link #isUseIdempotencyKeys()} is true, the client adds an <code>Idempotency-Key</code> header to them and they
+ *   are retried as any other request; use it only if the server deduplicates requests with that header.</li>
+ * </ul>
+ *
+ * <p>To avoid retry storms when the server is down, retries are limited by a budget: each request deposits
+ * <code>budgetRatio</code> tokens (up to 100) and each retry withdraws one, so the retries are at most a fraction of
+ * the requests once the initial 10 tokens are consumed.</p>
+ *
+ * @author German Escobar
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    public static final long DEFAULT_BASE_DELAY = 100;
+
+    public static final long DEFAULT_MAX_DELAY = 5000;
+
+    public static final double DEFAULT_BUDGET_RATIO = 0.2;
+
+    public static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES =
+            Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(429, 502, 503, 504)));
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final long TOKEN = 1000;
+
+    private static final long INITIAL_BUDGET = 10 * TOKEN;
+
+    private static final long MAX_BUDGET = 100 * TOKEN;
+
+    private final int maxAttempts;
+
+    private final long baseDelay;
+
+    private final long maxDelay;
+
+    private final Set<Integer> retryableStatusCodes;
+
+    private final long deposit;
+
+    private volatile boolean useIdempotencyKeys;
+
+    private final Random random = new Random();
+
+    private final AtomicLong budget = new AtomicLong(INITIAL_BUDGET);
+
+    private final AtomicLong attempts = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong giveUps = new AtomicLong();
+
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    /**
+     * Initializes the policy with the default values.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Initializes the policy with the default retryable status codes and budget.
+     *
+     * @param maxAttempts the max number of times a request is sent, including the first one.
+     * @param baseDelay the delay in milliseconds used to calculate the exponential backoff.
+     * @param maxDelay the max delay in milliseconds before a retry.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+        this(maxAttempts, baseDelay, maxDelay, DEFAULT_RETRYABLE_STATUS_CODES, DEFAULT_BUDGET_RATIO);
+    }
+
+    /**
+     * Initializes the policy.
+     *
+     * @param maxAttempts the max number of times a request is sent, including the first one.
+     * @param baseDelay the delay in milliseconds used to calculate the exponential backoff.
+     * @param maxDelay the max delay in milliseconds before a retry.
+     * @param retryableStatusCodes the HTTP status codes that are considered transient failures.
+     * @param budgetRatio the max ratio of retries to requests (e.g. 0.2 allows one retry each five requests).
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, Set<Integer> retryableStatusCodes, double budgetRatio) {
+        Preconditions.isInteger(maxAttempts, "maxAttempts must be greater than zero");
+        Preconditions.notNegative(baseDelay, "baseDelay must not be negative");
+        Preconditions.notNegative(maxDelay, "maxDelay must not be negative");
+        Preconditions.notNull(retryableStatusCodes, "no retryableStatusCodes provided");
+        Preconditions.notNegative((long) (budgetRatio * TOKEN), "budgetRatio must not be negative");
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(retryableStatusCodes));
+        this.deposit = (long) (budgetRatio * TOKEN);
+    }
+
+    /**
+     * Records that a request is about to be sent.
+     *
+     * @param attempt the number of the attempt, starting from 1.
+     */
+    public void onAttempt(int attempt) {
+        attempts.incrementAndGet();
+        if (attempt == 1) {
+            while (true) {
+                long current = budget.get();
+                long next = Math.min(MAX_BUDGET, current + deposit);
+                if (current == next || budget.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decides if a request that failed with an I/O error should be retried.
+     *
+     * @param request the request that failed.
+     * @param attempt the number of the attempt that failed, starting from 1.
+     * @param e the error.
+     *
+     * @return true if the request should be retried, false otherwise.
+     */
+    public boolean shouldRetry(HttpRequest request, int attempt, IOException e) {
+        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+            // the thread was interrupted
+            return false;
+        }
+
+        if (!isIdempotent(request) && !(e instanceof ConnectException)) {
+            return false;
+        }
+
+        return tryRetry(attempt, -1);
+    }
+
+    /**
+     * Decides if a request to which the server responded with an error status should be retried.
+     *
+     * @param request the request that failed.
+     * @param attempt the number of the attempt that failed, starting from 1.
+     * @param statusCode the status code of the response.
+     * @param retryAfter the time in milliseconds the server asked to wait or -1 if it didn't specify one.
+     *
+     * @return true if the request should be retried, false otherwise.
+     */
+    public boolean shouldRetry(HttpRequest request, int attempt, int statusCode, long retryAfter) {
+        if (!retryableStatusCodes.contains(statusCode)) {
+            return false;
+        }
+
+        if (!isIdempotent(request) && statusCode != 429) {
+            return false;
+        }
+
+        return tryRetry(attempt, retryAfter);
+    }
+
+    /**
+     * @param attempt the number of the attempt that failed, starting from 1.
+     * @param retryAfter the time in milliseconds the server asked to wait or -1 if it didn't specify one.
+     *
+     * @return the time in milliseconds to wait before the next attempt.
+     */
+    public long getDelay(int attempt, long retryAfter) {
+        if (retryAfter >= 0) {
+            return retryAfter;
+        }
+
+        long ceiling = baseDelay << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelay) {
+            ceiling = maxDelay;
+        }
+
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * @return true if the request can be sent again without side effects, false otherwise.
+     */
+    public boolean isIdempotent(HttpRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method) || "DELETE".equals(method) || "PUT".equals(method)) {
+            return true;
+        }
+
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) != null;
+    }
+
+    /**
+     * Sets whether the client should add an <code>Idempotency-Key</code> header to the POST requests so they can be
+     * retried safely. Enable it only if the server supports it.
+     */
+    public void setUseIdempotencyKeys(boolean useIdempotencyKeys) {
+        this.useIdempotencyKeys = useIdempotencyKeys;
+    }
+
+    public boolean isUseIdempotencyKeys() {
+        return useIdempotencyKeys;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    /**
+     * @return the number of requests sent, including the retries.
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * @return the number of retries.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return the number of retryable failures that were not retried because the max number of attempts was reached,
+     * the retry budget was exhausted or the server asked to wait more than <code>maxDelay</code>.
+     */
+    public long getGiveUps() {
+        return giveUps.get();
+    }
+
+    /**
+     * @return the number of retryable failures that were not retried because the retry budget was exhausted.
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.get();
+    }
+
+    private boolean tryRetry(int attempt, long retryAfter) {
+        if (attempt >= maxAttempts || retryAfter > maxDelay) {
+            giveUps.incrementAndGet();
+            return false;
+        }
+
+        while (true) {
+            long current = budget.get();
+            if (current < TOKEN) {
+                budgetExhausted.incrementAndGet();
+                giveUps.incrementAndGet();
+                return false;
+            }
+
+            if (budget.compareAndSet(current, current - TOKEN)) {
+                retries.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+}
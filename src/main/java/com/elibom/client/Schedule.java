@@ -1,7 +1,6 @@
 package com.elibom.client;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import org.json.JSONException;
@@ -36,15 +35,19 @@ public class Schedule {
     private String destinations;
 
     public Schedule(JSONObject json) throws JSONException, ParseException {
+        this(json, DateCodec.DEFAULT);
+    }
+
+    public Schedule(JSONObject json, DateCodec dateCodec) throws JSONException, ParseException {
+        Preconditions.notNull(dateCodec, "no dateCodec provided");
         this.json = json;
         this.id = json.getLong("id");
         if (json.has("user")) {
             this.userId = json.getJSONObject("user").getLong("id");
         }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        this.scheduledAt = sdf.parse(json.getString("scheduledTime"));
-        this.createdAt = sdf.parse(json.getString("creationTime"));
+        this.scheduledAt = dateCodec.parse(json.getString("scheduledTime"));
+        this.createdAt = dateCodec.parse(json.getString("creationTime"));
         if (json.has("status")){
             this.status = json.getString("status");
         }
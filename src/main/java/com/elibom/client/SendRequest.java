@@ -0,0 +1,97 @@
+package com.elibom.client;
+
+/**
+ * A message in an {@link Outbox}, from the moment it is enqueued until it is sent or fails permanently. It is also the
+ * item consumed by the <code>Flow.Subscriber</code> of the Java 21 build, which completes its result.
+ *
+ * @author German Escobar
+ */
+public class SendRequest {
+
+    private final long id;
+
+    private final String to;
+
+    private final String text;
+
+    private final String campaign;
+
+    private final AsyncResult<String> result = new AsyncResult<String>();
+
+    /**
+     * The sequence of the segment of the log with the last record of this request, guarded by the outbox.
+     */
+    long segment;
+
+    /**
+     * The number of times the message has been sent, modified only by the worker that is sending it.
+     */
+    volatile int attempts;
+
+    /**
+     * Creates a request that is not enqueued in an outbox, its id is 0.
+     *
+     * @param to the destinations (separated by comma) of the message.
+     * @param text the text of the message.
+     */
+    public SendRequest(String to, String text) {
+        this(to, text, null);
+    }
+
+    /**
+     * Same as {@link #SendRequest(String, String)} but with a campaign, which can be null.
+     */
+    public SendRequest(String to, String text, String campaign) {
+        this(0, to, text, campaign);
+
+        Preconditions.notEmpty(to, "no destinations provided");
+        Preconditions.notEmpty(text, "no text provided");
+    }
+
+    SendRequest(long id, String to, String text, String campaign) {
+        this.id = id;
+        this.to = to;
+        this.text = text;
+        this.campaign = campaign;
+    }
+
+    /**
+     * @return the id of the request in the outbox, which is kept across restarts, or 0 if it is not in an outbox.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the campaign or null if the message doesn't have one.
+     */
+    public String getCampaign() {
+        return campaign;
+    }
+
+    /**
+     * @return an AsyncResult that completes with the delivery token when the message is sent or fails if the server
+     * rejects it.
+     */
+    public AsyncResult<String> getResult() {
+        return result;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "SendRequest [id=" + id + ", to=" + to + ", attempts=" + attempts + "]";
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.elibom.client;
+
+/**
+ * Computes the encoding and number of segments of the text of an SMS message.
+ *
+ * <ul>
+ *   <li>A text with only characters of the GSM 03.38 alphabet is sent in GSM-7: 160 septets in a single segment or
+ *   153 per segment in a concatenated message (the concatenation header takes the rest). The characters of the
+ *   extension table (<code>^ { } \ [ ] ~ | &euro;</code> and form feed) take two septets and are never split between
+ *   two segments.</li>
+ *   <li>Any other character (e.g. <code>&aacute;</code> or an emoji) makes the whole text UCS-2: 70 UTF-16 code units in
+ *   a single segment or 67 per segment, without splitting surrogate pairs.</li>
+ * </ul>
+ *
+ * <p>The methods don't allocate, so they can be called for every message of a large campaign.</p>
+ *
+ * @author German Escobar
+ */
+public final class SmsSegmenter {
+
+    public enum Encoding {
+        GSM_7, UCS_2
+    }
+
+    /**
+     * The max number of segments of a concatenated message.
+     */
+    public static final int MAX_SEGMENTS = 255;
+
+    public static final int GSM_7_SINGLE = 160;
+
+    public static final int GSM_7_MULTIPART = 153;
+
+    public static final int UCS_2_SINGLE = 70;
+
+    public static final int UCS_2_MULTIPART = 67;
+
+    private static final byte NOT_GSM = 0;
+
+    private static final byte BASIC = 1;
+
+    private static final byte EXTENSION = 2;
+
+    private static final char EURO = '\u20AC';
+
+    /**
+     * The GSM 03.38 class of the characters up to <code>U+03FF</code>, which covers all of them except the euro sign.
+     */
+    private static final byte[] GSM = new byte[0x400];
+
+    static {
+        String basic = "@\u00A3$\u00A5\u00E8\u00E9\u00F9\u00EC\u00F2\u00C7\n\u00D8\u00F8\r\u00C5\u00E5"
+                + "\u0394_\u03A6\u0393\u039B\u03A9\u03A0\u03A8\u03A3\u0398\u039E\u00C6\u00E6\u00DF\u00C9"
+                + " !\"#\u00A4%&'()*+,-./0123456789:;<=>?"
+                + "\u00A1ABCDEFGHIJKLMNOPQRSTUVWXYZ\u00C4\u00D6\u00D1\u00DC\u00A7"
+                + "\u00BFabcdefghijklmnopqrstuvwxyz\u00E4\u00F6\u00F1\u00FC\u00E0";
+        for (int i=0; i < basic.length(); i++) {
+            GSM[basic.charAt(i)] = BASIC;
+        }
+
+        String extension = "\f^{}\\[~]|";
+        for (int i=0; i < extension.length(); i++) {
+            GSM[extension.charAt(i)] = EXTENSION;
+        }
+    }
+
+    private SmsSegmenter() {
+    }
+
+    /**
+     * @return {@link Encoding#GSM_7} if all the characters of the text are in the GSM 03.38 alphabet,
+     * {@link Encoding#UCS_2} otherwise.
+     */
+    public static Encoding encoding(CharSequence text) {
+        Preconditions.notNull(text, "no text provided");
+        return isGsm(text) ? Encoding.GSM_7 : Encoding.UCS_2;
+    }
+
+    /**
+     * @return the length of the text in septets if it is GSM-7 or in UTF-16 code units if it is UCS-2.
+     */
+    public static int length(CharSequence text) {
+        Preconditions.notNull(text, "no text provided");
+
+        int septets = 0;
+        for (int i=0; i < text.length(); i++) {
+            int width = gsmWidth(text.charAt(i));
+            if (width == 0) {
+                return text.length();
+            }
+            septets += width;
+        }
+
+        return septets;
+    }
+
+    /**
+     * @return the number of segments in which the text is sent, 1 for an empty text.
+     */
+    public static int segments(CharSequence text) {
+        Preconditions.notNull(text, "no text provided");
+
+        if (isGsm(text)) {
+            return gsmSegments(text);
+        }
+        return ucs2Segments(text);
+    }
+
+    /**
+     * Checks that the text fits in <code>maxSegments</code> segments.
+     *
+     * @throws IllegalArgumentException if the text needs more segments.
+     */
+    public static void checkSegments(CharSequence text, int maxSegments) throws IllegalArgumentException {
+        int segments = segments(text);
+        if (segments > maxSegments) {
+            Encoding encoding = encoding(text);
+            throw new IllegalArgumentException("A precondition failed: the text takes " + segments + " segments ("
+                    + length(text) + (encoding == Encoding.GSM_7 ? " GSM-7 septets" : " UCS-2 characters")
+                    + "), max " + maxSegments);
+        }
+    }
+
+    private static boolean isGsm(CharSequence text) {
+        for (int i=0; i < text.length(); i++) {
+            if (gsmWidth(text.charAt(i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the septets of the character in GSM-7 or 0 if it is not in the GSM 03.38 alphabet.
+     */
+    private static int gsmWidth(char c) {
+        if (c < GSM.length) {
+            return GSM[c];
+        }
+        return c == EURO ? EXTENSION : NOT_GSM;
+    }
+
+    private static int gsmSegments(CharSequence text) {
+        int septets = 0;
+        for (int i=0; i < text.length(); i++) {
+            septets += gsmWidth(text.charAt(i));
+        }
+        if (septets <= GSM_7_SINGLE) {
+            return 1;
+        }
+
+        int segments = 1;
+        int used = 0;
+        for (int i=0; i < text.length(); i++) {
+            int width = gsmWidth(text.charAt(i));
+            if (used + width > GSM_7_MULTIPART) {
+                segments++;
+                used = 0;
+            }
+            used += width;
+        }
+
+        return segments;
+    }
+
+    private static int ucs2Segments(CharSequence text) {
+        if (text.length() <= UCS_2_SINGLE) {
+            return 1;
+        }
+
+        int segments = 1;
+        int used = 0;
+        for (int i=0; i < text.length(); i++) {
+            int width = Character.isHighSurrogate(text.charAt(i)) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+            if (used + width > UCS_2_MULTIPART) {
+                segments++;
+                used = 0;
+            }
+            used += width;
+            i += width - 1;
+        }
+
+        return segments;
+    }
+
+}
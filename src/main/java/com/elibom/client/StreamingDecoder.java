@@ -0,0 +1,183 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.json.JSONException;
+
+/**
+ * The default {@link ResponseDecoder}. It reads the body with a {@link JsonReader} and creates the messages directly
+ * from the tokens, without building a string or a {@link org.json.JSONObject} tree of the whole response. Unknown
+ * fields are skipped.
+ *
+ * <p>In lazy mode, the messages are {@link LazyMessage}s that only record where they are in the body and decode their
+ * fields when they are accessed.</p>
+ *
+ * @author German Escobar
+ */
+public class StreamingDecoder implements ResponseDecoder {
+
+    private final boolean lazy;
+
+    /**
+     * Creates a decoder that decodes all the fields of the messages.
+     */
+    public StreamingDecoder() {
+        this(false);
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param lazy true to create {@link LazyMessage}s, false to decode all the fields of the messages.
+     */
+    public StreamingDecoder(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Override
+    public List<Message> decodeMessages(byte[] body, DateCodec dateCodec) throws JSONException, ParseException {
+        JsonReader reader = new JsonReader(body);
+
+        List<Message> messages = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("messages".equals(name)) {
+                messages = readMessages(reader, body, dateCodec);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (messages == null) {
+            throw new JSONException("JSONObject[\"messages\"] not found.");
+        }
+
+        return messages;
+    }
+
+    @Override
+    public Delivery decodeDelivery(byte[] body, DateCodec dateCodec) throws JSONException, ParseException {
+        JsonReader reader = new JsonReader(body);
+
+        String id = null;
+        String status = null;
+        int numSent = 0;
+        int numFailed = 0;
+        List<Message> messages = new ArrayList<Message>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("deliveryId".equals(name)) {
+                id = reader.nextString();
+            } else if ("status".equals(name)) {
+                status = reader.nextString();
+            } else if ("numSent".equals(name)) {
+                numSent = reader.nextInt();
+            } else if ("numFailed".equals(name)) {
+                numFailed = reader.nextInt();
+            } else if ("messages".equals(name)) {
+                messages = readMessages(reader, body, dateCodec);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Delivery(id, status, numSent, numFailed, messages);
+    }
+
+    private List<Message> readMessages(JsonReader reader, byte[] body, DateCodec dateCodec) throws JSONException, ParseException {
+        List<Message> messages = new ArrayList<Message>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (lazy) {
+                int start = reader.getTokenStart();
+                reader.skipValue();
+                messages.add(new LazyMessage(body, start, reader.getPosition(), dateCodec));
+            } else {
+                messages.add(readMessage(reader, dateCodec));
+            }
+        }
+        reader.endArray();
+
+        return messages;
+    }
+
+    private Message readMessage(JsonReader reader, DateCodec dateCodec) throws JSONException, ParseException {
+        long id = 0;
+        long userId = 0;
+        String to = null;
+        String operator = null;
+        String from = null;
+        String text = null;
+        String status = null;
+        String statusDetail = null;
+        BigDecimal credits = null;
+        Date createdAt = null;
+        Date sentAt = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonReader.Token.NULL) {
+                reader.nextNull();
+            } else if ("id".equals(name)) {
+                id = reader.nextLong();
+            } else if ("user".equals(name)) {
+                userId = readId(reader);
+            } else if ("to".equals(name)) {
+                to = reader.nextString();
+            } else if ("operator".equals(name)) {
+                operator = reader.nextString();
+            } else if ("from".equals(name)) {
+                from = reader.nextString();
+            } else if ("text".equals(name)) {
+                text = reader.nextString();
+            } else if ("status".equals(name)) {
+                status = reader.nextString();
+            } else if ("statusDetail".equals(name)) {
+                statusDetail = reader.nextString();
+            } else if ("credits".equals(name)) {
+                credits = reader.nextBigDecimal();
+            } else if ("createdAt".equals(name)) {
+                createdAt = dateCodec.parse(reader.nextString());
+            } else if ("sentAt".equals(name)) {
+                sentAt = dateCodec.parse(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Message(id, userId, to, operator, from, text, status, statusDetail, credits, createdAt, sentAt, dateCodec);
+    }
+
+    /**
+     * Reads the id of a nested object such as <code>{ "id": 2, "url": "..." }</code>.
+     */
+    private long readId(JsonReader reader) throws JSONException {
+        long id = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("id".equals(reader.nextName())) {
+                id = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return id;
+    }
+
+}
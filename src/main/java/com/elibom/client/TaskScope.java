@@ -0,0 +1,247 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans out a group of blocking calls and joins their results, in the style of structured concurrency: the calls are
+ * forked by the thread that owns the scope, which then waits for all of them in {@link #join()}. If a call fails, the
+ * others are cancelled (their threads are interrupted) and <code>join</code> waits for the ones that were running to
+ * return before it throws the exception, so no call outlives the scope. A call that ignores the interrupt (e.g. blocked
+ * reading a socket on a platform thread) delays <code>join</code> until it returns, usually after the read timeout of
+ * the transport.
+ *
+ * <p>With an executor of virtual threads (see {@link VirtualThreads#newExecutor(String)}), forking thousands of calls
+ * is cheap:</p>
+ *
+ * <pre>
+ * TaskScope&lt;String&gt; scope = new TaskScope&lt;String&gt;(executor);
+ * for (final String to : destinations) {
+ *     scope.fork(new Callable&lt;String&gt;() {
+ *         public String call() {
+ *             return elibom.sendMessage(to, "This is a test");
+ *         }
+ *     });
+ * }
+ * List&lt;String&gt; deliveryTokens = scope.join();
+ * </pre>
+ *
+ * <p>A scope is not thread-safe: it must be forked and joined by the same thread, and only once.</p>
+ *
+ * @author German Escobar
+ */
+public class TaskScope<T> {
+
+    private final CompletionService<T> completionService;
+
+    private final List<Future<T>> futures = new ArrayList<Future<T>>();
+
+    private final List<Call<T>> calls = new ArrayList<Call<T>>();
+
+    private boolean joined;
+
+    /**
+     * @param executor the executor that runs the calls, it is not shut down by the scope.
+     */
+    public TaskScope(ExecutorService executor) {
+        Preconditions.notNull(executor, "no executor provided");
+        this.completionService = new ExecutorCompletionService<T>(executor);
+    }
+
+    /**
+     * Starts a call in the executor.
+     *
+     * @param task the call to run.
+     *
+     * @return the Future of the call.
+     * @throws IllegalStateException if the scope was already joined.
+     */
+    public Future<T> fork(Callable<T> task) throws IllegalStateException {
+        Preconditions.notNull(task, "no task provided");
+        if (joined) {
+            throw new IllegalStateException("The scope was already joined");
+        }
+
+        Call<T> call = new Call<T>(task);
+        Future<T> future = completionService.submit(call);
+        calls.add(call);
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for all the calls to complete.
+     *
+     * @return a List with the results of the calls, in the order in which they were forked.
+     * @throws InterruptedException if the thread is interrupted while waiting, the calls are cancelled (and waited for).
+     * @throws RuntimeException the exception of the first call that fails (wrapped if it is checked), the other calls
+     * are cancelled (and waited for).
+     */
+    public List<T> join() throws InterruptedException, RuntimeException {
+        try {
+            return join(-1);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e); // can't happen without a timeout
+        }
+    }
+
+    /**
+     * Same as {@link #join()} but waits at most <code>timeout</code>.
+     *
+     * @throws TimeoutException if the calls didn't complete in time, they are cancelled (and waited for, so it can take
+     * longer than <code>timeout</code> if a call ignores the interrupt).
+     */
+    public List<T> join(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException, RuntimeException {
+        Preconditions.notNegative(timeout, "timeout must not be negative");
+        Preconditions.notNull(unit, "no unit provided");
+
+        return join(unit.toNanos(timeout));
+    }
+
+    /**
+     * Cancels the calls that have not completed, interrupting their threads. It doesn't wait for them to return.
+     */
+    public void cancel() {
+        for (Future<T> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * @return the number of calls that have been forked.
+     */
+    public int size() {
+        return futures.size();
+    }
+
+    private List<T> join(long timeoutNanos) throws InterruptedException, TimeoutException {
+        if (joined) {
+            throw new IllegalStateException("The scope was already joined");
+        }
+        joined = true;
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        boolean completed = false;
+        try {
+            for (int i=0; i < futures.size(); i++) {
+                Future<T> future;
+                if (timeoutNanos < 0) {
+                    future = completionService.take();
+                } else {
+                    future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        throw new TimeoutException((futures.size() - i) + " of " + futures.size() + " calls didn't complete in time");
+                    }
+                }
+
+                getResult(future);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                cancel();
+                awaitCalls();
+            }
+        }
+
+        List<T> results = new ArrayList<T>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(getResult(future));
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the calls that were running to return, after they were cancelled. The ones that had not started never
+     * run.
+     */
+    private void awaitCalls() {
+        boolean interrupted = false;
+        for (Call<T> call : calls) {
+            while (true) {
+                try {
+                    call.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Wraps a forked call to know when it returns. A cancelled FutureTask is done right away, even if its call is
+     * still running.
+     */
+    private static class Call<T> implements Callable<T> {
+
+        private static final int NEW = 0;
+
+        private static final int RUNNING = 1;
+
+        private static final int DONE = 2;
+
+        private final Callable<T> task;
+
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        private final CountDownLatch returned = new CountDownLatch(1);
+
+        Call(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return null; // the scope gave up on it
+            }
+
+            try {
+                return task.call();
+            } finally {
+                state.set(DONE);
+                returned.countDown();
+            }
+        }
+
+        /**
+         * Waits for the call to return if it is running, or makes sure it never runs if it has not started.
+         */
+        void await() throws InterruptedException {
+            if (!state.compareAndSet(NEW, DONE)) {
+                returned.await();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.elibom.client;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors that run each task on a new virtual thread (Java 21 or later). The client is compiled for Java 6,
+ * so the virtual threads are created by reflection; use {@link #isAvailable()} to check if the JVM supports them.
+ *
+ * <p>A virtual thread that blocks on a socket releases its carrier thread, so tens of thousands of blocking calls
+ * can be in flight with a few carrier threads. The client doesn't hold a monitor (<code>synchronized</code>) while it
+ * does I/O, which would pin the virtual thread to its carrier.</p>
+ *
+ * <pre>
+ * if (VirtualThreads.isAvailable()) {
+ *     elibom.useVirtualThreads(10000);
+ * }
+ * </pre>
+ *
+ * @author German Escobar
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Class.forName("java.util.concurrent.Executors")
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (Exception e) {
+            // the JVM doesn't support virtual threads
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the JVM supports virtual threads, false otherwise.
+     */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param prefix the prefix of the names of the threads, which are followed by a sequence number.
+     *
+     * @return a ThreadFactory that creates virtual threads.
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads.
+     */
+    public static ThreadFactory newThreadFactory(String prefix) throws UnsupportedOperationException {
+        Preconditions.notEmpty(prefix, "no prefix provided");
+        checkAvailable();
+
+        Object builder = invoke(OF_VIRTUAL, null);
+        builder = invoke(NAME, builder, prefix + "-", 1L);
+        return (ThreadFactory) invoke(FACTORY, builder);
+    }
+
+    /**
+     * @param prefix the prefix of the names of the threads, which are followed by a sequence number.
+     *
+     * @return an ExecutorService that starts a new virtual thread for each task.
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads.
+     */
+    public static ExecutorService newExecutor(String prefix) throws UnsupportedOperationException {
+        ThreadFactory factory = newThreadFactory(prefix);
+        return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, factory);
+    }
+
+    private static void checkAvailable() {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later, this is Java "
+                    + System.getProperty("java.version"));
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.elibom.client;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link PooledHttpTransport#warmUp(java.net.URL, int)} when a connection can't be established. The cause is
+ * the exception of the connection that failed; the ones opened before it are kept in the pool.
+ *
+ * @author German Escobar
+ */
+public class WarmUpException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int connectionsOpened;
+
+    public WarmUpException(int connectionsOpened, IOException cause) {
+        super(cause.getMessage());
+        initCause(cause);
+        this.connectionsOpened = connectionsOpened;
+    }
+
+    /**
+     * @return the number of connections opened by the warm up before the one that failed.
+     */
+    public int getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.elibom.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of {@link ElibomRestClient#warmUp(int, int)}: what each step did, how long it took and whether the client
+ * is ready to receive traffic.
+ *
+ * @author German Escobar
+ */
+public class WarmUpReport {
+
+    private final String host;
+
+    private final List<String> addresses;
+
+    private final long resolveTime;
+
+    private final int connectionsOpened;
+
+    private final int openConnections;
+
+    private final long connectTime;
+
+    private final int iterations;
+
+    private final long exerciseTime;
+
+    private final Throwable error;
+
+    WarmUpReport(String host, List<String> addresses, long resolveTime, int connectionsOpened, int openConnections,
+            long connectTime, int iterations, long exerciseTime, Throwable error) {
+        this.host = host;
+        this.addresses = Collections.unmodifiableList(addresses);
+        this.resolveTime = resolveTime;
+        this.connectionsOpened = connectionsOpened;
+        this.openConnections = openConnections;
+        this.connectTime = connectTime;
+        this.iterations = iterations;
+        this.exerciseTime = exerciseTime;
+        this.error = error;
+    }
+
+    /**
+     * @return true if the host was resolved and the connections were opened, false otherwise (see {@link #getError()}).
+     */
+    public boolean isReady() {
+        return error == null;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the IP addresses of the host, empty if it couldn't be resolved.
+     */
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * @return the milliseconds it took to resolve the host.
+     */
+    public long getResolveTime() {
+        return resolveTime;
+    }
+
+    /**
+     * @return the number of connections opened by the warm up. If a connection failed, the ones opened before it, which
+     * are kept in the pool.
+     */
+    public int getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * @return the number of connections open to all the hosts after the warm up, -1 if the transport is not a
+     * {@link PooledHttpTransport}.
+     */
+    public int getOpenConnections() {
+        return openConnections;
+    }
+
+    /**
+     * @return the milliseconds it took to open the connections.
+     */
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * @return the number of times the encoding and decoding were exercised.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the milliseconds it took to exercise the encoding and decoding.
+     */
+    public long getExerciseTime() {
+        return exerciseTime;
+    }
+
+    /**
+     * @return the exception of the step that failed or null if the client is ready.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpReport [ready=" + isReady() + ", host=" + host + ", addresses=" + addresses + ", resolveTime="
+                + resolveTime + "ms, connectionsOpened=" + connectionsOpened + ", openConnections=" + openConnections
+                + ", connectTime=" + connectTime + "ms, iterations=" + iterations + ", exerciseTime=" + exerciseTime
+                + "ms" + (error == null ? "" : ", error=" + error) + "]";
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.elibom.client;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>Flow.Publisher</code> of the sent messages of the user, the reactive counterpart of {@link MessageHistory}.
+ * Each subscriber walks the history from the first page; a page is requested (asynchronously, with the executor of
+ * the client) only when the previous one has been emitted and the subscriber has outstanding demand, so at most one
+ * page is buffered per subscriber regardless of the number of messages.
+ *
+ * <pre>
+ * MessagePublisher publisher = new MessagePublisher(elibom, 500, startDate, endDate);
+ * publisher.subscribe(subscriber);
+ * </pre>
+ *
+ * <p>If a page can't be fetched, the subscriber receives the same exception as
+ * {@link ElibomRestClient#getLastMessages(int, Date, Date)} in <code>onError</code>. This class is compiled only in the
+ * <code>jdk21</code> profile.</p>
+ *
+ * @author German Escobar
+ */
+public class MessagePublisher implements Flow.Publisher<Message> {
+
+    private final ElibomRestClient client;
+
+    private final int perPage;
+
+    private final Date startDate;
+
+    private final Date endDate;
+
+    /**
+     * Initializes the publisher with all the sent messages.
+     *
+     * @param client the client used to request the pages.
+     * @param perPage the number of messages requested in each page.
+     */
+    public MessagePublisher(ElibomRestClient client, int perPage) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(perPage, "perPage must be greater than zero");
+
+        this.client = client;
+        this.perPage = perPage;
+        this.startDate = null;
+        this.endDate = null;
+    }
+
+    /**
+     * Initializes the publisher with the messages sent between two dates.
+     *
+     * @param client the client used to request the pages.
+     * @param perPage the number of messages requested in each page.
+     * @param startDate the initial date of the messages.
+     * @param endDate the end date of the messages.
+     */
+    public MessagePublisher(ElibomRestClient client, int perPage, Date startDate, Date endDate) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(perPage, "perPage must be greater than zero");
+        Preconditions.notNull(startDate, "no startDate provided");
+        Preconditions.notNull(endDate, "no endDate provided");
+
+        this.client = client;
+        this.perPage = perPage;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Preconditions.notNull(subscriber, "no subscriber provided");
+
+        PageSubscription subscription = new PageSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    /**
+     * Emits the messages of a walk of the history. The signals to the subscriber are serialized by a drain loop: the
+     * thread that increments <code>wip</code> from zero emits until there is no more work, other threads (a
+     * <code>request</code> or a page that arrives) only record their work and increment <code>wip</code>.
+     */
+    private class PageSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Message> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile List<Message> received;
+
+        private volatile Throwable error;
+
+        // accessed only by the drain loop
+
+        private List<Message> page;
+
+        private int index;
+
+        private int lastRequested;
+
+        private boolean lastPage;
+
+        private boolean fetching;
+
+        public PageSubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("A precondition failed: the demand must be greater than zero (rule 3.9)");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (emit()) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * @return true if the subscription is over (cancelled, completed or failed).
+         */
+        private boolean emit() {
+            if (cancelled) {
+                page = null;
+                return true;
+            }
+
+            if (error != null) {
+                cancelled = true;
+                subscriber.onError(error);
+                return true;
+            }
+
+            List<Message> next = received;
+            if (next != null) {
+                received = null;
+                fetching = false;
+                page = next;
+                index = 0;
+                lastPage = next.size() < perPage;
+            }
+
+            long demand = requested.get();
+            long emitted = 0;
+            while (page != null && index < page.size() && emitted < demand) {
+                if (cancelled) {
+                    return true;
+                }
+                try {
+                    subscriber.onNext(page.get(index++));
+                } catch (RuntimeException e) {
+                    // a subscriber that violates rule 2.13, the subscription is considered cancelled
+                    cancelled = true;
+                    return true;
+                }
+                emitted++;
+            }
+            if (emitted > 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+
+            if ((page == null || index >= page.size()) && !fetching) {
+                if (lastPage) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return true;
+                }
+                if (requested.get() > 0) {
+                    fetching = true;
+                    page = null;
+                    fetch();
+                }
+            }
+
+            return false;
+        }
+
+        private void fetch() {
+            client.getMessagesPageAsync(++lastRequested, perPage, startDate, endDate).addCallback(new Callback<List<Message>>() {
+                @Override
+                public void onSuccess(List<Message> messages) {
+                    received = messages;
+                    drain();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    error = e;
+                    drain();
+                }
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.elibom.client;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>Flow.Subscriber</code> that sends each {@link SendRequest} it receives with the asynchronous methods of the
+ * client and completes the result of the request with the delivery token (or the exception). The demand is tied to
+ * the concurrency: <code>maxInFlight</code> requests are requested when it subscribes and one more each time a send
+ * completes, so the publisher is never ahead of the sends and nothing is buffered.
+ *
+ * <pre>
+ * SendSubscriber subscriber = new SendSubscriber(elibom, 50);
+ * publisher.subscribe(subscriber);
+ * long sent = subscriber.getCompletion().get(); // waits until the publisher completes and the sends finish
+ * </pre>
+ *
+ * <p>A message rejected by the server fails its own result and doesn't cancel the subscription. Keep
+ * <code>maxInFlight</code> below the limit of the client (see {@link ElibomRestClient#setAsyncExecutor}), otherwise
+ * <code>onNext</code> blocks the publisher until a call completes. This class is compiled only in the
+ * <code>jdk21</code> profile.</p>
+ *
+ * @author German Escobar
+ */
+public class SendSubscriber implements Flow.Subscriber<SendRequest> {
+
+    private final ElibomRestClient client;
+
+    private final int maxInFlight;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AsyncResult<Long> completion = new AsyncResult<Long>();
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean done;
+
+    /**
+     * @param client the client used to send the messages.
+     * @param maxInFlight the max number of messages that are being sent at the same time.
+     */
+    public SendSubscriber(ElibomRestClient client, int maxInFlight) {
+        Preconditions.notNull(client, "no client provided");
+        Preconditions.isInteger(maxInFlight, "maxInFlight must be greater than zero");
+
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Preconditions.notNull(subscription, "no subscription provided");
+        if (this.subscription != null) {
+            // rule 2.5, a subscriber can only be subscribed once
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+        subscription.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(final SendRequest request) {
+        Preconditions.notNull(request, "no request provided");
+        inFlight.incrementAndGet();
+
+        AsyncResult<String> delivery;
+        if (request.getCampaign() != null) {
+            delivery = client.sendMessageAsync(request.getTo(), request.getText(), request.getCampaign());
+        } else if (SmsSegmenter.segments(request.getText()) > 1) {
+            delivery = client.sendLargeMessageAsync(request.getTo(), request.getText());
+        } else {
+            delivery = client.sendMessageAsync(request.getTo(), request.getText());
+        }
+
+        request.attempts++;
+        delivery.addCallback(new Callback<String>() {
+            @Override
+            public void onSuccess(String deliveryToken) {
+                sent.incrementAndGet();
+                request.getResult().complete(deliveryToken);
+                completed();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failed.incrementAndGet();
+                request.getResult().fail(e);
+                completed();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        done = true;
+        completion.fail(e);
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        if (inFlight.get() == 0) {
+            completion.complete(sent.get());
+        }
+    }
+
+    /**
+     * Cancels the subscription. The messages that are being sent are not cancelled.
+     */
+    public void cancel() {
+        Flow.Subscription subscription = this.subscription;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * @return an AsyncResult that completes with the number of messages sent when the publisher completes and all the
+     * sends finish, or fails with the error of the publisher.
+     */
+    public AsyncResult<Long> getCompletion() {
+        return completion;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of messages that couldn't be sent.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void completed() {
+        if (inFlight.decrementAndGet() == 0 && done) {
+            completion.complete(sent.get());
+        } else if (!done) {
+            subscription.request(1);
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class BulkSenderTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldSendInBatches() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        BulkSender sender = new BulkSender(elibom, 2, BulkSender.DEFAULT_MAX_PAYLOAD_BYTES, 2);
+
+        BulkResult result = sender.send(Arrays.asList("573002111111", " 573002111112", "", "573002111113",
+                "573002111114", "573002111115"), "this is a test");
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(result.getBatches().size(), 3);
+        Assert.assertEquals(result.getNumDestinations(), 5);
+        Assert.assertEquals(result.getDeliveryTokens(), Arrays.asList("12345", "12345", "12345"));
+        Assert.assertEquals(result.getBatches().get(0).getDestinations(), "573002111111,573002111112");
+        Assert.assertEquals(result.getBatches().get(2).getDestinations(), "573002111115");
+
+        verify(postRequestedFor(urlEqualTo("/messages"))
+                .withRequestBody(equalTo("{\"to\":\"573002111113,573002111114\",\"text\":\"this is a test\"}")));
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldSplitBatchesByPayloadSize() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+
+        // {"to":"","text":"this is a test"} is 33 bytes, only two destinations of 12 digits fit in 60 bytes
+        BulkSender sender = new BulkSender(elibom, 100, 60, 1);
+        BulkResult result = sender.send(Arrays.asList("573002111111", "573002111112", "573002111113"), "this is a test");
+
+        Assert.assertEquals(result.getBatches().size(), 2);
+        Assert.assertEquals(result.getBatches().get(0).getNumDestinations(), 2);
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldSendTemplateGroupedByText() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        BulkSender sender = new BulkSender(elibom, 100, BulkSender.DEFAULT_MAX_PAYLOAD_BYTES, 1);
+
+        MessageTemplate template = new MessageTemplate("Your balance is ${amount}");
+        BulkResult result = sender.send(template, Arrays.asList(
+                new Recipient("573002111111", Collections.singletonMap("amount", 10)),
+                new Recipient("573002111112", Collections.singletonMap("amount", 20)),
+                new Recipient("573002111113", Collections.singletonMap("amount", 10))));
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(result.getBatches().size(), 2);
+        Assert.assertEquals(result.getBatches().get(0).getDestinations(), "573002111111,573002111113");
+        Assert.assertEquals(result.getBatches().get(0).getText(), "Your balance is 10");
+        Assert.assertEquals(result.getBatches().get(1).getDestinations(), "573002111112");
+
+        verify(postRequestedFor(urlEqualTo("/messages"))
+                .withRequestBody(equalTo("{\"to\":\"573002111111,573002111113\",\"text\":\"Your balance is 10\"}")));
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldReportFailedBatches() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(400)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        BulkSender sender = new BulkSender(elibom, 2, BulkSender.DEFAULT_MAX_PAYLOAD_BYTES, 2);
+        BulkResult result = sender.send(Arrays.asList("573002111111", "573002111112", "573002111113"), "this is a test");
+
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(result.getFailures().size(), 2);
+        Assert.assertTrue(result.getDeliveryTokens().isEmpty());
+        Assert.assertTrue(result.getFailures().get(0).getError() instanceof HttpServerException);
+
+        elibom.close();
+    }
+
+}
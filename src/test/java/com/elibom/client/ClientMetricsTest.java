@@ -0,0 +1,147 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+import java.net.URL;
+import java.util.HashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+public class ClientMetricsTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldRecordEndpoints() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        stubFor(get(urlEqualTo("/messages/12345"))
+                .willReturn(aResponse()
+                    .withStatus(400)
+                    .withBody("{ \"error\": \"invalid\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        ClientMetrics metrics = new ClientMetrics();
+        elibom.addRequestListener(metrics);
+
+        elibom.sendMessage("573002111111", "this is a test");
+        elibom.sendMessage("573002111111", "this is a test");
+        try {
+            elibom.getDelivery("12345");
+            Assert.fail("should have thrown HttpServerException");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 400);
+        }
+
+        Assert.assertEquals(metrics.getInFlight(), 0);
+        Assert.assertEquals(metrics.getEndpoints().size(), 2);
+
+        ClientMetrics.EndpointMetrics send = metrics.getEndpoint("POST /messages");
+        Assert.assertEquals(send.getRequests(), 2);
+        Assert.assertEquals(send.getStatusCount(200), 2);
+        Assert.assertEquals(send.getResponseBytes(), 2 * "{ \"deliveryToken\": \"12345\" }".length());
+        Assert.assertTrue(send.getRequestBytes() > 0);
+        Assert.assertEquals(send.getLatency().getCount(), 2);
+        Assert.assertTrue(send.getLatency().getPercentile(50) > 0);
+
+        ClientMetrics.EndpointMetrics delivery = metrics.getEndpoint("GET /messages/{id}");
+        Assert.assertEquals(delivery.getRequests(), 1);
+        Assert.assertEquals(delivery.getStatusCount(400), 1);
+        Assert.assertEquals(delivery.getStatusCounts().size(), 1);
+    }
+
+    @Test
+    public void shouldRecordRetries() throws Exception {
+        stubFor(get(urlEqualTo("/account")).inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                    .withStatus(503))
+                .willSetStateTo("available"));
+
+        stubFor(get(urlEqualTo("/account")).inScenario("retry")
+                .whenScenarioStateIs("available")
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"name\": \"Nombre Empresa\", \"owner\": { \"id\": 1 } }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setRetryPolicy(new RetryPolicy(3, 10, 100));
+        ClientMetrics metrics = new ClientMetrics();
+        elibom.addRequestListener(metrics);
+
+        elibom.getAccount();
+
+        ClientMetrics.EndpointMetrics account = metrics.getEndpoint("GET /account");
+        Assert.assertEquals(account.getRequests(), 2);
+        Assert.assertEquals(account.getRetries(), 1);
+        Assert.assertEquals(account.getStatusCount(503), 1);
+        Assert.assertEquals(account.getStatusCount(200), 1);
+        Assert.assertEquals(metrics.getInFlight(), 0);
+    }
+
+    @Test
+    public void shouldNameEndpoints() throws Exception {
+        Assert.assertEquals(ElibomRestClient.endpointOf(request("GET", "http://localhost/messages/abc123?x=1")),
+                "GET /messages/{id}");
+        Assert.assertEquals(ElibomRestClient.endpointOf(request("DELETE", "http://localhost/schedules/45")),
+                "DELETE /schedules/{id}");
+        Assert.assertEquals(ElibomRestClient.endpointOf(request("GET", "http://localhost/users")), "GET /users");
+    }
+
+    @Test
+    public void shouldComputePercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        Assert.assertEquals(histogram.getCount(), 1000);
+        Assert.assertEquals(histogram.getMax(), 1000000);
+        Assert.assertEquals(histogram.getMean(), 500500);
+
+        long p50 = histogram.getPercentile(50);
+        Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 1.04, "p50 " + p50);
+        long p99 = histogram.getPercentile(99);
+        Assert.assertTrue(p99 >= 990000 && p99 <= 1000000, "p99 " + p99);
+        Assert.assertEquals(histogram.getPercentile(100), 1000000);
+
+        // each value is within the bounds of its bucket
+        for (long value : new long[] { 0, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE }) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.upperBound(index) >= value);
+            Assert.assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+        }
+    }
+
+    private HttpRequest request(String method, String url) throws Exception {
+        return new HttpRequest(method, new URL(url), new HashMap<String,String>(), null);
+    }
+
+}
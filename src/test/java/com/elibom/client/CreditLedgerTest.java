@@ -0,0 +1,248 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class CreditLedgerTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldDebitAndRejectMessages() throws Exception {
+        stubAccount("3");
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        CreditLedger ledger = new CreditLedger(elibom);
+        ledger.start();
+        try {
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("3.0000"));
+            Assert.assertTrue(ledger.canAfford(3));
+            Assert.assertFalse(ledger.canAfford(4));
+            Assert.assertEquals(ledger.estimate("3001111111,3002222222", "test"), new BigDecimal("2.0000"));
+
+            Assert.assertEquals(ledger.sendMessage("3001111111,3002222222", "test"), "12345");
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("1.0000"));
+
+            try {
+                ledger.sendMessage("3001111111,3002222222", "test");
+                Assert.fail("should have thrown InsufficientCreditsException");
+            } catch (InsufficientCreditsException e) {
+                Assert.assertEquals(e.getRequired(), new BigDecimal("2.0000"));
+                Assert.assertEquals(e.getAvailable(), new BigDecimal("1.0000"));
+            }
+
+            verify(1, postRequestedFor(urlEqualTo("/messages")));
+            Assert.assertEquals(ledger.getDebits(), 1);
+            Assert.assertEquals(ledger.getRejected(), 1);
+        } finally {
+            ledger.close();
+        }
+    }
+
+    @Test
+    public void shouldRefundMessagesThatWereNotSent() throws Exception {
+        stubAccount("3");
+
+        // no idle connections are kept, so the send has to connect
+        PooledHttpTransport transport = new PooledHttpTransport(2, 0, 1000, 1000);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005", transport);
+        CreditLedger ledger = new CreditLedger(elibom);
+        ledger.start();
+        try {
+            // a campaign message must fit in a single segment, it is rejected before the debit
+            try {
+                ledger.sendMessage("3001111111", longText(), "campaign");
+                Assert.fail("should have thrown IllegalArgumentException");
+            } catch (IllegalArgumentException e) {}
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("3.0000"));
+            Assert.assertEquals(ledger.getDebits(), 0);
+
+            // the connection can't be established
+            wireMockServer.stop();
+            try {
+                ledger.sendMessage("3001111111", "test");
+                Assert.fail("should have thrown an exception");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getCause() instanceof ConnectException);
+            }
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("3.0000"));
+        } finally {
+            wireMockServer.start();
+            ledger.close();
+        }
+    }
+
+    private String longText() {
+        StringBuilder text = new StringBuilder();
+        for (int i=0; i < 161; i++) {
+            text.append('a');
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void shouldSettleAndReconcile() throws Exception {
+        stubAccount("10");
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        CreditLedger ledger = new CreditLedger(elibom);
+        ledger.start();
+        try {
+            ledger.sendMessage("3001111111,3002222222", "test");
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("8.0000"));
+
+            // the actual credits of the messages replace the estimate
+            List<Message> messages = new ArrayList<Message>();
+            messages.add(createMessage(new BigDecimal("0.5")));
+            messages.add(createMessage(new BigDecimal("0.75")));
+            ledger.onStatusChange(new Delivery("12345", "finished", 2, 0, messages), "processing");
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("8.7500"));
+
+            // a delivery is settled only once
+            ledger.onStatusChange(new Delivery("12345", "finished", 2, 0, messages), "processing");
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("8.7500"));
+
+            stubAccount("7.5");
+            ledger.reconcile();
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("7.5000"));
+        } finally {
+            ledger.close();
+        }
+    }
+
+    @Test
+    public void shouldSerializeReconciliations() throws Exception {
+        stubAccount("3");
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        final CreditLedger ledger = new CreditLedger(elibom);
+        ledger.start();
+        try {
+            stubFor(get(urlEqualTo("/account"))
+                    .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(200)
+                        .withBody(createAccount("5").toString())));
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int i=0; i < 2; i++) {
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ledger.reconcile();
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // each reconciliation applies the difference with the balance left by the other
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("5.0000"));
+        } finally {
+            ledger.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepDebitIfRetriedWithIdempotencyKeys() throws Exception {
+        stubAccount("3");
+
+        RetryPolicy retryPolicy = new RetryPolicy(2, 10, 100);
+        retryPolicy.setUseIdempotencyKeys(true);
+        PooledHttpTransport transport = new PooledHttpTransport(2, 0, 1000, 1000);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005", transport);
+        elibom.setRetryPolicy(retryPolicy);
+
+        CreditLedger ledger = new CreditLedger(elibom);
+        ledger.start();
+        try {
+            // an earlier attempt may have been charged, the last failure doesn't tell
+            wireMockServer.stop();
+            try {
+                ledger.sendMessage("3001111111", "test");
+                Assert.fail("should have thrown an exception");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getCause() instanceof ConnectException);
+            }
+            Assert.assertEquals(ledger.getBalance(), new BigDecimal("2.0000"));
+        } finally {
+            wireMockServer.start();
+            ledger.close();
+        }
+    }
+
+    @Test(expectedExceptions=IllegalStateException.class)
+    public void shouldFailIfNotStarted() throws Exception {
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        new CreditLedger(elibom).canAfford(1);
+    }
+
+    private void stubAccount(String credits) throws Exception {
+        JSONObject jsonAccount = createAccount(credits);
+
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(jsonAccount.toString())));
+    }
+
+    private JSONObject createAccount(String credits) throws Exception {
+        return new JSONObject()
+                .put("name", "Nombre Empresa")
+                .put("credits", new BigDecimal(credits))
+                .put("owner", new JSONObject().put("id", 1).put("url", "https://www.elibom.com/users/1"));
+    }
+
+    private Message createMessage(BigDecimal credits) {
+        return new Message(1, 2, "3001111111", "Tigo", "elibom", "test", "sent", "", credits, null, null);
+    }
+
+}
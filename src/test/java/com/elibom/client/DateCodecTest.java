@@ -0,0 +1,87 @@
+package com.elibom.client;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DateCodecTest {
+
+    private static final String[] TIME_ZONES = { "UTC", "America/Bogota", "America/New_York", "Europe/Madrid",
+        "Asia/Kolkata", "Australia/Lord_Howe" };
+
+    @Test
+    public void shouldFormatLikeSimpleDateFormat() throws Exception {
+        Random random = new Random(42);
+
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateCodec codec = new DateCodec(timeZone);
+            SimpleDateFormat seconds = createFormat("yyyy-MM-dd HH:mm:ss", timeZone);
+            SimpleDateFormat minutes = createFormat("yyyy-MM-dd HH:mm", timeZone);
+            SimpleDateFormat day = createFormat("dd-MM-yyyy", timeZone);
+
+            for (int i=0; i < 2000; i++) {
+                // between 1900 and 2100
+                Date date = new Date(-2208988800000L + (long) (random.nextDouble() * 6311433600000L));
+
+                Assert.assertEquals(codec.format(date), seconds.format(date), id);
+                Assert.assertEquals(codec.formatMinutes(date), minutes.format(date), id);
+                Assert.assertEquals(codec.formatDay(date), day.format(date), id);
+            }
+        }
+    }
+
+    @Test
+    public void shouldParseLikeSimpleDateFormat() throws Exception {
+        Random random = new Random(7);
+
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateCodec codec = new DateCodec(timeZone);
+            SimpleDateFormat seconds = createFormat("yyyy-MM-dd HH:mm:ss", timeZone);
+
+            for (int i=0; i < 2000; i++) {
+                String value = String.format("%04d-%02d-%02d %02d:%02d:%02d", 1950 + random.nextInt(100),
+                        1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                        random.nextInt(60));
+
+                Assert.assertEquals(codec.parse(value), seconds.parse(value), id + " " + value);
+            }
+        }
+    }
+
+    @Test
+    public void shouldParseDatesWithoutSeconds() throws Exception {
+        DateCodec codec = new DateCodec(TimeZone.getTimeZone("America/Bogota"));
+        Assert.assertEquals(codec.parse("2014-08-24 10:00"), codec.parse("2014-08-24 10:00:00"));
+        Assert.assertEquals(codec.parse("2014-08-24 10:00").getTime(), 1408892400000L);
+    }
+
+    @Test
+    public void shouldFailWithInvalidDates() throws Exception {
+        DateCodec codec = DateCodec.DEFAULT;
+        String[] values = { null, "", "2013-07-24", "2013/07/24 15:05:34", "2013-07-24T15:05:34", "2013-13-24 15:05:34",
+                "2013-02-29 15:05:34", "2013-07-24 24:05:34", "2013-07-24 15:60:34", "2013-07-24 15:05:3a" };
+
+        for (String value : values) {
+            try {
+                codec.parse(value);
+                Assert.fail("should have thrown ParseException: " + value);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    private SimpleDateFormat createFormat(String pattern, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+}
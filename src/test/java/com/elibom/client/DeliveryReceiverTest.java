@@ -0,0 +1,151 @@
+package com.elibom.client;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DeliveryReceiverTest {
+
+    @Test
+    public void shouldDispatchReceipts() throws Exception {
+        final AtomicReference<Delivery> received = new AtomicReference<Delivery>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        DeliveryReceiver receiver = new DeliveryReceiver(0);
+        receiver.addListener(new DeliveryListener() {
+            @Override
+            public void onStatusChange(Delivery delivery, String previousStatus) {
+                received.set(delivery);
+                latch.countDown();
+            }
+        });
+        receiver.start();
+
+        try {
+            Assert.assertEquals(post(receiver, createDelivery().toString()), 202);
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(received.get().getId(), "12345");
+            Assert.assertEquals(received.get().getStatus(), "finished");
+            Assert.assertEquals(received.get().getMessages().get(0).getTo(), "573002175604");
+
+            Assert.assertEquals(post(receiver, "not json"), 400);
+            Assert.assertEquals(receiver.getReceived(), 1);
+        } finally {
+            receiver.stop(1);
+        }
+    }
+
+    @Test
+    public void shouldRejectReceiptsWhenQueueIsFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        DeliveryReceiver receiver = new DeliveryReceiver(new InetSocketAddress("localhost", 0), "/deliveries", 1, 1);
+        receiver.addListener(new DeliveryListener() {
+            @Override
+            public void onStatusChange(Delivery delivery, String previousStatus) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        receiver.start();
+
+        try {
+            String body = createDelivery().toString();
+            Assert.assertEquals(post(receiver, body), 202);
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(post(receiver, body), 202);
+            Assert.assertEquals(receiver.getQueueDepth(), 1);
+
+            Assert.assertEquals(post(receiver, body), 503);
+            Assert.assertEquals(receiver.getRejected(), 1);
+        } finally {
+            release.countDown();
+            receiver.stop(1);
+        }
+    }
+
+    @Test
+    public void shouldRejectUnsignedReceipts() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        DeliveryReceiver receiver = new DeliveryReceiver(new InetSocketAddress("localhost", 0), "/deliveries", 1, 10);
+        receiver.setSecret("s3cr3t");
+        receiver.addListener(new DeliveryListener() {
+            @Override
+            public void onStatusChange(Delivery delivery, String previousStatus) {
+                latch.countDown();
+            }
+        });
+        receiver.start();
+
+        try {
+            String body = createDelivery().toString();
+            Assert.assertEquals(post(receiver, body), 401);
+            Assert.assertEquals(post(receiver, body, DeliveryReceiver.sign(body.getBytes("UTF-8"), "other")), 401);
+            Assert.assertEquals(receiver.getUnauthorized(), 2);
+            Assert.assertEquals(receiver.getReceived(), 0);
+
+            Assert.assertEquals(post(receiver, body, DeliveryReceiver.sign(body.getBytes("UTF-8"), "s3cr3t")), 202);
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            receiver.stop(1);
+        }
+    }
+
+    private int post(DeliveryReceiver receiver, String body) throws Exception {
+        return post(receiver, body, null);
+    }
+
+    private int post(DeliveryReceiver receiver, String body, String signature) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + receiver.getPort() + "/deliveries").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (signature != null) {
+            connection.setRequestProperty(DeliveryReceiver.SIGNATURE_HEADER, signature);
+        }
+
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes("UTF-8"));
+        out.close();
+
+        int statusCode = connection.getResponseCode();
+        connection.disconnect();
+
+        return statusCode;
+    }
+
+    private JSONObject createDelivery() throws Exception {
+        JSONObject message = new JSONObject()
+            .put("id", 171851)
+            .put("user", new JSONObject().put("id", 2))
+            .put("to", "573002175604")
+            .put("text", "this is a test")
+            .put("status", "sent")
+            .put("credits", 1)
+            .put("createdAt", "2013-07-24 15:05:34");
+
+        return new JSONObject()
+            .put("deliveryId", "12345")
+            .put("status", "finished")
+            .put("numSent", 1)
+            .put("numFailed", 0)
+            .put("messages", new JSONArray().put(message));
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+public class DeliveryTrackerTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldPollUntilFinished() throws Exception {
+        stubFor(get(urlEqualTo("/messages/12345")).inScenario("delivery")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("processing")
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(createDelivery("processing").toString())));
+        stubFor(get(urlEqualTo("/messages/12345")).inScenario("delivery")
+                .whenScenarioStateIs("processing")
+                .willSetStateTo("processed")
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(createDelivery("processing").toString())));
+        stubFor(get(urlEqualTo("/messages/12345")).inScenario("delivery")
+                .whenScenarioStateIs("processed")
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(createDelivery("finished").toString())));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        DeliveryTracker tracker = new DeliveryTracker(elibom, 10, 20, 10000, 1);
+
+        final List<String> changes = new CopyOnWriteArrayList<String>();
+        tracker.addListener(new DeliveryListener() {
+            @Override
+            public void onStatusChange(Delivery delivery, String previousStatus) {
+                changes.add(previousStatus + "->" + delivery.getStatus());
+            }
+        });
+
+        AsyncResult<Delivery> result = tracker.track("12345");
+        Assert.assertSame(tracker.track("12345"), result);
+
+        Delivery delivery = result.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(delivery.getStatus(), "finished");
+        Assert.assertEquals(changes.size(), 2);
+        Assert.assertEquals(changes.get(0), "null->processing");
+        Assert.assertEquals(changes.get(1), "processing->finished");
+        Assert.assertEquals(tracker.getTracking(), 0);
+
+        Thread.sleep(100);
+        verify(3, getRequestedFor(urlEqualTo("/messages/12345")));
+        Assert.assertEquals(tracker.getPolls(), 3);
+
+        tracker.close();
+    }
+
+    @Test
+    public void shouldFailWithClientError() throws Exception {
+        stubFor(get(urlEqualTo("/messages/12345"))
+                .willReturn(aResponse()
+                    .withStatus(404)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        DeliveryTracker tracker = new DeliveryTracker(elibom, 10, 20, 10000, 1);
+
+        try {
+            tracker.track("12345").get(5, TimeUnit.SECONDS);
+            Assert.fail("should have thrown ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpServerException);
+        }
+
+        verify(1, getRequestedFor(urlEqualTo("/messages/12345")));
+        tracker.close();
+    }
+
+    private JSONObject createDelivery(String status) throws Exception {
+        return new JSONObject()
+            .put("deliveryId", "12345")
+            .put("status", status)
+            .put("numSent", 1)
+            .put("numFailed", 0)
+            .put("messages", new JSONArray());
+    }
+
+}
@@ -5,16 +5,26 @@ import static com.github.tomakehurst.wiremock.client.WireMock.delete;
 import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -25,6 +35,7 @@ import org.testng.annotations.Test;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 
 public class ElibomRestClientTest {
 
@@ -53,6 +64,18 @@ public class ElibomRestClientTest {
         new ElibomRestClient("t@u.com", null);
     }
 
+    @Test
+    public void shouldBuildAuthorizationHeader() throws Exception {
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test");
+        Assert.assertEquals(elibom.buildAuthorizationHeader(), "Basic dEB1LmNvbTp0ZXN0");
+
+        Assert.assertEquals(Base64.encode(new byte[0]), "");
+        Assert.assertEquals(Base64.encode("f".getBytes("UTF-8")), "Zg==");
+        Assert.assertEquals(Base64.encode("fo".getBytes("UTF-8")), "Zm8=");
+        Assert.assertEquals(Base64.encode("foobar".getBytes("UTF-8")), "Zm9vYmFy");
+        Assert.assertEquals(Base64.encode(new byte[] { (byte) 0xfb, (byte) 0xff }), "+/8=");
+    }
+
     @Test
     public void shouldSendMessage() throws Exception {
         stubFor(post(urlEqualTo("/messages"))
@@ -91,6 +114,58 @@ public class ElibomRestClientTest {
     }
 
     
+    @Test
+    public void shouldSendMessageAsync() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> notified = new AtomicReference<String>();
+
+        AsyncResult<String> result = elibom.sendMessageAsync("573002111111,583242111111", "this is a test");
+        result.addCallback(new Callback<String>() {
+            @Override
+            public void onSuccess(String deliveryToken) {
+                notified.set(deliveryToken);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                latch.countDown();
+            }
+        });
+
+        Assert.assertEquals(result.get(5, TimeUnit.SECONDS), "12345");
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(notified.get(), "12345");
+        Assert.assertEquals(elibom.getInFlightRequests(), 0);
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldFailAsyncCallWithServerError() throws Exception {
+        stubFor(get(urlEqualTo("/users/1"))
+                .willReturn(aResponse()
+                    .withStatus(404)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        try {
+            elibom.getUserAsync(1).get(5, TimeUnit.SECONDS);
+            Assert.fail("should have thrown an exception");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpServerException);
+            Assert.assertEquals(((HttpServerException) e.getCause()).getStatusCode(), 404);
+        }
+
+        elibom.close();
+    }
+
     @Test(expectedExceptions=IllegalArgumentException.class)
     public void shouldFailSendMessageWithLongText() throws Exception {
         ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
@@ -373,6 +448,208 @@ public class ElibomRestClientTest {
         Assert.assertEquals(account.getOwnerId(), 1);
     }
     
+    @Test
+    public void shouldReuseConnections() throws Exception {
+        JSONObject jsonAccount = new JSONObject()
+                .put("name", "Nombre Empresa")
+                .put("owner", new JSONObject().put("id", 1));
+
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(jsonAccount.toString())));
+
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30000, 1000, 1000);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005", transport);
+        for (int i=0; i < 5; i++) {
+            Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+        }
+
+        Assert.assertEquals(transport.getOpenConnections(), 1);
+        Assert.assertEquals(transport.getIdleConnections(), 1);
+
+        elibom.close();
+        Assert.assertEquals(transport.getOpenConnections(), 0);
+    }
+
+    @Test
+    public void shouldWarmUp() throws Exception {
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(new JSONObject().put("name", "Nombre Empresa").put("owner", new JSONObject().put("id", 1)).toString())));
+
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30000, 1000, 1000);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005", transport);
+
+        WarmUpReport report = elibom.warmUp(3, 100);
+        Assert.assertTrue(report.isReady(), String.valueOf(report.getError()));
+        Assert.assertEquals(report.getHost(), "localhost");
+        Assert.assertFalse(report.getAddresses().isEmpty());
+        Assert.assertEquals(report.getConnectionsOpened(), 2);
+        Assert.assertEquals(report.getOpenConnections(), 2);
+        Assert.assertEquals(report.getIterations(), 100);
+        Assert.assertEquals(transport.getIdleConnections(), 2);
+
+        // the connections are already open
+        Assert.assertEquals(elibom.warmUp(2, 0).getConnectionsOpened(), 0);
+        Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+        Assert.assertEquals(transport.getConnectionsOpened(), 2);
+        Assert.assertEquals(transport.getConnectionsReused(), 1);
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldReportWarmUpFailure() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30000, 1000, 1000);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4006", transport);
+
+        WarmUpReport report = elibom.warmUp(1, 0);
+        Assert.assertFalse(report.isReady());
+        Assert.assertTrue(report.getError() instanceof ConnectException);
+        Assert.assertEquals(report.getConnectionsOpened(), 0);
+        Assert.assertEquals(transport.getOpenConnections(), 0);
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldReportConnectionsOpenedBeforeWarmUpFailure() throws Exception {
+        // the first connection is opened, the second fails
+        PooledHttpTransport transport = new PooledHttpTransport(3, 30000, 1000, 1000) {
+            @Override
+            public int warmUp(URL url, int connections) throws IOException {
+                super.warmUp(url, 1);
+                throw new WarmUpException(1, new ConnectException("Connection refused"));
+            }
+        };
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005", transport);
+
+        WarmUpReport report = elibom.warmUp(3, 0);
+        Assert.assertFalse(report.isReady());
+        Assert.assertTrue(report.getError() instanceof ConnectException);
+        Assert.assertEquals(report.getConnectionsOpened(), 1);
+        Assert.assertEquals(report.getOpenConnections(), 1);
+        Assert.assertEquals(transport.getOpenConnections(), 1);
+
+        elibom.close();
+    }
+
+    @Test
+    public void shouldNotifyRateLimiterWhenThrottled() throws Exception {
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(429)
+                    .withHeader("Retry-After", "2")));
+
+        RateLimiter rateLimiter = new RateLimiter(100, 10, true);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setRateLimiter(rateLimiter);
+
+        try {
+            elibom.getAccount();
+            Assert.fail("should have thrown an exception");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 429);
+            Assert.assertTrue(e.isThrottled());
+            Assert.assertEquals(e.getRetryAfter(), 2000);
+        }
+
+        Assert.assertEquals(rateLimiter.getThrottledCount(), 1);
+        Assert.assertEquals(rateLimiter.getRate(), 50.0);
+        Assert.assertFalse(rateLimiter.tryAcquire());
+    }
+
+    @Test
+    public void shouldRetryIdempotentRequests() throws Exception {
+        stubFor(get(urlEqualTo("/account")).inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                    .withStatus(503))
+                .willSetStateTo("available"));
+
+        stubFor(get(urlEqualTo("/account")).inScenario("retry")
+                .whenScenarioStateIs("available")
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody("{ \"name\": \"Nombre Empresa\", \"owner\": { \"id\": 1 } }")));
+
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setRetryPolicy(retryPolicy);
+
+        Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+        Assert.assertEquals(retryPolicy.getAttempts(), 2);
+        Assert.assertEquals(retryPolicy.getRetries(), 1);
+        Assert.assertEquals(retryPolicy.getGiveUps(), 0);
+    }
+
+    @Test
+    public void shouldNotRetrySendMessageAfterServerError() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setRetryPolicy(retryPolicy);
+
+        try {
+            elibom.sendMessage("573002111111", "this is a test");
+            Assert.fail("should have thrown an exception");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 503);
+        }
+
+        Assert.assertEquals(retryPolicy.getAttempts(), 1);
+        Assert.assertEquals(retryPolicy.getRetries(), 0);
+        verify(1, postRequestedFor(urlEqualTo("/messages")));
+    }
+
+    @Test
+    public void shouldRetrySendMessageWithIdempotencyKey() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100);
+        retryPolicy.setUseIdempotencyKeys(true);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setRetryPolicy(retryPolicy);
+
+        try {
+            elibom.sendMessage("573002111111", "this is a test");
+            Assert.fail("should have thrown an exception");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 503);
+        }
+
+        Assert.assertEquals(retryPolicy.getAttempts(), 3);
+        Assert.assertEquals(retryPolicy.getRetries(), 2);
+        Assert.assertEquals(retryPolicy.getGiveUps(), 1);
+        verify(3, postRequestedFor(urlEqualTo("/messages")).withHeader("Idempotency-Key", matching(".+")));
+    }
+
+    @Test
+    public void shouldRetrySendMessageIfConnectionFails() throws Exception {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100);
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4006");
+        elibom.setRetryPolicy(retryPolicy);
+
+        try {
+            elibom.sendMessage("573002111111", "this is a test");
+            Assert.fail("should have thrown an exception");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof ConnectException);
+        }
+
+        Assert.assertEquals(retryPolicy.getAttempts(), 3);
+        Assert.assertEquals(retryPolicy.getGiveUps(), 1);
+    }
+
     @Test
     public void shouldShowLastMessages() throws Exception {
         JSONArray jsonMessages = createFakeMessagesList();
@@ -453,6 +730,62 @@ public class ElibomRestClientTest {
 
     
     
+    @Test
+    public void shouldIterateMessageHistory() throws Exception {
+        JSONArray firstPage = new JSONArray().put(createFakeMessage()).put(createFakeMessage().put("id", 171852));
+        JSONArray secondPage = new JSONArray().put(createFakeMessage().put("id", 171853));
+
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=2&page=1&user=t@u.com"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(new JSONObject().put("messages", firstPage).toString())));
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=2&page=2&user=t@u.com"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(new JSONObject().put("messages", secondPage).toString())));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        MessageHistory history = elibom.getMessageHistory(2);
+
+        for (int i=0; i < 2; i++) {
+            Iterator<Message> messages = history.iterator();
+            Assert.assertEquals(messages.next().getId(), 171851);
+            Assert.assertEquals(messages.next().getId(), 171852);
+            Assert.assertEquals(messages.next().getId(), 171853);
+            Assert.assertFalse(messages.hasNext());
+        }
+
+        verify(2, getRequestedFor(urlEqualTo("/messages?status=sent&perPage=2&page=2&user=t@u.com")));
+        verify(0, getRequestedFor(urlEqualTo("/messages?status=sent&perPage=2&page=3&user=t@u.com")));
+    }
+
+    @Test
+    public void shouldIterateMessageHistoryBetweenDates() throws Exception {
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=1&page=1&user=t@u.com&startDate=23-07-2013&endDate=24-07-2013"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json; charset=UTF-8")
+                    .withBody(new JSONObject().put("messages", createFakeMessagesList()).toString())));
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=1&page=2&user=t@u.com&startDate=23-07-2013&endDate=24-07-2013"))
+                .willReturn(aResponse()
+                    .withStatus(500)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+        MessageHistory history = new MessageHistory(elibom, 1, sdf.parse("23-07-2013"), sdf.parse("24-07-2013"), false);
+
+        Iterator<Message> messages = history.iterator();
+        Assert.assertEquals(messages.next().getId(), 171851);
+        try {
+            messages.hasNext();
+            Assert.fail("should have thrown HttpServerException");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 500);
+        }
+    }
+
     private JSONObject createFakeMessage() throws Exception
     {
         JSONObject jsonMessage = new JSONObject()
@@ -0,0 +1,39 @@
+package com.elibom.client;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JsonBodyTest {
+
+    @Test
+    public void shouldEncodeAsJSONObject() throws Exception {
+        String[] values = {
+            "this is a test",
+            "Quotes \" and backslashes \\ and </script>",
+            "Control\b\t\n\f\r\u0001 characters",
+            "Acci\u00f3n \u20ac \u0085 \u00a0 \u2028 \u4e2d",
+            "Emoji \ud83d\ude00 and a lone \ud83d surrogate",
+            ""
+        };
+
+        for (String value : values) {
+            String expected = new JSONObject().put("to", "573002111111").put("text", value).toString();
+            byte[] body = JsonBody.encode("to", "573002111111", "text", value);
+
+            Assert.assertEquals(body, expected.getBytes("UTF-8"), value);
+            Assert.assertEquals(JsonBody.length("to", "573002111111", "text", value), body.length);
+            Assert.assertEquals(JsonBody.valueLength(value), JSONObject.quote(value).getBytes("UTF-8").length - 2);
+        }
+    }
+
+    @Test
+    public void shouldSkipNullFields() throws Exception {
+        Assert.assertEquals(new String(JsonBody.encode("campaign", null, "to", "1", "text", "t"), "UTF-8"),
+                "{\"to\":\"1\",\"text\":\"t\"}");
+        Assert.assertEquals(new String(JsonBody.encode("scheduleDate", "2013-07-24 15:05", "campaign", "c", "to", "1", "text", "t"), "UTF-8"),
+                "{\"scheduleDate\":\"2013-07-24 15:05\",\"campaign\":\"c\",\"to\":\"1\",\"text\":\"t\"}");
+        Assert.assertEquals(new String(JsonBody.encode("to", null), "UTF-8"), "{}");
+    }
+
+}
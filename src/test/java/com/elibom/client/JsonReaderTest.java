@@ -0,0 +1,157 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JsonReaderTest {
+
+    @Test
+    public void shouldReadValues() throws Exception {
+        JsonReader reader = new JsonReader(bytes("{ \"a\": \"x\\\"y\\u00f1\\n\", \"b\": -12, \"c\": 1.5e2, \"d\": [true, false, null], \"e\": \"ñandú\" }"));
+
+        reader.beginObject();
+        Assert.assertEquals(reader.nextName(), "a");
+        Assert.assertEquals(reader.nextString(), "x\"yñ\n");
+        Assert.assertEquals(reader.nextName(), "b");
+        Assert.assertEquals(reader.nextLong(), -12);
+        Assert.assertEquals(reader.nextName(), "c");
+        Assert.assertEquals(reader.nextLong(), 150);
+        Assert.assertEquals(reader.nextName(), "d");
+        reader.beginArray();
+        Assert.assertTrue(reader.nextBoolean());
+        Assert.assertFalse(reader.nextBoolean());
+        Assert.assertEquals(reader.peek(), JsonReader.Token.NULL);
+        reader.nextNull();
+        Assert.assertFalse(reader.hasNext());
+        reader.endArray();
+        Assert.assertEquals(reader.nextName(), "e");
+        Assert.assertEquals(reader.nextString(), "ñandú");
+        reader.endObject();
+        Assert.assertEquals(reader.peek(), JsonReader.Token.END_DOCUMENT);
+    }
+
+    @Test
+    public void shouldSkipNestedValues() throws Exception {
+        JsonReader reader = new JsonReader(bytes("[{\"a\": [1, {\"b\": \"}\"}], \"c\": {}}, 7]"));
+
+        reader.beginArray();
+        reader.skipValue();
+        Assert.assertEquals(reader.nextInt(), 7);
+        reader.endArray();
+    }
+
+    @Test(expectedExceptions=JSONException.class)
+    public void shouldFailWithUnterminatedObject() throws Exception {
+        JsonReader reader = new JsonReader(bytes("{\"a\": 1"));
+        reader.beginObject();
+        reader.nextName();
+        reader.nextLong();
+        reader.endObject();
+    }
+
+    @Test(expectedExceptions=JSONException.class)
+    public void shouldFailWithMissingColon() throws Exception {
+        JsonReader reader = new JsonReader(bytes("{\"a\" 1}"));
+        reader.beginObject();
+        reader.nextName();
+        reader.nextLong();
+    }
+
+    @Test
+    public void shouldDecodeTheSameAsJsonObjectDecoder() throws Exception {
+        JSONObject json = new JSONObject()
+                .put("id", 171851)
+                .put("user", new JSONObject().put("id", 2).put("url", "https://www.elibom.com/users/2"))
+                .put("to", "573002175604")
+                .put("operator", "Tigo (Colombia)")
+                .put("text", "this is a \"test\" áéí")
+                .put("status", "sent")
+                .put("statusDetail", "sent")
+                .put("credits", new BigDecimal("1.5"))
+                .put("from", "3542")
+                .put("createdAt", "2013-07-24 15:05:34")
+                .put("sentAt", "2013-07-24 15:06:00")
+                .put("unknown", new JSONArray().put(new JSONObject().put("x", 1)));
+        byte[] body = bytes(new JSONObject().put("page", 1).put("messages", new JSONArray().put(json)).toString());
+
+        List<Message> expected = new JsonObjectDecoder().decodeMessages(body, DateCodec.DEFAULT);
+        List<Message> actual = new StreamingDecoder().decodeMessages(body, DateCodec.DEFAULT);
+        Assert.assertEquals(actual.size(), 1);
+
+        Message e = expected.get(0);
+        Message a = actual.get(0);
+        Assert.assertEquals(a.getId(), e.getId());
+        Assert.assertEquals(a.getUserId(), e.getUserId());
+        Assert.assertEquals(a.getTo(), e.getTo());
+        Assert.assertEquals(a.getOperator(), e.getOperator());
+        Assert.assertEquals(a.getFrom(), e.getFrom());
+        Assert.assertEquals(a.getText(), e.getText());
+        Assert.assertEquals(a.getStatus(), e.getStatus());
+        Assert.assertEquals(a.getStatusDetail(), e.getStatusDetail());
+        Assert.assertEquals(a.getCredits(), e.getCredits());
+        Assert.assertEquals(a.getCreatedAt(), e.getCreatedAt());
+        Assert.assertEquals(a.getSentAt(), e.getSentAt());
+        Assert.assertEquals(new JSONObject(a.toString()).getString("text"), e.getText());
+    }
+
+    @Test
+    public void shouldDecodeLazyMessages() throws Exception {
+        JSONObject first = new JSONObject()
+                .put("id", 171851)
+                .put("user", new JSONObject().put("id", 2).put("url", "https://www.elibom.com/users/2"))
+                .put("to", "573002175604")
+                .put("operator", JSONObject.NULL)
+                .put("text", "this is a \"test\" áéí")
+                .put("status", "sent")
+                .put("statusDetail", "sent")
+                .put("credits", new BigDecimal("1.5"))
+                .put("from", "3542")
+                .put("createdAt", "2013-07-24 15:05:34")
+                .put("unknown", new JSONObject().put("status", "ignored"));
+        JSONObject second = new JSONObject(first.toString()).put("id", 171852).put("status", "failed")
+                .put("sentAt", "2013-07-24 15:06:00");
+        byte[] body = bytes(new JSONObject()
+                .put("deliveryId", "12345")
+                .put("status", "finished")
+                .put("numSent", 1)
+                .put("numFailed", 1)
+                .put("messages", new JSONArray().put(first).put(second)).toString());
+
+        Delivery expected = new StreamingDecoder().decodeDelivery(body, DateCodec.DEFAULT);
+        Delivery actual = new StreamingDecoder(true).decodeDelivery(body, DateCodec.DEFAULT);
+        Assert.assertEquals(actual.getMessages().size(), 2);
+        Assert.assertEquals(actual.getStatus(), "finished");
+
+        for (int i=0; i < 2; i++) {
+            Message e = expected.getMessages().get(i);
+            Message a = actual.getMessages().get(i);
+            Assert.assertTrue(a instanceof LazyMessage);
+
+            Assert.assertEquals(a.getStatus(), e.getStatus());
+            Assert.assertEquals(a.getId(), e.getId());
+            Assert.assertEquals(a.getUserId(), e.getUserId());
+            Assert.assertEquals(a.getTo(), e.getTo());
+            Assert.assertNull(a.getOperator());
+            Assert.assertEquals(a.getFrom(), e.getFrom());
+            Assert.assertEquals(a.getText(), e.getText());
+            Assert.assertEquals(a.getStatusDetail(), e.getStatusDetail());
+            Assert.assertEquals(a.getCredits(), e.getCredits());
+            Assert.assertEquals(a.getCreatedAt(), e.getCreatedAt());
+            Assert.assertEquals(a.getSentAt(), e.getSentAt());
+        }
+        Assert.assertNull(actual.getMessages().get(0).getSentAt());
+        Assert.assertEquals(new JSONObject(actual.getMessages().get(1).toString()).getLong("id"), 171852);
+        Assert.assertEquals(new JSONObject(actual.toString()).getJSONArray("messages").length(), 2);
+    }
+
+    private byte[] bytes(String value) throws Exception {
+        return value.getBytes("UTF-8");
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.elibom.client;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MessageColumnsTest {
+
+    @Test
+    public void shouldStoreMessages() throws Exception {
+        MessageColumns columns = new MessageColumns(1);
+        columns.addAll(createMessages());
+
+        Assert.assertEquals(columns.size(), 4);
+        Assert.assertEquals(columns.getId(1), 2);
+        Assert.assertEquals(columns.getUserId(1), 7);
+        Assert.assertEquals(columns.getOperator(1), "Claro");
+        Assert.assertEquals(columns.getStatus(1), "failed");
+        Assert.assertEquals(columns.getFrom(1), "3542");
+        Assert.assertEquals(columns.getCreatedAt(1), 2000);
+        Assert.assertEquals(columns.getSentAt(1), MessageColumns.NO_DATE);
+        Assert.assertEquals(columns.getCredits(1).compareTo(new BigDecimal("1.5")), 0);
+        Assert.assertEquals(columns.getCreditsUnscaled(1), 15000);
+        Assert.assertNull(columns.getOperator(3));
+    }
+
+    @Test
+    public void shouldGroupBy() throws Exception {
+        MessageColumns columns = new MessageColumns();
+        columns.addAll(createMessages());
+
+        Map<String,Long> counts = columns.countBy(MessageColumns.Column.STATUS);
+        Assert.assertEquals(counts.size(), 2);
+        Assert.assertEquals(counts.get("sent"), Long.valueOf(3));
+        Assert.assertEquals(counts.get("failed"), Long.valueOf(1));
+
+        Map<String,BigDecimal> credits = columns.sumCreditsBy(MessageColumns.Column.OPERATOR);
+        Assert.assertEquals(credits.get("Tigo").compareTo(new BigDecimal("3")), 0);
+        Assert.assertEquals(credits.get("Claro").compareTo(new BigDecimal("1.5")), 0);
+        Assert.assertEquals(credits.get(null).compareTo(new BigDecimal("0.0001")), 0);
+
+        Map<String,Long> lastCounts = columns.countBy(MessageColumns.Column.OPERATOR, 2000, 4000);
+        Assert.assertEquals(lastCounts.size(), 2);
+        Assert.assertEquals(lastCounts.get("Claro"), Long.valueOf(1));
+        Assert.assertEquals(lastCounts.get("Tigo"), Long.valueOf(1));
+
+        Assert.assertEquals(columns.sumCredits().compareTo(new BigDecimal("4.5001")), 0);
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailWithTooManyDecimals() throws Exception {
+        MessageColumns columns = new MessageColumns();
+        columns.add(createMessage(1, "Tigo", "sent", "0.00001", 1000));
+    }
+
+    private List<Message> createMessages() {
+        List<Message> messages = new ArrayList<Message>();
+        messages.add(createMessage(1, "Tigo", "sent", "1", 1000));
+        messages.add(createMessage(2, "Claro", "failed", "1.5", 2000));
+        messages.add(createMessage(3, "Tigo", "sent", "2", 3000));
+        messages.add(createMessage(4, null, "sent", "0.0001", 4000));
+
+        return messages;
+    }
+
+    private Message createMessage(long id, String operator, String status, String credits, long createdAt) {
+        return new Message(id, 7, "573002175604", operator, "3542", "this is a test", status, status,
+                new BigDecimal(credits), new Date(createdAt), null);
+    }
+
+}
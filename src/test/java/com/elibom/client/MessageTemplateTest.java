@@ -0,0 +1,67 @@
+package com.elibom.client;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void shouldRenderTemplate() throws Exception {
+        MessageTemplate template = new MessageTemplate("Hi ${name}, your code is ${code}. ${name} costs $5");
+        Assert.assertEquals(template.getVariables(), Arrays.asList("name", "code", "name"));
+
+        Map<String,Object> values = new HashMap<String,Object>();
+        values.put("name", "Juan");
+        values.put("code", 1234);
+        Assert.assertEquals(template.render(values), "Hi Juan, your code is 1234. Juan costs $5");
+
+        StringBuilder out = new StringBuilder("> ");
+        template.render(values, out);
+        Assert.assertEquals(out.toString(), "> Hi Juan, your code is 1234. Juan costs $5");
+    }
+
+    @Test
+    public void shouldGroupRecipientsByText() throws Exception {
+        MessageTemplate template = new MessageTemplate("Your code is ${code}");
+
+        Map<String,List<String>> groups = template.group(Arrays.asList(
+                recipient("1", "1234"), recipient("2", "5678"), recipient("3", "1234")), 1);
+
+        Assert.assertEquals(groups.size(), 2);
+        Assert.assertEquals(groups.get("Your code is 1234"), Arrays.asList("1", "3"));
+        Assert.assertEquals(groups.get("Your code is 5678"), Arrays.asList("2"));
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailWithTooManySegments() throws Exception {
+        MessageTemplate template = new MessageTemplate("Your code is ${code}");
+
+        StringBuilder code = new StringBuilder();
+        for (int i=0; i < 150; i++) {
+            code.append('1');
+        }
+        template.group(Arrays.asList(recipient("1", code.toString())), 1);
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailWithMissingVariable() throws Exception {
+        new MessageTemplate("Your code is ${code}").render(new HashMap<String,Object>());
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailWithUnclosedVariable() throws Exception {
+        new MessageTemplate("Your code is ${code");
+    }
+
+    private Recipient recipient(String destination, String code) {
+        Map<String,String> variables = new HashMap<String,String>();
+        variables.put("code", code);
+        return new Recipient(destination, variables);
+    }
+
+}
@@ -0,0 +1,298 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class OutboxTest {
+
+    private WireMockServer wireMockServer;
+
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+
+        directory = File.createTempFile("outbox", "");
+        directory.delete();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void shouldSendMessages() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 4096, 2, 10);
+        outbox.open();
+        try {
+            SendRequest[] requests = new SendRequest[50];
+            for (int i=0; i < requests.length; i++) {
+                requests[i] = outbox.enqueue("300111" + (1000 + i), "message " + i);
+            }
+            for (SendRequest request : requests) {
+                Assert.assertEquals(request.getResult().get(5, TimeUnit.SECONDS), "12345");
+            }
+
+            verify(50, postRequestedFor(urlEqualTo("/messages")));
+            Assert.assertEquals(outbox.getSent(), 50);
+            Assert.assertTrue(outbox.getPending().isEmpty());
+
+            // the segments whose messages completed were deleted
+            Assert.assertEquals(outbox.getSegments(), 1);
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void shouldReplayIncompleteMessages() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+        stubFor(post(urlEqualTo("/messages"))
+                .withRequestBody(containing("rejected"))
+                .willReturn(aResponse()
+                    .withStatus(400)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 4096, 1, 60000);
+        outbox.open();
+
+        SendRequest rejected = outbox.enqueue("3001111111", "rejected");
+        outbox.enqueue("3001111112", "first");
+        outbox.enqueue("3001111113", "second", "campaign");
+        try {
+            rejected.getResult().get(5, TimeUnit.SECONDS);
+            Assert.fail("should have thrown ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpServerException);
+        }
+        Assert.assertEquals(outbox.getPending().size(), 2);
+        outbox.close();
+
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        outbox = new Outbox(elibom, directory, 4096, 1, 60000);
+        outbox.open();
+        try {
+            Assert.assertEquals(outbox.getReplayed(), 2);
+
+            SendRequest third = outbox.enqueue("3001111114", "third");
+            Assert.assertTrue(third.getId() > 3);
+            for (SendRequest request : outbox.getPending()) {
+                Assert.assertEquals(request.getResult().get(5, TimeUnit.SECONDS), "12345");
+            }
+            third.getResult().get(5, TimeUnit.SECONDS);
+
+            verify(postRequestedFor(urlEqualTo("/messages")).withRequestBody(containing("\"campaign\":\"campaign\"")));
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void shouldNotResendUndecodableResponses() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("<html>")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 4096, 1, 10);
+        outbox.open();
+        try {
+            SendRequest request = outbox.enqueue("3001111111", "message");
+            try {
+                request.getResult().get(5, TimeUnit.SECONDS);
+                Assert.fail("should have thrown ExecutionException");
+            } catch (ExecutionException e) {
+                // the message may have been accepted
+            }
+
+            verify(1, postRequestedFor(urlEqualTo("/messages")));
+            Assert.assertEquals(outbox.getFailed(), 1);
+            Assert.assertEquals(outbox.getRetries(), 0);
+            Assert.assertTrue(outbox.getPending().isEmpty());
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void shouldFailAfterMaxAttempts() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 4096, 1, 10);
+        outbox.setMaxAttempts(3);
+        outbox.open();
+
+        SendRequest request = outbox.enqueue("3001111111", "message");
+        try {
+            request.getResult().get(5, TimeUnit.SECONDS);
+            Assert.fail("should have thrown ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(((HttpServerException) e.getCause()).getStatusCode(), 503);
+        }
+
+        verify(3, postRequestedFor(urlEqualTo("/messages")));
+        Assert.assertEquals(outbox.getRetries(), 2);
+        Assert.assertEquals(outbox.getFailed(), 1);
+        outbox.close();
+
+        // the FAILED record was written, so the message is not sent again
+        outbox = new Outbox(elibom, directory, 4096, 1, 10);
+        outbox.open();
+        try {
+            Assert.assertEquals(outbox.getReplayed(), 0);
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void shouldCompact() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+        stubFor(post(urlEqualTo("/messages"))
+                .withRequestBody(containing("pending"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 2048, 2, 60000);
+        outbox.open();
+
+        // the pending message keeps the first segment, and the ones after it, from being deleted
+        outbox.enqueue("3001111111", "pending");
+        SendRequest[] requests = new SendRequest[100];
+        for (int i=0; i < requests.length; i++) {
+            requests[i] = outbox.enqueue("300111" + (1000 + i), "message " + i);
+        }
+        for (SendRequest request : requests) {
+            Assert.assertEquals(request.getResult().get(5, TimeUnit.SECONDS), "12345");
+        }
+        Assert.assertTrue(outbox.getSegments() > 1);
+
+        outbox.compact();
+        Assert.assertEquals(outbox.getSegments(), 1);
+        Assert.assertEquals(outbox.getPending().size(), 1);
+        outbox.close();
+
+        stubFor(post(urlEqualTo("/messages"))
+                .withRequestBody(containing("pending"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"67890\" }")));
+
+        outbox = new Outbox(elibom, directory, 2048, 2, 60000);
+        outbox.open();
+        try {
+            Assert.assertEquals(outbox.getReplayed(), 1);
+
+            SendRequest pending = outbox.getPending().get(0);
+            Assert.assertEquals(pending.getText(), "pending");
+            Assert.assertEquals(pending.getResult().get(5, TimeUnit.SECONDS), "67890");
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    public void shouldStopReplayAtCorruptRecord() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(503)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        Outbox outbox = new Outbox(elibom, directory, 4096, 1, 60000);
+        outbox.open();
+        outbox.enqueue("3001111111", "first");
+        outbox.enqueue("3001111112", "second");
+        outbox.enqueue("3001111113", "third");
+        outbox.close();
+
+        // flips a byte of the payload of the last record, as if the process died while writing it
+        File[] files = directory.listFiles();
+        Assert.assertEquals(files.length, 1);
+        RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+        try {
+            long position = 0;
+            long last = -1;
+            int length;
+            while ((length = readInt(raf, position)) > 0) {
+                last = position;
+                position += 9 + length;
+            }
+            Assert.assertTrue(last >= 0);
+
+            raf.seek(last + 9 + 12);
+            int b = raf.read();
+            raf.seek(last + 9 + 12);
+            raf.write(b ^ 0xff);
+        } finally {
+            raf.close();
+        }
+
+        outbox = new Outbox(elibom, directory, 4096, 1, 60000);
+        outbox.open();
+        try {
+            Assert.assertEquals(outbox.getReplayed(), 2);
+            for (SendRequest request : outbox.getPending()) {
+                Assert.assertFalse(request.getText().equals("third"));
+            }
+        } finally {
+            outbox.close();
+        }
+    }
+
+    private int readInt(RandomAccessFile raf, long position) throws Exception {
+        raf.seek(position);
+        return raf.readInt();
+    }
+
+}
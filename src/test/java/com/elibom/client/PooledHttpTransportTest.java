@@ -0,0 +1,154 @@
+package com.elibom.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PooledHttpTransportTest {
+
+    private ServerSocket serverSocket;
+
+    /**
+     * The number of requests received by the server.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        requests.set(0);
+        serverSocket = new ServerSocket(0);
+
+        // responds to the first request of each connection and closes the connection when it receives the second
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    @Test
+    public void shouldNotReplayPostOnReusedConnection() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30000, 1000, 1000);
+        URL url = new URL("http://localhost:" + serverSocket.getLocalPort() + "/messages");
+
+        HttpRequest request = new HttpRequest("POST", url, Collections.<String,String>emptyMap(), "{}".getBytes("UTF-8"));
+        Assert.assertEquals(transport.execute(request).getStatusCode(), 200);
+        try {
+            transport.execute(request);
+            Assert.fail("should have thrown an IOException");
+        } catch (IOException e) {
+            // the server may have processed it, the retry policy decides
+        }
+
+        Assert.assertEquals(requests.get(), 2);
+        transport.close();
+    }
+
+    @Test
+    public void shouldReplayGetOnReusedConnection() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30000, 1000, 1000);
+        URL url = new URL("http://localhost:" + serverSocket.getLocalPort() + "/account");
+
+        HttpRequest request = new HttpRequest("GET", url, Collections.<String,String>emptyMap(), null);
+        Assert.assertEquals(transport.execute(request).getStatusCode(), 200);
+        Assert.assertEquals(transport.execute(request).getStatusCode(), 200);
+
+        Assert.assertEquals(requests.get(), 3);
+        Assert.assertEquals(transport.getConnectionsOpened(), 2);
+        transport.close();
+    }
+
+    @Test
+    public void shouldReportConnectionsOpenedBeforeWarmUpFailure() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(3, 30000, 1000, 1000);
+        URL url = new URL("http://localhost:" + serverSocket.getLocalPort() + "/");
+
+        Assert.assertEquals(transport.warmUp(url, 1), 1);
+        serverSocket.close();
+        try {
+            transport.warmUp(url, 3);
+            Assert.fail("should have thrown WarmUpException");
+        } catch (WarmUpException e) {
+            Assert.assertEquals(e.getConnectionsOpened(), 0);
+            Assert.assertTrue(e.getCause() instanceof ConnectException);
+        }
+
+        // the connection opened by the first warm up is kept
+        Assert.assertEquals(transport.getOpenConnections(), 1);
+        transport.close();
+    }
+
+    @Test
+    public void shouldMatchCertificateNames() throws Exception {
+        Assert.assertTrue(HostnameChecker.matches("www.elibom.com", "www.elibom.com"));
+        Assert.assertTrue(HostnameChecker.matches("www.elibom.com", "*.elibom.com"));
+        Assert.assertFalse(HostnameChecker.matches("elibom.com", "*.elibom.com"));
+        Assert.assertFalse(HostnameChecker.matches("a.www.elibom.com", "*.elibom.com"));
+        Assert.assertFalse(HostnameChecker.matches("www.elibom.com", "*.com"));
+        Assert.assertFalse(HostnameChecker.matches("www.elibom.com.co", "www.elibom.com"));
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            OutputStream out = socket.getOutputStream();
+
+            for (int i=0; i < 2; i++) {
+                int contentLength = 0;
+                String line = in.readLine();
+                if (line == null) {
+                    return;
+                }
+                while ((line = in.readLine()) != null && line.length() > 0) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                in.skip(contentLength);
+                requests.incrementAndGet();
+
+                if (i == 0) {
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}".getBytes("ISO-8859-1"));
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // the client closed the connection
+        } finally {
+            try { socket.close(); } catch (IOException e) {}
+        }
+    }
+
+}
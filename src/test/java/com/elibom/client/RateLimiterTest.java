@@ -0,0 +1,74 @@
+package com.elibom.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void shouldAllowBurst() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(1, 3);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertTrue(rateLimiter.tryAcquire());
+        Assert.assertFalse(rateLimiter.tryAcquire());
+    }
+
+    @Test
+    public void shouldSpaceRequests() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(20, 1);
+
+        long start = System.nanoTime();
+        for (int i=0; i < 5; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the first one is immediate, the other four are spaced by 50 ms
+        Assert.assertTrue(elapsed >= 190, "elapsed " + elapsed);
+    }
+
+    @Test
+    public void shouldAdaptToThrottling() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(100, 10, true);
+
+        // the first throttling response decreases the rate, even right after the limiter is created
+        rateLimiter.onThrottle(-1);
+        Assert.assertEquals(rateLimiter.getRate(), 50.0);
+        Assert.assertEquals(rateLimiter.getThrottledCount(), 1);
+
+        // concurrent rejections within the same second don't decrease the rate again
+        rateLimiter.onThrottle(-1);
+        Assert.assertEquals(rateLimiter.getRate(), 50.0);
+
+        // the increases have their own period
+        rateLimiter.onSuccess();
+        Assert.assertEquals(rateLimiter.getRate(), 55.0);
+        rateLimiter.onSuccess();
+        Assert.assertEquals(rateLimiter.getRate(), 55.0);
+    }
+
+    @Test
+    public void shouldHoldRequestsUntilRetryAfter() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(100, 10, true);
+        rateLimiter.onThrottle(300);
+
+        Assert.assertFalse(rateLimiter.tryAcquire());
+
+        long start = System.nanoTime();
+        rateLimiter.acquire();
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    }
+
+    @Test
+    public void shouldNotAdaptIfNotAdaptive() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(100, 10);
+
+        rateLimiter.onThrottle(1000);
+        Assert.assertEquals(rateLimiter.getRate(), 100.0);
+        Assert.assertTrue(rateLimiter.tryAcquire());
+    }
+
+}
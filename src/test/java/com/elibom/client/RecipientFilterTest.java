@@ -0,0 +1,79 @@
+package com.elibom.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RecipientFilterTest {
+
+    @Test
+    public void shouldNormalizeDestinations() throws Exception {
+        RecipientFilter filter = new RecipientFilter("57", 10);
+
+        Assert.assertEquals(filter.normalize("3002111111"), "573002111111");
+        Assert.assertEquals(filter.normalize(" 300 211-1111 "), "573002111111");
+        Assert.assertEquals(filter.normalize("03002111111"), "573002111111");
+        Assert.assertEquals(filter.normalize("+57 (300) 211.1111"), "573002111111");
+        Assert.assertEquals(filter.normalize("0051965876567"), "51965876567");
+        Assert.assertEquals(filter.normalize("51965876567"), "51965876567");
+
+        Assert.assertNull(filter.normalize(""));
+        Assert.assertNull(filter.normalize("300211111a"));
+        Assert.assertNull(filter.normalize("+0573002111111"));
+        Assert.assertNull(filter.normalize("1234"));
+        Assert.assertNull(filter.normalize("1234567890123456"));
+    }
+
+    @Test
+    public void shouldRejectNationalDestinationsWithoutCountryCode() throws Exception {
+        RecipientFilter filter = new RecipientFilter();
+
+        Assert.assertEquals(filter.normalize("573002111111"), "573002111111");
+        Assert.assertNull(filter.normalize("03002111111"));
+    }
+
+    @Test
+    public void shouldFilterDestinations() throws Exception {
+        RecipientFilter filter = new RecipientFilter("57", 10);
+
+        final List<String> rejections = new ArrayList<String>();
+        filter.setRejectionListener(new RecipientFilter.RejectionListener() {
+            @Override
+            public void onRejected(String destination, RecipientFilter.Rejection reason) {
+                rejections.add(destination + ":" + reason);
+            }
+        });
+
+        List<String> accepted = new ArrayList<String>();
+        for (String destination : filter.filter(Arrays.asList("3002111111", "573002111111", "abc", null, "+51965876567", "123"))) {
+            accepted.add(destination);
+        }
+
+        Assert.assertEquals(accepted, Arrays.asList("573002111111", "51965876567"));
+        Assert.assertEquals(rejections, Arrays.asList("573002111111:DUPLICATE", "abc:INVALID_CHARACTER", "null:EMPTY", "123:TOO_SHORT"));
+        Assert.assertEquals(filter.getAccepted(), 2);
+        Assert.assertEquals(filter.getRejected(), 4);
+        Assert.assertEquals(filter.getRejected(RecipientFilter.Rejection.DUPLICATE), 1);
+
+        Assert.assertEquals(filter.filter("3003111111, 3002111111,+51 965 876 567,3004111111"), "573003111111,573004111111");
+        Assert.assertEquals(filter.getRejected(RecipientFilter.Rejection.DUPLICATE), 3);
+    }
+
+    @Test
+    public void shouldGrowLongHashSet() throws Exception {
+        LongHashSet set = new LongHashSet(2);
+        for (long i=1; i <= 10000; i++) {
+            Assert.assertTrue(set.add(573000000000L + i));
+        }
+        for (long i=1; i <= 10000; i++) {
+            Assert.assertFalse(set.add(573000000000L + i));
+            Assert.assertTrue(set.contains(573000000000L + i));
+        }
+        Assert.assertEquals(set.size(), 10000);
+        Assert.assertFalse(set.contains(573000000000L));
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class RequestCoalescerTest {
+
+    private WireMockServer wireMockServer;
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+        executor = Executors.newFixedThreadPool(5);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldMergeConcurrentSends() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        final RequestCoalescer coalescer = new RequestCoalescer(elibom, 200, 500);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i=0; i < 5; i++) {
+            final String to = "57300211111" + i;
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    return coalescer.sendMessage(to, "this is a test");
+                }
+            }));
+        }
+        start.countDown();
+
+        for (Future<String> result : results) {
+            Assert.assertEquals(result.get(5, TimeUnit.SECONDS), "12345");
+        }
+
+        verify(1, postRequestedFor(urlEqualTo("/messages")));
+        Assert.assertEquals(coalescer.getMessages(), 5);
+        Assert.assertEquals(coalescer.getRequests(), 1);
+        coalescer.close();
+    }
+
+    @Test
+    public void shouldRespectMaxDestinations() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        RequestCoalescer coalescer = new RequestCoalescer(elibom, 60000, 2);
+
+        List<AsyncResult<String>> results = new ArrayList<AsyncResult<String>>();
+        results.add(coalescer.sendMessageAsync("573002111111", "this is a test"));
+        results.add(coalescer.sendMessageAsync("573002111112", "this is a test"));
+        results.add(coalescer.sendMessageAsync("573002111113", "other text"));
+        results.add(coalescer.sendMessageAsync("573002111114,573002111115", "this is a test"));
+
+        // the first batch is full, the others are sent when the coalescer is closed
+        Assert.assertEquals(results.get(0).get(5, TimeUnit.SECONDS), "12345");
+        Assert.assertFalse(results.get(2).isDone());
+        coalescer.close();
+        for (AsyncResult<String> result : results) {
+            Assert.assertEquals(result.get(5, TimeUnit.SECONDS), "12345");
+        }
+
+        Assert.assertEquals(coalescer.getRequests(), 3);
+        verify(1, postRequestedFor(urlEqualTo("/messages"))
+                .withRequestBody(equalTo("{\"to\":\"573002111111,573002111112\",\"text\":\"this is a test\"}")));
+        verify(1, postRequestedFor(urlEqualTo("/messages"))
+                .withRequestBody(equalTo("{\"to\":\"573002111114,573002111115\",\"text\":\"this is a test\"}")));
+    }
+
+    @Test
+    public void shouldFailAllMergedSends() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(400)
+                    .withBody("{ \"error\": \"invalid\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        RequestCoalescer coalescer = new RequestCoalescer(elibom, 100, 500);
+
+        List<AsyncResult<String>> results = new ArrayList<AsyncResult<String>>();
+        results.add(coalescer.sendMessageAsync("573002111111", "this is a test"));
+        results.add(coalescer.sendMessageAsync("573002111112", "this is a test"));
+        for (AsyncResult<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assert.fail("should have thrown ExecutionException");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(((HttpServerException) e.getCause()).getStatusCode(), 400);
+            }
+        }
+        coalescer.close();
+    }
+
+    @Test
+    public void shouldShareConcurrentDeliveryReads() throws Exception {
+        JSONObject message = new JSONObject()
+            .put("id", 171851)
+            .put("user", new JSONObject().put("id", 2).put("url", "https://www.elibom.com:9090/users/2"))
+            .put("to", "573002175604")
+            .put("operator", "Tigo (Colombia)")
+            .put("text", "this is a test")
+            .put("status", "sent")
+            .put("statusDetail", "sent")
+            .put("credits", 1)
+            .put("from", "3542")
+            .put("createdAt", "2013-07-24 15:05:34")
+            .put("sentAt", "2013-07-24 15:05:34");
+        JSONObject delivery = new JSONObject()
+            .put("deliveryId", "12345")
+            .put("status", "finished")
+            .put("numSent", 1)
+            .put("numFailed", 0)
+            .put("messages", new JSONArray().put(message));
+
+        stubFor(get(urlEqualTo("/messages/12345"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withFixedDelay(300)
+                    .withBody(delivery.toString())));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        final RequestCoalescer coalescer = new RequestCoalescer(elibom);
+
+        List<Future<Delivery>> results = new ArrayList<Future<Delivery>>();
+        for (int i=0; i < 4; i++) {
+            results.add(executor.submit(new Callable<Delivery>() {
+                @Override
+                public Delivery call() throws Exception {
+                    return coalescer.getDelivery("12345");
+                }
+            }));
+        }
+
+        for (Future<Delivery> result : results) {
+            Assert.assertEquals(result.get(5, TimeUnit.SECONDS).getNumSent(), 1);
+        }
+
+        verify(1, getRequestedFor(urlEqualTo("/messages/12345")));
+        Assert.assertEquals(coalescer.getSharedReads(), 3);
+        coalescer.close();
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class ResponseCacheTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldCacheAccount() throws Exception {
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(createAccount().toString())));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        ResponseCache cache = new ResponseCache();
+        elibom.setResponseCache(cache);
+
+        for (int i=0; i < 3; i++) {
+            Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+        }
+
+        verify(1, getRequestedFor(urlEqualTo("/account")));
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHits(), 2);
+    }
+
+    @Test
+    public void shouldRevalidateWithETag() throws Exception {
+        stubFor(get(urlEqualTo("/account"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("ETag", "\"v1\"")
+                    .withBody(createAccount().toString())));
+        stubFor(get(urlEqualTo("/account"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse()
+                    .withStatus(304)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        ResponseCache cache = new ResponseCache().setTtl(ResponseCache.Endpoint.ACCOUNT, 20);
+        elibom.setResponseCache(cache);
+
+        Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+        Thread.sleep(50);
+        Assert.assertEquals(elibom.getAccount().getName(), "Nombre Empresa");
+
+        verify(2, getRequestedFor(urlEqualTo("/account")));
+        verify(1, getRequestedFor(urlEqualTo("/account")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        Assert.assertEquals(cache.getRevalidations(), 1);
+    }
+
+    @Test
+    public void shouldInvalidateScheduleAfterUnschedule() throws Exception {
+        JSONObject schedule = new JSONObject()
+                .put("id", 32)
+                .put("scheduledTime", "2014-05-23 10:23:00")
+                .put("creationTime", "2012-09-23 22:00:00")
+                .put("isFile", false)
+                .put("destinations", "573002175604")
+                .put("text", "this is a test");
+
+        stubFor(get(urlEqualTo("/schedules/32"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(schedule.toString())));
+        stubFor(delete(urlEqualTo("/schedules/32"))
+                .willReturn(aResponse()
+                    .withStatus(200)));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.setResponseCache(new ResponseCache());
+
+        elibom.getScheduledMessage(32);
+        elibom.getScheduledMessage(32);
+        verify(1, getRequestedFor(urlEqualTo("/schedules/32")));
+
+        elibom.unschedule(32);
+        elibom.getScheduledMessage(32);
+        verify(2, getRequestedFor(urlEqualTo("/schedules/32")));
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentMisses() throws Exception {
+        final ResponseCache cache = new ResponseCache();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResponseCache.Loader loader = new ResponseCache.Loader() {
+            @Override
+            public HttpResponse load(String etag) throws IOException {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.getMessage());
+                }
+                return new HttpResponse(200, null, "{}".getBytes("UTF-8"));
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<Future<HttpResponse>> results = new ArrayList<Future<HttpResponse>>();
+        for (int i=0; i < 5; i++) {
+            results.add(executor.submit(new Callable<HttpResponse>() {
+                @Override
+                public HttpResponse call() throws Exception {
+                    return cache.get(ResponseCache.Endpoint.USERS, "/users", loader);
+                }
+            }));
+        }
+
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<HttpResponse> result : results) {
+            Assert.assertEquals(result.get(5, TimeUnit.SECONDS).getStatusCode(), 200);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getCoalesced(), 4);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws Exception {
+        ResponseCache cache = new ResponseCache(2, 60000);
+        ResponseCache.Loader loader = new ResponseCache.Loader() {
+            @Override
+            public HttpResponse load(String etag) throws IOException {
+                return new HttpResponse(200, null, "{}".getBytes("UTF-8"));
+            }
+        };
+
+        cache.get(ResponseCache.Endpoint.USER, "/users/1", loader);
+        cache.get(ResponseCache.Endpoint.USER, "/users/2", loader);
+        cache.get(ResponseCache.Endpoint.USER, "/users/1", loader);
+        cache.get(ResponseCache.Endpoint.USER, "/users/3", loader);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getEvictions(), 1);
+
+        cache.get(ResponseCache.Endpoint.USER, "/users/1", loader);
+        Assert.assertEquals(cache.getHits(), 2);
+        cache.get(ResponseCache.Endpoint.USER, "/users/2", loader);
+        Assert.assertEquals(cache.getMisses(), 4);
+    }
+
+    private JSONObject createAccount() throws Exception {
+        return new JSONObject()
+                .put("name", "Nombre Empresa")
+                .put("credits", 10)
+                .put("owner", new JSONObject().put("id", 1));
+    }
+
+}
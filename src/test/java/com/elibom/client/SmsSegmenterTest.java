@@ -0,0 +1,58 @@
+package com.elibom.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SmsSegmenterTest {
+
+    @Test
+    public void shouldCountGsmSegments() throws Exception {
+        Assert.assertEquals(SmsSegmenter.encoding("this is a test"), SmsSegmenter.Encoding.GSM_7);
+        Assert.assertEquals(SmsSegmenter.segments(""), 1);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('a', 160)), 1);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('a', 161)), 2);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('a', 306)), 2);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('a', 307)), 3);
+
+        // the characters of the extension table take two septets and are not split
+        Assert.assertEquals(SmsSegmenter.length("{\u20AC}"), 6);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('{', 80)), 1);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('{', 81)), 2);
+        Assert.assertEquals(SmsSegmenter.segments(repeat('a', 152) + "[" + repeat('a', 152)), 3);
+    }
+
+    @Test
+    public void shouldCountUcs2Segments() throws Exception {
+        Assert.assertEquals(SmsSegmenter.encoding("canci\u00F3n"), SmsSegmenter.Encoding.UCS_2);
+        Assert.assertEquals(SmsSegmenter.segments("\u00F3" + repeat('a', 69)), 1);
+        Assert.assertEquals(SmsSegmenter.segments("\u00F3" + repeat('a', 70)), 2);
+        Assert.assertEquals(SmsSegmenter.segments("\u00F3" + repeat('a', 133)), 2);
+        Assert.assertEquals(SmsSegmenter.segments("\u00F3" + repeat('a', 134)), 3);
+
+        // surrogate pairs are not split
+        String emoji = "\uD83D\uDE00";
+        Assert.assertEquals(SmsSegmenter.length(emoji), 2);
+        Assert.assertEquals(SmsSegmenter.segments("\u00F3" + repeat('a', 65) + emoji + repeat('a', 66)), 3);
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailSendMessageWithMultipleSegments() throws Exception {
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.sendMessage("3001111111", "\u00F3" + repeat('a', 70));
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void shouldFailSendLargeMessageWithTooManySegments() throws Exception {
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        elibom.sendLargeMessage("3001111111", repeat('a', 153 * SmsSegmenter.MAX_SEGMENTS + 1));
+    }
+
+    private String repeat(char c, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i < times; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+}
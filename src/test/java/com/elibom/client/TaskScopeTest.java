@@ -0,0 +1,165 @@
+package com.elibom.client;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TaskScopeTest {
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldJoinInForkOrder() throws Exception {
+        TaskScope<Integer> scope = new TaskScope<Integer>(executor);
+        for (int i=0; i < 10; i++) {
+            final int value = i;
+            scope.fork(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Thread.sleep(10 - value);
+                    return value;
+                }
+            });
+        }
+
+        List<Integer> results = scope.join();
+        Assert.assertEquals(results.size(), 10);
+        for (int i=0; i < 10; i++) {
+            Assert.assertEquals(results.get(i).intValue(), i);
+        }
+    }
+
+    @Test
+    public void shouldCancelOthersOnFailure() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        TaskScope<String> scope = new TaskScope<String>(executor);
+        scope.fork(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                } finally {
+                    finished.countDown();
+                }
+                return "slow";
+            }
+        });
+        scope.fork(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.await();
+                throw new HttpServerException(400);
+            }
+        });
+
+        try {
+            scope.join();
+            Assert.fail("should have thrown HttpServerException");
+        } catch (HttpServerException e) {
+            Assert.assertEquals(e.getStatusCode(), 400);
+        }
+
+        // join waited for the cancelled call to return
+        Assert.assertEquals(finished.getCount(), 0);
+        Assert.assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void shouldWaitForCallsThatIgnoreTheInterrupt() throws Exception {
+        final AtomicBoolean returned = new AtomicBoolean();
+
+        TaskScope<String> scope = new TaskScope<String>(executor);
+        scope.fork(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                // like a blocking socket read, which doesn't respond to the interrupt
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                while (System.nanoTime() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // ignored
+                    }
+                }
+                returned.set(true);
+                return "slow";
+            }
+        });
+
+        try {
+            scope.join(50, TimeUnit.MILLISECONDS);
+            Assert.fail("should have thrown TimeoutException");
+        } catch (TimeoutException e) {
+            Assert.assertTrue(returned.get());
+        }
+    }
+
+    @Test
+    public void shouldTimeout() throws Exception {
+        TaskScope<String> scope = new TaskScope<String>(executor);
+        scope.fork(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(10000);
+                return "slow";
+            }
+        });
+
+        long start = System.nanoTime();
+        try {
+            scope.join(100, TimeUnit.MILLISECONDS);
+            Assert.fail("should have thrown TimeoutException");
+        } catch (TimeoutException e) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        }
+    }
+
+    @Test
+    public void shouldCreateVirtualThreadsIfAvailable() throws Exception {
+        if (!VirtualThreads.isAvailable()) {
+            try {
+                VirtualThreads.newExecutor("test");
+                Assert.fail("should have thrown UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // this JVM doesn't support virtual threads
+            }
+            return;
+        }
+
+        ThreadFactory factory = VirtualThreads.newThreadFactory("test");
+        Thread thread = factory.newThread(new Runnable() {
+            @Override
+            public void run() {}
+        });
+        Assert.assertEquals(thread.getName(), "test-1");
+        Assert.assertEquals(Thread.class.getMethod("isVirtual").invoke(thread), Boolean.TRUE);
+    }
+
+}
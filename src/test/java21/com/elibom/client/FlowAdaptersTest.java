@@ -0,0 +1,167 @@
+package com.elibom.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+public class FlowAdaptersTest {
+
+    private WireMockServer wireMockServer;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wireMockServer = new WireMockServer(4005);
+        wireMockServer.start();
+
+        WireMock.configureFor("localhost", 4005);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void shouldPublishMessagesOnDemand() throws Exception {
+        JSONArray firstPage = new JSONArray().put(createMessage(1)).put(createMessage(2));
+        JSONArray secondPage = new JSONArray().put(createMessage(3));
+
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=2&page=1&user=t@u.com"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(new JSONObject().put("messages", firstPage).toString())));
+        stubFor(get(urlEqualTo("/messages?status=sent&perPage=2&page=2&user=t@u.com"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withBody(new JSONObject().put("messages", secondPage).toString())));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new MessagePublisher(elibom, 2).subscribe(subscriber);
+
+        // the first page is fetched only when there is demand and the second one when the first is consumed
+        Thread.sleep(200);
+        verify(0, getRequestedFor(urlEqualTo("/messages?status=sent&perPage=2&page=1&user=t@u.com")));
+
+        subscriber.subscription.request(2);
+        subscriber.awaitMessages(2);
+        Thread.sleep(200);
+        verify(0, getRequestedFor(urlEqualTo("/messages?status=sent&perPage=2&page=2&user=t@u.com")));
+
+        subscriber.subscription.request(10);
+        Assert.assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(subscriber.ids, List.of(1L, 2L, 3L));
+        Assert.assertNull(subscriber.error);
+    }
+
+    @Test
+    public void shouldSendRequestsWithBoundedDemand() throws Exception {
+        stubFor(post(urlEqualTo("/messages"))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withFixedDelay(50)
+                    .withBody("{ \"deliveryToken\": \"12345\" }")));
+
+        ElibomRestClient elibom = new ElibomRestClient("t@u.com", "test", "http://localhost:4005");
+        SendSubscriber subscriber = new SendSubscriber(elibom, 2);
+
+        List<SendRequest> requests = new ArrayList<SendRequest>();
+        SubmissionPublisher<SendRequest> publisher = new SubmissionPublisher<SendRequest>();
+        publisher.subscribe(subscriber);
+        for (int i=0; i < 6; i++) {
+            SendRequest request = new SendRequest("57300211111" + i, "this is a test");
+            requests.add(request);
+            publisher.submit(request);
+            Assert.assertTrue(subscriber.getInFlight() <= 2);
+        }
+        publisher.close();
+
+        Assert.assertEquals(subscriber.getCompletion().get(5, TimeUnit.SECONDS).longValue(), 6);
+        for (SendRequest request : requests) {
+            Assert.assertEquals(request.getResult().get(), "12345");
+        }
+        Assert.assertEquals(subscriber.getFailed(), 0);
+    }
+
+    private JSONObject createMessage(long id) throws Exception {
+        return new JSONObject()
+            .put("id", id)
+            .put("user", new JSONObject().put("id", 2).put("url", "https://www.elibom.com:9090/users/2"))
+            .put("to", "573002175604")
+            .put("operator", "Tigo (Colombia)")
+            .put("text", "this is a test")
+            .put("status", "sent")
+            .put("statusDetail", "sent")
+            .put("credits", 1)
+            .put("from", "3542")
+            .put("createdAt", "2013-07-24 15:05:34")
+            .put("sentAt", "2013-07-24 15:05:34");
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Message> {
+
+        private final List<Long> ids = new ArrayList<Long>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Flow.Subscription subscription;
+
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Message message) {
+            synchronized (ids) {
+                ids.add(message.getId());
+                ids.notifyAll();
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        private void awaitMessages(int count) throws InterruptedException {
+            synchronized (ids) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (ids.size() < count && System.currentTimeMillis() < deadline) {
+                    ids.wait(100);
+                }
+            }
+        }
+
+    }
+
+}